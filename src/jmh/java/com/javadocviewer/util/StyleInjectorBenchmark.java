@@ -0,0 +1,102 @@
+package com.javadocviewer.util;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link StyleInjector#transform(String)} with the chain of {@code contains}
+ * and {@code replace} calls it replaced, on javadoc-like pages from small to very large. Both
+ * insert the same text, so the difference is only in how the page is scanned and copied.
+ *
+ * <p>Run with {@code mvn -P jmh compile exec:exec}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StyleInjectorBenchmark {
+
+  /** Approximate page size in characters. */
+  @Param({"20000", "1000000", "8000000"})
+  public int pageSize;
+
+  private String page;
+  private String lightStyles;
+  private String darkStyles;
+  private String copyScript;
+
+  @Setup
+  public void setUp() {
+    page = generatePage(pageSize);
+
+    // Take the injected text from the current implementation so both insert the same bytes
+    String skeleton = StyleInjector.transform("<head></head><body></body>");
+    String head = skeleton.substring("<head>".length(), skeleton.indexOf("</head>"));
+    int darkStart = head.indexOf("<style", head.indexOf("</style>"));
+    lightStyles = head.substring(0, darkStart);
+    darkStyles = head.substring(darkStart);
+    int body = skeleton.indexOf("<body>") + "<body>".length();
+    copyScript = skeleton.substring(body, skeleton.indexOf("</body>"));
+  }
+
+  @Benchmark
+  public String singlePass() {
+    return StyleInjector.transform(page);
+  }
+
+  /** The injection as the viewer did it before, one full-page copy per inserted block. */
+  @Benchmark
+  public String replaceChain() {
+    String result = page;
+    if (result.contains("</head>")) {
+      result = result.replace("</head>", lightStyles + "</head>");
+      if (result.contains("</head>")) {
+        result = result.replace("</head>", darkStyles + "</head>");
+      }
+    }
+    if (result.contains("</body>")) {
+      result = result.replace("</body>", copyScript + "</body>");
+    }
+    return result;
+  }
+
+  /** Builds a class page with enough member details to reach the requested size. */
+  static String generatePage(int size) {
+    StringBuilder html = new StringBuilder(size + 4096);
+    html.append("<!DOCTYPE HTML>\n<html lang=\"en\">\n<head>\n")
+        .append("<title>Widget (Example API)</title>\n")
+        .append("<meta charset=\"utf-8\">\n")
+        .append("<link rel=\"stylesheet\" type=\"text/css\" href=\"../../stylesheet.css\">\n")
+        .append("<script type=\"text/javascript\" src=\"../../script.js\"></script>\n")
+        .append("</head>\n<body class=\"class-declaration-page\">\n<main role=\"main\">\n");
+    for (int member = 0; html.length() < size; member++) {
+      html.append("<section class=\"detail\" id=\"method")
+          .append(member)
+          .append("()\">\n<h3>method")
+          .append(member)
+          .append("</h3>\n<div class=\"member-signature\"><span class=\"modifiers\">public</span>")
+          .append("&nbsp;<span class=\"return-type\">int</span>&nbsp;")
+          .append("<span class=\"element-name\">method")
+          .append(member)
+          .append("</span>()</div>\n<div class=\"block\">Returns the <code>count</code> of ")
+          .append("widgets, see <a href=\"Gadget.html\">Gadget</a>.</div>\n")
+          .append("<pre><code>int n = widget.method")
+          .append(member)
+          .append("();\n</code></pre>\n</section>\n");
+    }
+    html.append("</main>\n</body>\n</html>\n");
+    return html.toString();
+  }
+}
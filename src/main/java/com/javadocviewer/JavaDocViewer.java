@@ -1,20 +1,57 @@
 package com.javadocviewer;
 
+import com.javadocviewer.cache.DiskPageCache;
+import com.javadocviewer.cache.PageCache;
+import com.javadocviewer.cache.PagePrefetcher;
+import com.javadocviewer.cache.TransitionModel;
+import com.javadocviewer.model.DirectorySnapshot;
+import com.javadocviewer.model.Docset;
 import com.javadocviewer.model.FileNode;
-import java.io.File;
+import com.javadocviewer.search.DocsetIndexes;
+import com.javadocviewer.search.DocsetRegistry;
+import com.javadocviewer.search.GrepScanner;
+import com.javadocviewer.search.LiveSearchIndex;
+import com.javadocviewer.search.SearchHit;
+import com.javadocviewer.search.SymbolIndex;
+import com.javadocviewer.search.TextQuery;
+import com.javadocviewer.search.TrigramIndex;
+import com.javadocviewer.util.DirectoryScanner;
+import com.javadocviewer.util.BrowserTab;
+import com.javadocviewer.util.DocsWatcher;
+import com.javadocviewer.util.DocsetTreeItem;
+import com.javadocviewer.util.FileTreeBuilder;
+import com.javadocviewer.util.LinkBridge;
+import com.javadocviewer.util.PagePool;
+import com.javadocviewer.util.PageServer;
+import com.javadocviewer.util.SearchScheduler;
+import com.javadocviewer.util.SmoothScroller;
+import com.javadocviewer.util.StyleInjector;
 import java.io.IOException;
+import java.net.URI;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.LinkedList;
-import java.util.Map;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.prefs.Preferences;
+import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
 import javafx.animation.FadeTransition;
 import javafx.animation.KeyFrame;
 import javafx.animation.ScaleTransition;
 import javafx.animation.Timeline;
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.concurrent.Worker;
 import javafx.geometry.Orientation;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
@@ -26,6 +63,8 @@ import javafx.scene.control.Label;
 import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.Separator;
 import javafx.scene.control.SplitPane;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
 import javafx.scene.control.TextField;
 import javafx.scene.control.ToggleButton;
 import javafx.scene.control.Tooltip;
@@ -38,6 +77,7 @@ import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
+import javafx.scene.layout.StackPane;
 import javafx.scene.layout.VBox;
 import javafx.scene.web.WebEngine;
 import javafx.scene.web.WebView;
@@ -60,11 +100,19 @@ public class JavaDocViewer extends Application {
   private ComboBox<String> recentFilesCombo;
   private Label statusLabel;
   private ProgressIndicator loadingIndicator;
+  private boolean pageLoading = false;
+  private boolean webLoading = false;
 
-  private boolean isDarkMode = false;
+  // Read by the page server's threads
+  private volatile boolean isDarkMode = false;
   private boolean isSidebarVisible = true;
-  private String docsPath = "docs";
   private VBox sidebar;
+  private TreeItem<FileNode> docsTreeRoot;
+
+  // Docsets shown side by side, each opened and indexed the first time it is used
+  private static final String DEFAULT_DOCS_PATH = "docs";
+  private DocsetRegistry docsets;
+  private final List<DocsetTreeItem> docsetItems = new ArrayList<>();
   private BorderPane root;
   private SplitPane splitPane;
   private double currentZoom = 1.0;
@@ -74,8 +122,81 @@ public class JavaDocViewer extends Application {
   private int historyIndex = -1;
   private static final int MAX_HISTORY = 50;
 
-  // Cache for loaded files
-  private Map<String, String> fileCache = new HashMap<>();
+  // Cache for loaded files, bounded by the "pageCacheMB" preference
+  private PageCache fileCache;
+  private static final long DEFAULT_PAGE_CACHE_MB = 64;
+
+  // Transformed pages kept on disk across sessions, bounded by "diskCacheMB"
+  private DiskPageCache diskPageCache;
+  private static final long DEFAULT_DISK_CACHE_MB = 256;
+
+  // Background page loading; only the latest request is shown
+  private final ExecutorService pageLoader =
+      Executors.newFixedThreadPool(
+          2,
+          runnable -> {
+            Thread thread = new Thread(runnable, "page-loader");
+            thread.setDaemon(true);
+            return thread;
+          });
+  private Task<String> currentLoad;
+  private String pendingAnchor;
+
+  // Serves pages by URL, so WebKit caches shared resources and resolves relative links
+  private PageServer pageServer;
+
+  // Pages likely to be opened next, learned or linked, are read and transformed ahead of time
+  private PagePrefetcher prefetcher;
+  private TransitionModel navigationModel;
+  private String lastShownPage;
+  private long loadStartNanos;
+  private boolean loadWasPrefetched;
+  private static final int DEFAULT_PREFETCH_PAGES = 8;
+  private static final long DEFAULT_PREFETCH_KB = 1024;
+
+  // Link clicks inside pages go through loadFile; the page on screen, if it was served
+  private LinkBridge linkBridge;
+  private String shownPage;
+
+  // The last pages left stay alive, so back and forward swap them in with no reload
+  private StackPane pageHost;
+  private PagePool pagePool;
+  private static final int DEFAULT_RETAINED_PAGES = 4;
+  private static final long DEFAULT_RETAINED_PAGES_MB = 128;
+
+  // Tabs keep their own history; beyond the last few used, they give up their views
+  private TabPane tabPane;
+  private final List<BrowserTab> tabs = new ArrayList<>();
+  private BrowserTab activeTab;
+  private int maxLiveTabs;
+  private double pendingScrollY;
+  private static final int DEFAULT_LIVE_TABS = 3;
+
+  // Scroll events are summed and applied once per frame
+  private SmoothScroller scroller;
+
+  // Each docset's full-text, symbol and trigram indexes are searched together
+  private static final int MAX_SEARCH_RESULTS = 200;
+  // Types and members from javadoc's own search index files, listed before page hits
+  private static final int MAX_SYMBOL_RESULTS = 50;
+
+  // "grep:" queries scan the raw files in parallel, with no index
+  private static final String GREP_PREFIX = "grep:";
+  private final GrepScanner grepScanner = GrepScanner.createDefault();
+
+  // Search-as-you-type, debounced and run off the FX thread
+  private SearchScheduler searchScheduler;
+  private static final Duration SEARCH_DEBOUNCE = Duration.millis(150);
+  private final ExecutorService searchExecutor =
+      Executors.newSingleThreadExecutor(
+          runnable -> {
+            Thread thread = new Thread(runnable, "search");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  // Live updates when the docs are regenerated, one watcher per docset in use
+  private final List<DocsWatcher> docsWatchers = new ArrayList<>();
 
   // Recent files
   private LinkedList<String> recentFiles = new LinkedList<>();
@@ -87,7 +208,45 @@ public class JavaDocViewer extends Application {
   @Override
   public void start(Stage primaryStage) {
     prefs = Preferences.userNodeForPackage(JavaDocViewer.class);
+    registerDocsets();
     loadPreferences();
+    long pageCacheBytes = prefs.getLong("pageCacheMB", DEFAULT_PAGE_CACHE_MB) * 1024 * 1024;
+    fileCache = new PageCache(pageCacheBytes);
+    try {
+      diskPageCache =
+          DiskPageCache.openDefault(
+              prefs.getLong("diskCacheMB", DEFAULT_DISK_CACHE_MB) * 1024 * 1024,
+              StyleInjector.VERSION);
+    } catch (IOException e) {
+      // Every session then starts cold, as before
+      diskPageCache = null;
+    }
+    try {
+      // Transformed pages get a budget of their own, as large as that of the raw pages
+      pageServer = PageServer.start(docsets, this::readPage, pageCacheBytes, diskPageCache);
+    } catch (IOException e) {
+      // Pages are then loaded as strings, with a base URL for their links
+      pageServer = null;
+    }
+    navigationModel = TransitionModel.loadDefault();
+    prefetcher =
+        new PagePrefetcher(
+            this::prefetchPage,
+            navigationModel,
+            prefs.getInt("prefetchPages", DEFAULT_PREFETCH_PAGES),
+            prefs.getLong("prefetchKB", DEFAULT_PREFETCH_KB) * 1024);
+    searchScheduler =
+        new SearchScheduler(
+            searchExecutor,
+            SEARCH_DEBOUNCE,
+            this::searchDocs,
+            resultsRoot -> fileTree.setRoot(resultsRoot),
+            this::showSearchResults,
+            error ->
+                statusLabel.setText(
+                    error instanceof PatternSyntaxException
+                        ? "Invalid pattern: " + ((PatternSyntaxException) error).getDescription()
+                        : "Error searching files"));
 
     primaryStage.setTitle("Java Documentation Viewer");
 
@@ -136,8 +295,245 @@ public class JavaDocViewer extends Application {
 
     // Save preferences on close
     primaryStage.setOnCloseRequest(e -> savePreferences(primaryStage));
+  }
+
+  @Override
+  public void stop() throws IOException {
+    pageLoader.shutdownNow();
+    searchExecutor.shutdownNow();
+    prefetcher.close();
+    try {
+      navigationModel.save();
+    } catch (IOException e) {
+      // Only what this session taught the model is lost
+    }
+    if (pageServer != null) {
+      pageServer.close();
+    }
+    if (diskPageCache != null) {
+      diskPageCache.close();
+    }
+    for (DocsWatcher watcher : docsWatchers) {
+      watcher.close();
+    }
+    docsets.close();
+  }
+
+  /**
+   * Registers the docs directories and javadoc archives named on the command line, else those of
+   * the last session, else "docs". None of them is opened yet.
+   */
+  private void registerDocsets() {
+    List<String> locations = getParameters().getUnnamed();
+    if (locations.isEmpty()) {
+      String saved = prefs.get("docsets", "");
+      locations = saved.isEmpty() ? List.of(DEFAULT_DOCS_PATH) : List.of(saved.split("\n"));
+    }
+    List<Path> paths = new ArrayList<>();
+    for (String location : locations) {
+      paths.add(Paths.get(location));
+    }
+    docsets = DocsetRegistry.create(paths);
+  }
+
+  /**
+   * Opens a docset and, the first time, scans and indexes it in the background and starts
+   * watching it for changes. Called on the FX thread whenever a docset is needed.
+   *
+   * @param entry The docset
+   * @return The open docset, or null if it cannot be opened
+   */
+  private Docset useDocset(DocsetRegistry.Entry entry) {
+    Docset docset;
+    try {
+      docset = entry.open();
+    } catch (IOException e) {
+      statusLabel.setText("Cannot open " + entry.getName());
+      return null;
+    }
+    if (entry.activate()) {
+      scanDocs(entry, false);
+      loadSymbolIndex(entry);
+      buildSearchIndex(entry);
+      buildTextIndex(entry);
+      startDocsWatcher(entry, docset);
+    }
+    return docset;
+  }
 
-    showWelcome();
+  private DocsetTreeItem treeItem(DocsetRegistry.Entry entry) {
+    for (DocsetTreeItem item : docsetItems) {
+      if (item.getEntry() == entry) {
+        return item;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Scans a whole docset in parallel in the background.
+   *
+   * @param entry The docset, already open
+   * @param replaceTree Whether to rebuild the docset's sidebar tree from the scan
+   */
+  private void scanDocs(DocsetRegistry.Entry entry, boolean replaceTree) {
+    DocsetIndexes indexes = entry.getIndexes();
+    long generation = indexes.getSnapshotGeneration();
+    Task<DirectorySnapshot> scanTask =
+        new Task<>() {
+          @Override
+          protected DirectorySnapshot call() {
+            return DirectoryScanner.createDefault().scan(indexes.getDocsRoot());
+          }
+        };
+
+    scanTask.setOnSucceeded(
+        e -> {
+          DirectorySnapshot snapshot = scanTask.getValue();
+          indexes.setSnapshot(snapshot, generation);
+          if (replaceTree) {
+            treeItem(entry).getChildren().setAll(FileTreeBuilder.listChildren(snapshot));
+          }
+        });
+
+    Thread scanner = new Thread(scanTask, "docs-scanner");
+    scanner.setDaemon(true);
+    scanner.start();
+  }
+
+  private void buildSearchIndex(DocsetRegistry.Entry entry) {
+    Task<LiveSearchIndex> indexTask =
+        new Task<>() {
+          @Override
+          protected LiveSearchIndex call() throws IOException {
+            // Reuses the on-disk index unless the docs changed since it was written
+            return entry.getIndexes().buildSearchIndex();
+          }
+        };
+
+    indexTask.setOnSucceeded(
+        e -> {
+          statusLabel.setText(
+              "Indexed " + indexTask.getValue().documentCount() + " pages of " + entry.getName());
+          // Re-run a query typed while the index was still being built
+          refreshSearch();
+        });
+    indexTask.setOnFailed(
+        e -> statusLabel.setText("Search index unavailable for " + entry.getName()));
+
+    Thread indexer = new Thread(indexTask, "search-indexer");
+    indexer.setDaemon(true);
+    indexer.start();
+  }
+
+  private void buildTextIndex(DocsetRegistry.Entry entry) {
+    Task<TrigramIndex> textTask =
+        new Task<>() {
+          @Override
+          protected TrigramIndex call() throws IOException {
+            return entry.getIndexes().buildTextIndex();
+          }
+        };
+
+    textTask.setOnSucceeded(e -> refreshSearch());
+
+    Thread indexer = new Thread(textTask, "text-indexer");
+    indexer.setDaemon(true);
+    indexer.start();
+  }
+
+  private void loadSymbolIndex(DocsetRegistry.Entry entry) {
+    Task<SymbolIndex> symbolTask =
+        new Task<>() {
+          @Override
+          protected SymbolIndex call() {
+            // A search may already have loaded it
+            return entry.getIndexes().getSymbolIndex();
+          }
+        };
+
+    symbolTask.setOnSucceeded(e -> refreshSearch());
+
+    Thread loader = new Thread(symbolTask, "symbol-loader");
+    loader.setDaemon(true);
+    loader.start();
+  }
+
+  private void startDocsWatcher(DocsetRegistry.Entry entry, Docset docset) {
+    if (docset.isArchive()) {
+      // An archive does not change under us, and the zip file system cannot be watched
+      return;
+    }
+    try {
+      DocsWatcher watcher =
+          new DocsWatcher(docset.getRoot(), batch -> onDocsChanged(entry, batch));
+      watcher.start();
+      docsWatchers.add(watcher);
+    } catch (IOException e) {
+      // Without a watch service the docs simply are not refreshed live
+      statusLabel.setText("Live reload unavailable");
+    }
+  }
+
+  /** Called on the watcher thread with each coalesced batch of file changes. */
+  private void onDocsChanged(DocsetRegistry.Entry entry, DocsWatcher.ChangeBatch batch) {
+    if (batch.isOverflow()) {
+      Platform.runLater(() -> reloadDocs(entry));
+      return;
+    }
+
+    // Re-index off the FX thread; the pages are read here
+    boolean rebuildText = entry.getIndexes().update(batch.getChanged(), batch.getRemoved());
+
+    Platform.runLater(
+        () -> {
+          applyDocsChanges(entry, batch);
+          if (rebuildText) {
+            // Most pages changed, so verifying them on every text query would read the docset
+            buildTextIndex(entry);
+          }
+        });
+  }
+
+  private void applyDocsChanges(DocsetRegistry.Entry entry, DocsWatcher.ChangeBatch batch) {
+    for (Path page : batch.getChanged()) {
+      fileCache.invalidate(page.toString());
+      pagePool.removeUnder(page.toString());
+    }
+    for (Path removed : batch.getRemoved()) {
+      fileCache.invalidateUnder(removed.toString());
+      pagePool.removeUnder(removed.toString());
+    }
+
+    for (Path directory : batch.getDirectories()) {
+      FileTreeBuilder.refreshDirectory(treeItem(entry), directory.toFile());
+    }
+    if (!batch.getChanged().isEmpty() || !batch.getRemoved().isEmpty()) {
+      // The indexes dropped their page list; until this scan lands, pages are listed from disk
+      scanDocs(entry, false);
+    }
+
+    String current = historyIndex >= 0 ? history.get(historyIndex) : null;
+    if (current != null && batch.getChanged().contains(Paths.get(current))) {
+      // The copy on screen is stale, so the page is loaded again rather than scrolled
+      shownPage = null;
+      loadFile(current);
+    }
+    refreshSearch();
+
+    int pages = batch.getChanged().size() + batch.getRemoved().size();
+    statusLabel.setText("Documentation updated: " + pages + " pages changed");
+  }
+
+  /** Rebuilds a docset's tree, cache and indexes after its watcher lost track of changes. */
+  private void reloadDocs(DocsetRegistry.Entry entry) {
+    fileCache.clear();
+    pagePool.clear();
+    scanDocs(entry, true);
+    entry.getIndexes().invalidateSymbols();
+    loadSymbolIndex(entry);
+    buildSearchIndex(entry);
+    buildTextIndex(entry);
   }
 
   private void setupKeyboardShortcuts(Scene scene) {
@@ -174,6 +570,20 @@ public class JavaDocViewer extends Application {
             new KeyCodeCombination(KeyCode.RIGHT, KeyCombination.ALT_DOWN),
             () -> navigateForward());
 
+    // Ctrl+T - New tab
+    scene
+        .getAccelerators()
+        .put(
+            new KeyCodeCombination(KeyCode.T, KeyCombination.CONTROL_DOWN),
+            () -> openTab(null, true));
+
+    // Ctrl+W - Close tab
+    scene
+        .getAccelerators()
+        .put(
+            new KeyCodeCombination(KeyCode.W, KeyCombination.CONTROL_DOWN),
+            () -> closeActiveTab());
+
     // Ctrl+Plus - Zoom in
     scene
         .getAccelerators()
@@ -226,7 +636,7 @@ public class JavaDocViewer extends Application {
             + "-fx-font-family: 'Inter', 'Segoe UI', sans-serif;");
 
     searchField = new TextField();
-    searchField.setPromptText("Search documentation... (Ctrl+F)");
+    searchField.setPromptText("Search docs, \"text\", /regex/ or grep:pattern (Ctrl+F)");
     searchField.setPrefWidth(450);
     styleSearchField();
     searchField.textProperty().addListener((obs, old, newVal) -> filterFiles(newVal));
@@ -469,8 +879,8 @@ public class JavaDocViewer extends Application {
             + "-fx-faint-focus-color: transparent;");
     fileTree.setShowRoot(false);
 
-    TreeItem<FileNode> root = buildFileTree(new File(docsPath));
-    fileTree.setRoot(root);
+    docsTreeRoot = buildDocsTree();
+    fileTree.setRoot(docsTreeRoot);
 
     fileTree
         .getSelectionModel()
@@ -490,6 +900,25 @@ public class JavaDocViewer extends Application {
     return sidebar;
   }
 
+  /**
+   * Builds the sidebar tree with one unexpanded item per docset, so no docset is read before it
+   * is expanded or one of its pages is shown. A lone docset is the tree itself and is read right
+   * away.
+   */
+  private TreeItem<FileNode> buildDocsTree() {
+    for (DocsetRegistry.Entry entry : docsets.getEntries()) {
+      docsetItems.add(new DocsetTreeItem(entry, this::useDocset));
+    }
+    if (docsetItems.size() == 1) {
+      docsetItems.get(0).setExpanded(true);
+      return docsetItems.get(0);
+    }
+    TreeItem<FileNode> docsetsRoot = new TreeItem<>(new FileNode("Documentation", "", false));
+    docsetsRoot.getChildren().addAll(docsetItems);
+    docsetsRoot.setExpanded(true);
+    return docsetsRoot;
+  }
+
   private void toggleSidebar() {
     isSidebarVisible = !isSidebarVisible;
 
@@ -517,153 +946,560 @@ public class JavaDocViewer extends Application {
     VBox content = new VBox();
     content.setStyle("-fx-background-color: white; -fx-padding: 0;");
 
-    webView = new WebView();
-    webEngine = webView.getEngine();
-    webEngine.setJavaScriptEnabled(true);
+    linkBridge = new LinkBridge(this::followLink, this::onLocationChanged, this::openLinkInTab);
+    scroller = new SmoothScroller(prefs.getBoolean("smoothScroll", true));
+    pagePool =
+        new PagePool(
+            prefs.getInt("retainedPages", DEFAULT_RETAINED_PAGES),
+            prefs.getLong("retainedPagesMB", DEFAULT_RETAINED_PAGES_MB) * 1024 * 1024);
+    maxLiveTabs = Math.max(1, prefs.getInt("liveTabs", DEFAULT_LIVE_TABS));
+
+    // The view on screen moves into whichever tab is selected
+    pageHost = new StackPane();
+    tabPane = new TabPane();
+    tabPane.setTabClosingPolicy(TabPane.TabClosingPolicy.ALL_TABS);
+    tabPane
+        .getSelectionModel()
+        .selectedItemProperty()
+        .addListener((obs, old, selected) -> onTabSelected(selected));
+    openTab(null, true);
+
+    VBox.setVgrow(tabPane, Priority.ALWAYS);
+    content.getChildren().add(tabPane);
+
+    return content;
+  }
+
+  /**
+   * Opens a tab.
+   *
+   * @param filePath The page to show, or null for the welcome page
+   * @param select Whether to show the tab now; otherwise its page is loaded once it is selected
+   */
+  private void openTab(String filePath, boolean select) {
+    Tab tab = new Tab(filePath == null ? "Welcome" : tabTitle(filePath));
+    BrowserTab browserTab = new BrowserTab(tab);
+    if (filePath != null) {
+      LinkedList<String> tabHistory = new LinkedList<>();
+      tabHistory.add(filePath);
+      browserTab.setHistory(tabHistory, 0);
+    }
+    tab.setUserData(browserTab);
+    tab.setOnClosed(e -> closeTab(browserTab));
+    tabs.add(browserTab);
+    tabPane.getTabs().add(tab);
+    if (select) {
+      tabPane.getSelectionModel().select(tab);
+      // In case selecting it raised no event, as for the first tab
+      onTabSelected(tab);
+    }
+  }
+
+  /** Opens a link clicked with Ctrl or Cmd in a tab behind the current one. */
+  private void openLinkInTab(String url) {
+    String key = pageServer == null ? null : pageServer.toKey(url);
+    if (key == null) {
+      return;
+    }
+    String fragment = URI.create(url).getFragment();
+    openTab(fragment == null ? key : key + "#" + fragment, false);
+  }
+
+  private void closeActiveTab() {
+    BrowserTab closing = activeTab;
+    if (closing != null) {
+      tabPane.getTabs().remove(closing.getTab());
+      closeTab(closing);
+    }
+  }
+
+  /** Frees a closed tab's view, and opens a fresh tab when the last one was closed. */
+  private void closeTab(BrowserTab tab) {
+    if (!tabs.remove(tab)) {
+      return;
+    }
+    if (tab == activeTab) {
+      // No other tab was selected in its place
+      if (currentLoad != null) {
+        currentLoad.cancel();
+        currentLoad = null;
+        setPageLoading(false);
+      }
+      pagePool.release(webView);
+      activeTab = null;
+    } else if (tab.getView() != null) {
+      pagePool.release(tab.getView());
+      tab.suspend(0);
+    }
+    if (tabs.isEmpty()) {
+      openTab(null, true);
+    }
+  }
+
+  /**
+   * Switches tabs. The tab left keeps its view alive unless too many tabs already do; a tab
+   * without a view gets one from the pool and shows its page again where it was scrolled to.
+   */
+  private void onTabSelected(Tab selected) {
+    if (selected == null || selected.getUserData() == activeTab) {
+      return;
+    }
+    BrowserTab next = (BrowserTab) selected.getUserData();
+    if (activeTab != null) {
+      leaveTab(activeTab);
+    }
+    activeTab = next;
+    next.getTab().setContent(pageHost);
+    history = next.getHistory();
+    historyIndex = next.getHistoryIndex();
+    updateNavigationButtons();
+
+    String page = next.getCurrentPage();
+    WebView view = next.getView();
+    if (view != null) {
+      next.takeView();
+      setActiveView(view);
+      if (webEngine.getLoadWorker().getState() == Worker.State.SUCCEEDED) {
+        // The theme may have changed while the tab was in the background
+        applyPageTheme();
+      }
+      if (page == null || stripAnchor(page).equals(shownPage)) {
+        return;
+      }
+      // A load was cut short when the tab was left
+    } else {
+      WebView spare = pagePool.takeSpare();
+      setActiveView(spare != null ? spare : createWebView());
+      if (page == null) {
+        showWelcome();
+        return;
+      }
+      pendingScrollY = next.getScrollY();
+    }
+    showHistoryEntry(page);
+  }
+
+  /** Stores the state of the tab being left and suspends the tabs used longest ago. */
+  private void leaveTab(BrowserTab tab) {
+    if (currentLoad != null) {
+      // It would otherwise finish in the tab selected next
+      currentLoad.cancel();
+      currentLoad = null;
+      setPageLoading(false);
+    }
+    tab.getTab().setContent(null);
+    tab.setHistory(history, historyIndex);
+    tab.keepView(webView, System.nanoTime());
+
+    List<BrowserTab> live = new ArrayList<>();
+    for (BrowserTab other : tabs) {
+      if (other.getView() != null) {
+        live.add(other);
+      }
+    }
+    live.sort(Comparator.comparingLong(BrowserTab::getLastShown));
+    // The tab about to be shown takes one of the live views
+    for (int i = 0; i < live.size() - (maxLiveTabs - 1); i++) {
+      suspendTab(live.get(i));
+    }
+  }
+
+  /**
+   * Suspends a background tab to its history and scroll position. Its page goes into the pool,
+   * where it may still be found when the tab is shown again.
+   */
+  private void suspendTab(BrowserTab tab) {
+    WebView view = tab.getView();
+    WebEngine engine = view.getEngine();
+    boolean loaded = engine.getLoadWorker().getState() == Worker.State.SUCCEEDED;
+    double scrollY = loaded ? scrollYOf(engine) : 0;
+    tab.suspend(scrollY);
+    String page = pageKeyOf(engine);
+    if (loaded && page != null) {
+      retainPage(page, view, scrollY);
+    } else {
+      pagePool.release(view);
+    }
+  }
+
+  private static String stripAnchor(String filePath) {
+    int hash = filePath.indexOf('#');
+    return hash < 0 ? filePath : filePath.substring(0, hash);
+  }
+
+  private static String tabTitle(String filePath) {
+    return Docset.getFileName(stripAnchor(filePath)).replace(".html", "");
+  }
+
+  private void setTabTitle(String title) {
+    if (activeTab != null) {
+      activeTab.getTab().setText(title);
+    }
+  }
 
-    webView.setOnScroll(
+  /**
+   * Creates a view for pages. Its events are only acted on while it is the view on screen, since
+   * retained views stay alive in the background.
+   */
+  private WebView createWebView() {
+    WebView view = new WebView();
+    WebEngine engine = view.getEngine();
+    engine.setJavaScriptEnabled(true);
+    // Catches navigations the bridge does not see, such as javadoc's own search box
+    engine
+        .locationProperty()
+        .addListener(
+            (obs, old, location) -> {
+              if (engine == webEngine) {
+                onLocationChanged(location);
+              }
+            });
+
+    view.setOnScroll(
         event -> {
-          double deltaY = event.getDeltaY() * 3;
-          webEngine.executeScript("window.scrollBy(0, " + (-deltaY) + ");");
+          scroller.scrollBy(engine, -event.getDeltaY() * 3);
           event.consume();
         });
 
     // Add loading listener
-    webEngine
+    engine
         .getLoadWorker()
         .stateProperty()
         .addListener(
             (obs, oldState, newState) -> {
+              if (engine != webEngine) {
+                return;
+              }
               switch (newState) {
                 case RUNNING:
-                  loadingIndicator.setVisible(true);
+                  setWebLoading(true);
                   break;
                 case SUCCEEDED:
+                  // Pages are served for either theme; this puts them in the current one
+                  applyPageTheme();
+                  // Only pages from the page server may call back into the viewer
+                  if (pageKeyOf(webEngine) != null) {
+                    linkBridge.install(webEngine);
+                  } else {
+                    linkBridge.uninstall(webEngine);
+                  }
+                  scrollToPendingAnchor();
+                  if (pendingScrollY > 0) {
+                    // A suspended tab is shown where it was left
+                    engine.executeScript("window.scrollTo(0, " + pendingScrollY + ");");
+                  }
+                  pendingScrollY = 0;
+                  setWebLoading(false);
+                  if (shownPage != null) {
+                    onPageShown(shownPage);
+                  }
+                  break;
                 case FAILED:
                 case CANCELLED:
-                  loadingIndicator.setVisible(false);
+                  setWebLoading(false);
                   break;
               }
             });
+    return view;
+  }
 
-    VBox.setVgrow(webView, Priority.ALWAYS);
-    content.getChildren().add(webView);
+  /** Puts a view on screen, taking the page it shows from its location. */
+  private void setActiveView(WebView view) {
+    webView = view;
+    webEngine = view.getEngine();
+    shownPage = pageKeyOf(webEngine);
+    webView.setZoom(currentZoom);
+    pageHost.getChildren().setAll(view);
+    setWebLoading(webEngine.getLoadWorker().getState() == Worker.State.RUNNING);
+  }
 
-    return content;
+  /**
+   * Moves the page on screen into the pool and puts an empty view in its place, before another
+   * page is loaded. A page that did not finish loading, or was not served, stays where it is
+   * and is replaced by the load.
+   */
+  private void leaveShownPage() {
+    if (retainShownPage()) {
+      WebView spare = pagePool.takeSpare();
+      setActiveView(spare != null ? spare : createWebView());
+    }
   }
 
-  private TreeItem<FileNode> buildFileTree(File directory) {
-    TreeItem<FileNode> root =
-        new TreeItem<>(new FileNode(directory.getName(), directory.getAbsolutePath(), false));
-    root.setExpanded(true);
-
-    if (directory.isDirectory()) {
-      File[] files = directory.listFiles();
-      if (files != null) {
-        java.util.Arrays.sort(
-            files,
-            (f1, f2) -> {
-              if (f1.isDirectory() && !f2.isDirectory()) return -1;
-              if (!f1.isDirectory() && f2.isDirectory()) return 1;
-              return f1.getName().compareTo(f2.getName());
-            });
+  /** Puts the page on screen into the pool. */
+  private boolean retainShownPage() {
+    if (shownPage == null || webEngine.getLoadWorker().getState() != Worker.State.SUCCEEDED) {
+      return false;
+    }
+    retainPage(shownPage, webView, scrollYOf(webEngine));
+    return true;
+  }
 
-        for (File file : files) {
-          if (file.isDirectory()) {
-            TreeItem<FileNode> item = buildFileTree(file);
-            root.getChildren().add(item);
-          } else if (file.getName().endsWith(".html")) {
-            TreeItem<FileNode> item =
-                new TreeItem<>(
-                    new FileNode(
-                        file.getName().replace(".html", ""), file.getAbsolutePath(), true));
-            root.getChildren().add(item);
-          }
-        }
-      }
+  /** Puts a loaded page into the pool, weighed by its number of elements. */
+  private void retainPage(String key, WebView view, double scrollY) {
+    Object elements = view.getEngine().executeScript("document.getElementsByTagName('*').length");
+    pagePool.retain(
+        key,
+        view,
+        scrollY,
+        elements instanceof Number
+            ? ((Number) elements).longValue() * PagePool.BYTES_PER_ELEMENT
+            : Long.MAX_VALUE);
+  }
+
+  private static double scrollYOf(WebEngine engine) {
+    Object scrollY = engine.executeScript("window.pageYOffset");
+    return scrollY instanceof Number ? ((Number) scrollY).doubleValue() : 0;
+  }
+
+  /** Gets the page a view shows, or null if it shows no page served by the page server. */
+  private String pageKeyOf(WebEngine engine) {
+    String location = engine.getLocation();
+    return pageServer == null || location == null ? null : pageServer.toKey(location);
+  }
+
+  /**
+   * Shows a history entry. A page still alive in the pool is swapped back onto the screen where
+   * it was left, without reading, parsing or laying it out again; any other is loaded.
+   */
+  private void showHistoryEntry(String filePath) {
+    int hash = filePath.indexOf('#');
+    String pagePath = hash < 0 ? filePath : filePath.substring(0, hash);
+    PagePool.Page page = pagePath.equals(shownPage) ? null : pagePool.take(pagePath);
+    if (page == null) {
+      loadFile(filePath);
+      return;
     }
+    pendingScrollY = 0;
 
-    return root;
+    if (currentLoad != null) {
+      currentLoad.cancel();
+      currentLoad = null;
+      setPageLoading(false);
+    }
+    WebView previous = webView;
+    boolean retained = retainShownPage();
+    setActiveView(page.getView());
+    if (!retained) {
+      // A failed or unfinished page is not worth keeping, but its view is
+      pagePool.release(previous);
+    }
+    shownPage = pagePath;
+    // The theme may have changed while the page was in the pool
+    applyPageTheme();
+    webEngine.executeScript("window.scrollTo(0, " + page.getScrollY() + ");");
+    addToRecentFiles(filePath);
+    setTabTitle(tabTitle(pagePath));
+    statusLabel.setText("Loaded: " + Docset.getFileName(pagePath));
+    onPageShown(pagePath);
   }
 
+  /**
+   * Loads a page in the background. The page is read into the cache off the FX thread, then the
+   * WebEngine loads its URL from the page server, which transforms it as it is served. Starting a
+   * new load cancels the one in flight.
+   */
   private void loadFile(String filePath) {
-    try {
-      statusLabel.setText("Loading: " + new File(filePath).getName());
-
-      String content;
-      if (fileCache.containsKey(filePath)) {
-        content = fileCache.get(filePath);
-      } else {
-        content = Files.readString(Paths.get(filePath));
-        fileCache.put(filePath, content);
-      }
+    if (currentLoad != null) {
+      currentLoad.cancel();
+    }
+
+    // Symbol hits point into a page with a "#member" anchor
+    int hash = filePath.indexOf('#');
+    String pagePath = hash < 0 ? filePath : filePath.substring(0, hash);
+    String anchor = hash < 0 ? null : filePath.substring(hash + 1);
+
+    String fileName = Docset.getFileName(pagePath);
+    if (pagePath.equals(shownPage)
+        && webEngine.getLoadWorker().getState() == Worker.State.SUCCEEDED) {
+      // Same document, another anchor: jump without reloading
+      currentLoad = null;
+      setPageLoading(false);
+      jumpToAnchor(anchor);
+      statusLabel.setText("Loaded: " + fileName);
+      return;
+    }
+    statusLabel.setText("Loading: " + fileName);
+    loadStartNanos = System.nanoTime();
+    loadWasPrefetched = prefetcher.isPrefetched(pagePath);
+
+    DocsetRegistry.Entry entry = docsets.find(pagePath);
+    Task<String> load =
+        new Task<>() {
+          @Override
+          protected String call() throws IOException {
+            // Gives the page's URL, or the transformed page itself if there is no server
+            if (entry != null) {
+              // An archive is opened here rather than on the FX thread
+              entry.open();
+            }
+            if (pageServer == null) {
+              return StyleInjector.transform(readPage(pagePath), Docset.toUrl(pagePath));
+            }
+            // Errors show up here rather than as a failed load, and the server sends a cache hit
+            pageServer.render(pagePath);
+            if (isCancelled()) {
+              return null;
+            }
+            String url = pageServer.toUrl(filePath);
+            if (url == null) {
+              throw new IOException("Not part of a registered docset: " + pagePath);
+            }
+            return url;
+          }
+        };
 
-      String styledContent = injectCustomStyles(content);
-      styledContent = injectCopyButtons(styledContent);
-      webEngine.loadContent(styledContent);
+    load.setOnSucceeded(
+        e -> {
+          // A newer selection may have replaced this load after it finished
+          if (load != currentLoad) {
+            return;
+          }
+          currentLoad = null;
+          setPageLoading(false);
+          if (entry != null) {
+            // Showing a page puts its docset to use
+            useDocset(entry);
+          }
+          if (pageServer != null) {
+            leaveShownPage();
+            webEngine.load(load.getValue());
+          } else {
+            pendingAnchor = anchor;
+            webEngine.loadContent(load.getValue());
+          }
 
-      addToRecentFiles(filePath);
-      statusLabel.setText("Loaded: " + new File(filePath).getName());
+          addToRecentFiles(filePath);
+          setTabTitle(tabTitle(pagePath));
+          statusLabel.setText("Loaded: " + fileName);
+          statusLabel.setTooltip(
+              new Tooltip(
+                  "Page cache: "
+                      + fileCache.getStats()
+                      + (diskPageCache == null ? "" : "\nDisk cache: " + diskPageCache)
+                      + "\nPrefetch: "
+                      + prefetcher.getStats()
+                      + "\nBack/forward: "
+                      + pagePool
+                      + "\nScrolling: "
+                      + scroller.getStats()));
+        });
+    load.setOnFailed(
+        e -> {
+          if (load != currentLoad) {
+            return;
+          }
+          currentLoad = null;
+          setPageLoading(false);
+          statusLabel.setText("Error loading file");
+          leaveShownPage();
+          webEngine.loadContent(PageServer.errorPage(load.getException().getMessage()));
+        });
 
-    } catch (IOException e) {
-      statusLabel.setText("Error loading file");
-      webEngine.loadContent(
-          "<div style='padding: 40px; text-align: center;'>"
-              + "<h1 style='color: #ef4444; font-family: system-ui;'>⚠️ Error Loading File</h1>"
-              + "<p style='color: #6b7280; font-family: system-ui;'>"
-              + e.getMessage()
-              + "</p>"
-              + "</div>");
+    currentLoad = load;
+    setPageLoading(true);
+    pageLoader.execute(load);
+  }
+
+  /** Reads a page through the cache. Safe to call from any thread. */
+  private String readPage(String filePath) throws IOException {
+    String content = fileCache.get(filePath);
+    if (content == null) {
+      Path path = Docset.toPath(filePath);
+      // Read the timestamp first so a concurrent rewrite shows up as stale later
+      long lastModified = PageCache.lastModified(path);
+      content = Files.readString(path);
+      fileCache.put(filePath, content, lastModified);
     }
+    return content;
   }
 
-  private String injectCopyButtons(String htmlContent) {
-    String copyScript =
-        """
-        <script>
-        document.addEventListener('DOMContentLoaded', function() {
-            document.querySelectorAll('pre').forEach(function(pre) {
-                if (!pre.querySelector('.copy-button')) {
-                    var button = document.createElement('button');
-                    button.className = 'copy-button';
-                    button.textContent = '📋 Copy';
-                    button.style.cssText = 'position: absolute; top: 8px; right: 8px; padding: 6px 12px; ' +
-                        'background: #646cff; color: white; border: none; border-radius: 6px; ' +
-                        'cursor: pointer; font-size: 12px; font-weight: 600; opacity: 0; transition: opacity 0.2s;';
-
-                    pre.style.position = 'relative';
-                    pre.appendChild(button);
-
-                    pre.addEventListener('mouseenter', function() {
-                        button.style.opacity = '1';
-                    });
-                    pre.addEventListener('mouseleave', function() {
-                        button.style.opacity = '0';
-                    });
-
-                    button.addEventListener('click', function() {
-                        var code = pre.querySelector('code') || pre;
-                        var text = code.textContent;
-                        navigator.clipboard.writeText(text).then(function() {
-                            button.textContent = '✓ Copied!';
-                            setTimeout(function() {
-                                button.textContent = '📋 Copy';
-                            }, 2000);
-                        });
-                    });
-                }
-            });
-        });
-        </script>
-        """;
+  /**
+   * Learns from a page having been shown, tallies how long it took, and prefetches the pages
+   * likely to follow it.
+   */
+  private void onPageShown(String key) {
+    if (loadStartNanos != 0) {
+      prefetcher.recordLoad(loadWasPrefetched, System.nanoTime() - loadStartNanos);
+      loadStartNanos = 0;
+    }
+    if (lastShownPage != null) {
+      navigationModel.record(lastShownPage, key);
+    }
+    lastShownPage = key;
+    prefetcher.prefetchFrom(key);
+  }
+
+  /**
+   * Reads and transforms a page ahead of a click. Called on the prefetch thread; pages of
+   * docsets that are not open yet are skipped rather than opened on speculation.
+   */
+  private String prefetchPage(String filePath) throws IOException {
+    DocsetRegistry.Entry entry = docsets.find(filePath);
+    if (entry == null || !entry.isOpen()) {
+      throw new IOException("Not in an open docset: " + filePath);
+    }
+    return pageServer == null ? readPage(filePath) : pageServer.render(filePath);
+  }
+
+  private void setPageLoading(boolean loading) {
+    pageLoading = loading;
+    loadingIndicator.setVisible(pageLoading || webLoading);
+  }
+
+  private void setWebLoading(boolean loading) {
+    webLoading = loading;
+    loadingIndicator.setVisible(pageLoading || webLoading);
+  }
 
-    if (htmlContent.contains("</body>")) {
-      return htmlContent.replace("</body>", copyScript + "</body>");
+  /**
+   * Follows a link clicked inside a page through the same pipeline as the sidebar, so the
+   * target is read through the cache and recorded in the history.
+   *
+   * @param url The absolute URL of the link
+   */
+  private void followLink(String url) {
+    String key = pageServer == null ? null : pageServer.toKey(url);
+    if (key == null) {
+      // Not a docs page after all; let the WebEngine have it
+      webEngine.load(url);
+      return;
+    }
+    String fragment = URI.create(url).getFragment();
+    String target = fragment == null ? key : key + "#" + fragment;
+    loadFile(target);
+    addToHistory(target);
+  }
+
+  /**
+   * Keeps the history in step with the WebEngine. Navigations started by the viewer are already
+   * recorded; any other, such as an anchor jump or a script setting the location, is recorded
+   * here.
+   */
+  private void onLocationChanged(String location) {
+    String key = pageServer == null || location == null ? null : pageServer.toKey(location);
+    shownPage = key;
+    if (key == null) {
+      return;
+    }
+    String fragment = URI.create(location).getFragment();
+    String target = fragment == null ? key : key + "#" + fragment;
+    if (historyIndex >= 0 && history.get(historyIndex).equals(target)) {
+      return;
+    }
+    addToHistory(target);
+    addToRecentFiles(target);
+    setTabTitle(tabTitle(key));
+    DocsetRegistry.Entry entry = docsets.find(key);
+    if (entry != null) {
+      useDocset(entry);
     }
-    return htmlContent;
   }
 
   private void addToHistory(String filePath) {
+    // Following a link to the page already shown adds nothing
+    if (historyIndex >= 0 && history.get(historyIndex).equals(filePath)) {
+      return;
+    }
     if (historyIndex < history.size() - 1) {
       history.subList(historyIndex + 1, history.size()).clear();
     }
@@ -690,7 +1526,7 @@ public class JavaDocViewer extends Application {
         .getItems()
         .addAll(
             recentFiles.stream()
-                .map(path -> new File(path).getName())
+                .map(Docset::getFileName)
                 .collect(Collectors.toList()));
   }
 
@@ -698,7 +1534,7 @@ public class JavaDocViewer extends Application {
     if (historyIndex > 0) {
       historyIndex--;
       String filePath = history.get(historyIndex);
-      loadFile(filePath);
+      showHistoryEntry(filePath);
       updateNavigationButtons();
     }
   }
@@ -707,7 +1543,7 @@ public class JavaDocViewer extends Application {
     if (historyIndex < history.size() - 1) {
       historyIndex++;
       String filePath = history.get(historyIndex);
-      loadFile(filePath);
+      showHistoryEntry(filePath);
       updateNavigationButtons();
     }
   }
@@ -732,508 +1568,6 @@ public class JavaDocViewer extends Application {
     webView.setZoom(currentZoom);
   }
 
-  private String injectCustomStyles(String htmlContent) {
-    String customStyles =
-        """
-            <style>
-                * {
-                    box-sizing: border-box;
-                }
-
-                html {
-                    scroll-behavior: smooth !important;
-                }
-
-                body {
-                    font-family: 'Inter', -apple-system, BlinkMacSystemFont, 'Segoe UI', Roboto, Oxygen, Ubuntu, sans-serif !important;
-                    line-height: 1.7 !important;
-                    color: #1e293b !important;
-                    background: #ffffff !important;
-                    font-size: 15px !important;
-                    margin: 0 !important;
-                    padding: 0 !important;
-                }
-
-                /* Hide default navigation and TOC */
-                header[role="banner"],
-                nav.toc {
-                    display: none !important;
-                }
-
-                /* Main content area */
-                .main-grid {
-                    display: block !important;
-                    max-width: 100% !important;
-                }
-
-                main[role="main"] {
-                    padding: 48px 64px !important;
-                    max-width: 1400px !important;
-                    margin: 0 auto !important;
-                }
-
-                /* Header section */
-                .header {
-                    margin-bottom: 40px !important;
-                    padding-bottom: 24px !important;
-                    border-bottom: 3px solid #e5e7eb !important;
-                    position: relative !important;
-                }
-
-                .header::after {
-                    content: '' !important;
-                    position: absolute !important;
-                    bottom: -3px !important;
-                    left: 0 !important;
-                    width: 120px !important;
-                    height: 3px !important;
-                    background: linear-gradient(90deg, #646cff, #bd34fe) !important;
-                }
-
-                .header .title {
-                    font-size: 3em !important;
-                    background: linear-gradient(120deg, #646cff 0%, #bd34fe 100%) !important;
-                    -webkit-background-clip: text !important;
-                    -webkit-text-fill-color: transparent !important;
-                    background-clip: text !important;
-                    font-weight: 800 !important;
-                    letter-spacing: -0.03em !important;
-                    margin: 0 !important;
-                }
-
-                /* Inheritance tree */
-                .inheritance {
-                    background: linear-gradient(135deg, #f8fafc 0%, #f1f5f9 100%) !important;
-                    padding: 20px 24px !important;
-                    border-radius: 12px !important;
-                    border-left: 4px solid #646cff !important;
-                    margin: 24px 0 !important;
-                    font-family: 'Fira Code', 'Consolas', monospace !important;
-                    font-size: 14px !important;
-                }
-
-                .inheritance div {
-                    margin-left: 24px !important;
-                    padding-left: 20px !important;
-                    border-left: 2px solid #cbd5e1 !important;
-                }
-
-                .inheritance a {
-                    color: #646cff !important;
-                    font-weight: 600 !important;
-                }
-
-                /* Class description */
-                .class-description {
-                    margin: 32px 0 !important;
-                }
-
-                .type-signature {
-                    background: linear-gradient(135deg, #f8fafc 0%, #ffffff 100%) !important;
-                    padding: 20px 24px !important;
-                    border-radius: 12px !important;
-                    border-left: 4px solid #10b981 !important;
-                    margin: 20px 0 !important;
-                    font-family: 'Fira Code', 'Consolas', monospace !important;
-                    font-size: 15px !important;
-                    box-shadow: 0 2px 4px rgba(0,0,0,0.05) !important;
-                }
-
-                .type-signature .modifiers {
-                    color: #8b5cf6 !important;
-                    font-weight: 600 !important;
-                }
-
-                .type-signature .element-name {
-                    color: #0ea5e9 !important;
-                    font-weight: 700 !important;
-                }
-
-                .type-signature .extends-implements {
-                    color: #64748b !important;
-                }
-
-                /* Section headers */
-                h2 {
-                    font-size: 2em !important;
-                    color: #646cff !important;
-                    font-weight: 700 !important;
-                    margin-top: 48px !important;
-                    margin-bottom: 24px !important;
-                    padding-bottom: 12px !important;
-                    border-bottom: 2px solid #e5e7eb !important;
-                    position: relative !important;
-                }
-
-                h2::before {
-                    content: '' !important;
-                    position: absolute !important;
-                    bottom: -2px !important;
-                    left: 0 !important;
-                    width: 80px !important;
-                    height: 2px !important;
-                    background: linear-gradient(90deg, #646cff, #bd34fe) !important;
-                }
-
-                h3 {
-                    font-size: 1.5em !important;
-                    color: #475569 !important;
-                    font-weight: 700 !important;
-                    margin-top: 32px !important;
-                    margin-bottom: 16px !important;
-                }
-
-                /* Summary tables */
-                .summary-table,
-                .two-column-summary,
-                .three-column-summary {
-                    width: 100% !important;
-                    border-radius: 12px !important;
-                    overflow: hidden !important;
-                    box-shadow: 0 4px 6px -1px rgba(0,0,0,0.1), 0 2px 4px -1px rgba(0,0,0,0.06) !important;
-                    margin: 24px 0 !important;
-                    border: none !important;
-                    display: grid !important;
-                }
-
-                .three-column-summary {
-                    grid-template-columns: auto 1fr 2fr !important;
-                }
-
-                .two-column-summary {
-                    grid-template-columns: 1fr 2fr !important;
-                }
-
-                .table-header {
-                    background: linear-gradient(135deg, #646cff 0%, #535bf2 100%) !important;
-                    color: white !important;
-                    font-weight: 700 !important;
-                    text-transform: uppercase !important;
-                    font-size: 12px !important;
-                    letter-spacing: 1px !important;
-                    padding: 16px 20px !important;
-                    border: none !important;
-                }
-
-                .col-first,
-                .col-second,
-                .col-last,
-                .col-constructor-name {
-                    padding: 16px 20px !important;
-                    border-bottom: 1px solid #e5e7eb !important;
-                    border-right: 1px solid #f1f5f9 !important;
-                }
-
-                .col-last {
-                    border-right: none !important;
-                }
-
-                .even-row-color {
-                    background-color: #ffffff !important;
-                }
-
-                .odd-row-color {
-                    background-color: #f9fafb !important;
-                }
-
-                .even-row-color:hover,
-                .odd-row-color:hover {
-                    background-color: #f0f4ff !important;
-                    transition: background-color 0.2s ease !important;
-                }
-
-                /* Code elements */
-                code {
-                    background: linear-gradient(135deg, #fef3c7 0%, #fde68a 100%) !important;
-                    padding: 3px 8px !important;
-                    border-radius: 6px !important;
-                    font-family: 'Fira Code', 'Consolas', 'Monaco', monospace !important;
-                    color: #92400e !important;
-                    font-size: 0.9em !important;
-                    border: 1px solid #fbbf24 !important;
-                    font-weight: 600 !important;
-                }
-
-                .member-signature code,
-                .type-signature code {
-                    background: transparent !important;
-                    border: none !important;
-                    padding: 0 !important;
-                    color: inherit !important;
-                }
-
-                /* Member signatures */
-                .member-signature {
-                    background: linear-gradient(135deg, #f0f9ff 0%, #e0f2fe 100%) !important;
-                    border-left: 4px solid #0ea5e9 !important;
-                    padding: 20px 24px !important;
-                    border-radius: 12px !important;
-                    margin: 20px 0 !important;
-                    box-shadow: 0 2px 4px rgba(0,0,0,0.05) !important;
-                    font-family: 'Fira Code', 'Consolas', monospace !important;
-                    font-size: 14px !important;
-                }
-
-                .member-signature .modifiers {
-                    color: #8b5cf6 !important;
-                    font-weight: 600 !important;
-                }
-
-                .member-signature .return-type {
-                    color: #059669 !important;
-                    font-weight: 600 !important;
-                }
-
-                .member-signature .element-name {
-                    color: #0ea5e9 !important;
-                    font-weight: 700 !important;
-                }
-
-                .member-signature .parameters {
-                    color: #64748b !important;
-                }
-
-                .member-signature .exceptions {
-                    color: #dc2626 !important;
-                    font-weight: 600 !important;
-                }
-
-                /* Links */
-                a {
-                    color: #646cff !important;
-                    text-decoration: none !important;
-                    font-weight: 500 !important;
-                    transition: all 0.2s ease !important;
-                    border-bottom: 2px solid transparent !important;
-                }
-
-                a:hover {
-                    color: #535bf2 !important;
-                    border-bottom-color: #646cff !important;
-                }
-
-                .member-name-link {
-                    font-weight: 600 !important;
-                }
-
-                /* Notes section (dl.notes) */
-                dl.notes {
-                    background: linear-gradient(135deg, #fef3c7 0%, #fde68a 100%) !important;
-                    border-left: 4px solid #f59e0b !important;
-                    padding: 24px !important;
-                    border-radius: 12px !important;
-                    margin: 24px 0 !important;
-                    box-shadow: 0 2px 4px rgba(0,0,0,0.05) !important;
-                }
-
-                dl.notes dt {
-                    font-weight: 700 !important;
-                    color: #92400e !important;
-                    margin-top: 16px !important;
-                    margin-bottom: 8px !important;
-                    text-transform: uppercase !important;
-                    font-size: 12px !important;
-                    letter-spacing: 0.5px !important;
-                }
-
-                dl.notes dt:first-child {
-                    margin-top: 0 !important;
-                }
-
-                dl.notes dd {
-                    margin-left: 0 !important;
-                    margin-bottom: 12px !important;
-                    color: #78350f !important;
-                }
-
-                /* Tag list */
-                .tag-list {
-                    list-style: none !important;
-                    padding: 0 !important;
-                    margin: 8px 0 !important;
-                }
-
-                .tag-list li {
-                    margin: 4px 0 !important;
-                    padding-left: 20px !important;
-                    position: relative !important;
-                }
-
-                .tag-list li::before {
-                    content: '→' !important;
-                    position: absolute !important;
-                    left: 0 !important;
-                    color: #f59e0b !important;
-                    font-weight: bold !important;
-                }
-
-                /* Horizontal scroll */
-                .horizontal-scroll {
-                    overflow-x: auto !important;
-                }
-
-                /* Block elements */
-                .block {
-                    line-height: 1.8 !important;
-                    color: #475569 !important;
-                    margin: 16px 0 !important;
-                }
-
-                /* Details sections */
-                .details {
-                    margin-top: 48px !important;
-                }
-
-                .detail {
-                    margin: 32px 0 !important;
-                    padding: 24px !important;
-                    background: #fafafa !important;
-                    border-radius: 12px !important;
-                    border: 1px solid #e5e7eb !important;
-                }
-
-                .detail:hover {
-                    background: #f8f9fa !important;
-                    border-color: #cbd5e1 !important;
-                    transition: all 0.2s ease !important;
-                }
-
-                /* Member list */
-                .member-list {
-                    list-style: none !important;
-                    padding: 0 !important;
-                }
-
-                /* Inherited list */
-                .inherited-list {
-                    background: #f8f9fa !important;
-                    padding: 20px 24px !important;
-                    border-radius: 8px !important;
-                    margin: 16px 0 !important;
-                    border-left: 3px solid #94a3b8 !important;
-                }
-
-                .inherited-list h3 {
-                    font-size: 0.95em !important;
-                    color: #64748b !important;
-                    margin: 0 0 12px 0 !important;
-                    font-weight: 600 !important;
-                    text-transform: uppercase !important;
-                    letter-spacing: 0.5px !important;
-                }
-
-                .inherited-list code {
-                    background: white !important;
-                    border-color: #e5e7eb !important;
-                    color: #64748b !important;
-                }
-
-                /* Footer */
-                footer {
-                    margin-top: 64px !important;
-                    padding: 32px 0 !important;
-                    border-top: 2px solid #e5e7eb !important;
-                }
-
-                footer .legal-copy {
-                    color: #94a3b8 !important;
-                    font-size: 12px !important;
-                    line-height: 1.8 !important;
-                }
-
-                footer a {
-                    color: #646cff !important;
-                    border-bottom: 1px solid transparent !important;
-                }
-
-                footer a:hover {
-                    border-bottom-color: #646cff !important;
-                }
-
-                /* Paragraphs */
-                p {
-                    margin: 16px 0 !important;
-                    line-height: 1.8 !important;
-                }
-
-                /* Lists */
-                ul:not(.summary-list):not(.tag-list):not(.member-list):not(.nav-list):not(.sub-nav-list):not(.toc-list),
-                ol:not(.toc-list):not(.sub-nav-list) {
-                    line-height: 1.9 !important;
-                    padding-left: 28px !important;
-                    margin: 16px 0 !important;
-                }
-
-                li {
-                    margin: 8px 0 !important;
-                }
-
-                /* Summary list */
-                .summary-list {
-                    list-style: none !important;
-                    padding: 0 !important;
-                }
-
-                /* Caption */
-                .caption {
-                    font-size: 0.9em !important;
-                    color: #64748b !important;
-                    margin-bottom: 8px !important;
-                    font-weight: 600 !important;
-                    text-transform: uppercase !important;
-                    letter-spacing: 0.5px !important;
-                }
-
-                /* Responsive adjustments */
-                @media (max-width: 1200px) {
-                    main[role="main"] {
-                        padding: 32px 40px !important;
-                    }
-                }
-
-                @media (max-width: 768px) {
-                    main[role="main"] {
-                        padding: 24px 20px !important;
-                    }
-
-                    .header .title {
-                        font-size: 2em !important;
-                    }
-
-                    h2 {
-                        font-size: 1.5em !important;
-                    }
-                }
-
-                /* Scrollbar styling */
-                ::-webkit-scrollbar {
-                    width: 10px !important;
-                    height: 10px !important;
-                }
-
-                ::-webkit-scrollbar-track {
-                    background: #f1f5f9 !important;
-                    border-radius: 5px !important;
-                }
-
-                ::-webkit-scrollbar-thumb {
-                    background: linear-gradient(135deg, #646cff, #bd34fe) !important;
-                    border-radius: 5px !important;
-                }
-
-                ::-webkit-scrollbar-thumb:hover {
-                    background: linear-gradient(135deg, #535bf2, #a020f0) !important;
-                }
-            </style>
-        """;
-
-    if (htmlContent.contains("</head>")) {
-      return htmlContent.replace("</head>", customStyles + "</head>");
-    }
-
-    return htmlContent;
-  }
-
   private void showWelcome() {
     String welcomeHTML =
         """
@@ -1439,45 +1773,135 @@ public class JavaDocViewer extends Application {
             </html>
         """;
 
+    leaveShownPage();
+    setTabTitle("Welcome");
     webEngine.loadContent(welcomeHTML);
     statusLabel.setText("Welcome - Ready to browse documentation");
   }
 
   private void filterFiles(String query) {
     if (query == null || query.isEmpty()) {
-      fileTree.setRoot(buildFileTree(new File(docsPath)));
+      searchScheduler.cancel();
+      fileTree.setRoot(docsTreeRoot);
       statusLabel.setText("Ready");
       return;
     }
+    searchScheduler.submit(query);
+  }
 
-    TreeItem<FileNode> root = new TreeItem<>(new FileNode("🔍 Search Results", "", false));
-    root.setExpanded(true);
+  /** Re-runs the current query from scratch after the index or the docs changed. */
+  private void refreshSearch() {
+    if (!searchField.getText().isEmpty()) {
+      searchScheduler.refresh(searchField.getText());
+    }
+  }
 
-    try {
-      long count =
-          Files.walk(Paths.get(docsPath))
-              .filter(path -> path.toString().endsWith(".html"))
-              .filter(
-                  path -> path.getFileName().toString().toLowerCase().contains(query.toLowerCase()))
-              .peek(
-                  path -> {
-                    TreeItem<FileNode> item =
-                        new TreeItem<>(
-                            new FileNode(
-                                path.getFileName().toString().replace(".html", ""),
-                                path.toString(),
-                                true));
-                    root.getChildren().add(item);
-                  })
-              .count();
-
-      statusLabel.setText("Found " + count + " results for: " + query);
-    } catch (IOException e) {
-      e.printStackTrace();
-      statusLabel.setText("Error searching files");
+  private void showSearchResults(SearchScheduler.Results results) {
+    statusLabel.setText(
+        "Found " + results.getNodes().size() + " results for: " + results.getQuery());
+  }
+
+  /** Runs a sidebar query off the FX thread. */
+  private SearchScheduler.Results searchDocs(
+      String query,
+      SearchScheduler.Results previous,
+      BooleanSupplier cancelled,
+      Consumer<FileNode> found)
+      throws IOException {
+    if (query.startsWith(GREP_PREFIX)) {
+      return grepDocs(query, query.substring(GREP_PREFIX.length()).strip(), cancelled, found);
+    }
+    TextQuery textQuery = TextQuery.parse(query);
+    if (textQuery != null) {
+      return searchText(query, textQuery, cancelled);
     }
 
-    fileTree.setRoot(root);
+    List<FileNode> nodes = new ArrayList<>();
+    Set<String> symbolPages = new HashSet<>();
+    for (SearchHit hit : docsets.searchSymbols(query, MAX_SYMBOL_RESULTS)) {
+      nodes.add(hitNode(hit.getTitle(), hit.getPath()));
+      symbolPages.add(hit.getPath());
+    }
+
+    // Until an index is ready only file names are matched
+    boolean indexed = docsets.isIndexed();
+    if (!indexed && previous != null) {
+      // A name containing the longer query also contained the shorter one
+      String lowerQuery = query.toLowerCase();
+      for (FileNode node : previous.getNodes()) {
+        String path = node.getPath();
+        // Symbol hits, anchored into their page, were just looked up again above
+        if (path.indexOf('#') >= 0 || symbolPages.contains(path)) {
+          continue;
+        }
+        if (Docset.getFileName(path).toLowerCase().contains(lowerQuery)) {
+          nodes.add(node);
+        }
+      }
+      return new SearchScheduler.Results(query, nodes, true);
+    }
+
+    for (SearchHit hit : docsets.searchPages(query, MAX_SEARCH_RESULTS, cancelled)) {
+      if (!symbolPages.contains(hit.getPath())) {
+        nodes.add(hitNode(hit.getTitle(), hit.getPath()));
+      }
+    }
+    // Once an index answers only the best hits are kept, so a longer query cannot be narrowed
+    return new SearchScheduler.Results(query, nodes, !indexed);
+  }
+
+  /** Runs a "substring" or /regex/ query over page text, narrowed by the trigram indexes. */
+  private SearchScheduler.Results searchText(
+      String query, TextQuery textQuery, BooleanSupplier cancelled) throws IOException {
+    List<FileNode> nodes = new ArrayList<>();
+    for (SearchHit hit : docsets.searchText(textQuery, MAX_SEARCH_RESULTS, cancelled)) {
+      nodes.add(hitNode(hit.getTitle(), hit.getPath()));
+    }
+    return new SearchScheduler.Results(query, nodes, false);
+  }
+
+  /** Greps the raw page files on all cores, showing matching lines as they are found. */
+  private SearchScheduler.Results grepDocs(
+      String query, String pattern, BooleanSupplier cancelled, Consumer<FileNode> found)
+      throws IOException {
+    List<FileNode> nodes = new ArrayList<>();
+    grepScanner.scan(
+        docsets.listPages(),
+        pattern,
+        match -> {
+          String title =
+              match.getFile().getFileName().toString().replace(".html", "")
+                  + ":"
+                  + match.getLineNumber()
+                  + "  "
+                  + match.getSnippet();
+          FileNode node = hitNode(title, Docset.toKey(match.getFile()));
+          synchronized (nodes) {
+            if (nodes.size() < MAX_SEARCH_RESULTS) {
+              nodes.add(node);
+              found.accept(node);
+            }
+          }
+        },
+        () -> {
+          synchronized (nodes) {
+            return nodes.size() >= MAX_SEARCH_RESULTS || cancelled.getAsBoolean();
+          }
+        });
+    synchronized (nodes) {
+      return new SearchScheduler.Results(query, new ArrayList<>(nodes), false);
+    }
+  }
+
+  /** Creates a result node, naming the hit's docset when there are several. */
+  private FileNode hitNode(String title, String path) {
+    if (docsets.getEntries().size() > 1) {
+      DocsetRegistry.Entry entry = docsets.find(path);
+      if (entry != null) {
+        title += "  · " + entry.getName();
+      }
+    }
+    return new FileNode(title, path, true);
   }
 
   private void toggleDarkMode() {
@@ -1500,232 +1924,35 @@ public class JavaDocViewer extends Application {
               + "-fx-padding: 24 12;");
     }
 
-    // Refresh current content with dark mode styles
-    if (!history.isEmpty() && historyIndex >= 0 && historyIndex < history.size()) {
-      String currentPath = history.get(historyIndex);
-      try {
-        String content = Files.readString(Paths.get(currentPath));
-        String styledContent = injectCustomStyles(content);
-        if (isDarkMode) {
-          styledContent = injectDarkModeStyles(styledContent);
-        }
-        styledContent = injectCopyButtons(styledContent);
-        webEngine.loadContent(styledContent);
-      } catch (IOException e) {
-        // Ignore errors on refresh
-      }
+    // Restyle the page in place; a page still loading is themed when it finishes
+    if (webEngine.getLoadWorker().getState() == Worker.State.SUCCEEDED) {
+      applyPageTheme();
     }
   }
 
-  private String injectDarkModeStyles(String htmlContent) {
-    String darkStyles =
-        """
-        <style>
-            body {
-                background: #1e1e2e !important;
-                color: #cdd6f4 !important;
-            }
-
-            main[role="main"] {
-                background: #1e1e2e !important;
-            }
-
-            .header {
-                border-bottom-color: #313244 !important;
-            }
-
-            .header .title {
-                background: linear-gradient(120deg, #89b4fa 0%, #f5c2e7 100%) !important;
-                -webkit-background-clip: text !important;
-                -webkit-text-fill-color: transparent !important;
-                background-clip: text !important;
-            }
-
-            h2 {
-                color: #89b4fa !important;
-                border-bottom-color: #313244 !important;
-            }
-
-            h2::before {
-                background: linear-gradient(90deg, #89b4fa, #f5c2e7) !important;
-            }
-
-            h3 {
-                color: #a6adc8 !important;
-            }
-
-            .inheritance {
-                background: linear-gradient(135deg, #313244 0%, #45475a 100%) !important;
-                border-left-color: #89b4fa !important;
-            }
-
-            .type-signature {
-                background: linear-gradient(135deg, #313244 0%, #1e1e2e 100%) !important;
-                border-left-color: #a6e3a1 !important;
-            }
-
-            .type-signature .modifiers {
-                color: #cba6f7 !important;
-            }
-
-            .type-signature .element-name {
-                color: #89dceb !important;
-            }
-
-            .type-signature .extends-implements {
-                color: #a6adc8 !important;
-            }
-
-            .table-header {
-                background: linear-gradient(135deg, #89b4fa 0%, #74c7ec 100%) !important;
-                color: #1e1e2e !important;
-            }
-
-            .col-first,
-            .col-second,
-            .col-last,
-            .col-constructor-name {
-                border-bottom-color: #313244 !important;
-                border-right-color: #45475a !important;
-            }
-
-            .even-row-color {
-                background-color: #1e1e2e !important;
-            }
-
-            .odd-row-color {
-                background-color: #181825 !important;
-            }
-
-            .even-row-color:hover,
-            .odd-row-color:hover {
-                background-color: #313244 !important;
-            }
-
-            code {
-                background: linear-gradient(135deg, #45475a 0%, #585b70 100%) !important;
-                color: #f9e2af !important;
-                border-color: #6c7086 !important;
-            }
-
-            .member-signature {
-                background: linear-gradient(135deg, #313244 0%, #45475a 100%) !important;
-                border-left-color: #89dceb !important;
-            }
-
-            .member-signature .modifiers {
-                color: #cba6f7 !important;
-            }
-
-            .member-signature .return-type {
-                color: #a6e3a1 !important;
-            }
-
-            .member-signature .element-name {
-                color: #89dceb !important;
-            }
-
-            .member-signature .parameters {
-                color: #a6adc8 !important;
-            }
-
-            .member-signature .exceptions {
-                color: #f38ba8 !important;
-            }
-
-            a {
-                color: #89b4fa !important;
-            }
-
-            a:hover {
-                color: #74c7ec !important;
-                border-bottom-color: #89b4fa !important;
-            }
-
-            dl.notes {
-                background: linear-gradient(135deg, #45475a 0%, #585b70 100%) !important;
-                border-left-color: #f9e2af !important;
-            }
-
-            dl.notes dt {
-                color: #f9e2af !important;
-            }
-
-            dl.notes dd {
-                color: #cdd6f4 !important;
-            }
-
-            .tag-list li::before {
-                color: #f9e2af !important;
-            }
-
-            .block {
-                color: #bac2de !important;
-            }
-
-            .detail {
-                background: #181825 !important;
-                border-color: #313244 !important;
-            }
-
-            .detail:hover {
-                background: #313244 !important;
-                border-color: #45475a !important;
-            }
-
-            .inherited-list {
-                background: #313244 !important;
-                border-left-color: #6c7086 !important;
-            }
-
-            .inherited-list h3 {
-                color: #a6adc8 !important;
-            }
-
-            .inherited-list code {
-                background: #45475a !important;
-                border-color: #585b70 !important;
-                color: #a6adc8 !important;
-            }
-
-            footer {
-                border-top-color: #313244 !important;
-            }
-
-            footer .legal-copy {
-                color: #6c7086 !important;
-            }
-
-            footer a {
-                color: #89b4fa !important;
-            }
-
-            footer a:hover {
-                border-bottom-color: #89b4fa !important;
-            }
-
-            .caption {
-                color: #a6adc8 !important;
-            }
-
-            ::-webkit-scrollbar-track {
-                background: #313244 !important;
-            }
-
-            ::-webkit-scrollbar-thumb {
-                background: linear-gradient(135deg, #89b4fa, #f5c2e7) !important;
-            }
+  private void applyPageTheme() {
+    webEngine.executeScript(StyleInjector.getThemeScript(isDarkMode));
+  }
 
-            ::-webkit-scrollbar-thumb:hover {
-                background: linear-gradient(135deg, #74c7ec, #f5c2e7) !important;
-            }
-        </style>
-        """;
+  private void jumpToAnchor(String anchor) {
+    if (anchor == null) {
+      webEngine.executeScript("window.scrollTo(0, 0);");
+      return;
+    }
+    pendingAnchor = anchor;
+    scrollToPendingAnchor();
+  }
 
-    if (htmlContent.contains("</head>")) {
-      return htmlContent.replace("</head>", darkStyles + "</head>");
+  private void scrollToPendingAnchor() {
+    if (pendingAnchor == null) {
+      return;
     }
-    return htmlContent;
+    String id = pendingAnchor.replace("\\", "\\\\").replace("'", "\\'");
+    pendingAnchor = null;
+    webEngine.executeScript(
+        "(function() { var target = document.getElementById('"
+            + id
+            + "'); if (target) { target.scrollIntoView(); } })();");
   }
 
   private void loadPreferences() {
@@ -1735,7 +1962,7 @@ public class JavaDocViewer extends Application {
     // Load recent files
     for (int i = 0; i < MAX_RECENT; i++) {
       String recentFile = prefs.get("recentFile" + i, null);
-      if (recentFile != null && new File(recentFile).exists()) {
+      if (recentFile != null && docsets.exists(recentFile)) {
         recentFiles.add(recentFile);
       }
     }
@@ -1750,6 +1977,11 @@ public class JavaDocViewer extends Application {
     prefs.putBoolean("darkMode", isDarkMode);
     prefs.putDouble("zoom", currentZoom);
     prefs.putDouble("dividerPosition", splitPane.getDividerPositions()[0]);
+    prefs.put(
+        "docsets",
+        docsets.getEntries().stream()
+            .map(entry -> entry.getLocation().toString())
+            .collect(Collectors.joining("\n")));
 
     // Save recent files
     for (int i = 0; i < recentFiles.size() && i < MAX_RECENT; i++) {
@@ -0,0 +1,503 @@
+package com.javadocviewer.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Keeps transformed pages on disk between sessions, so the first visit to a page in a new
+ * session skips reading and transforming it. Pages are stored deflated in one append-only file,
+ * each record keyed by the page's key, its modification time and the version of the
+ * transformation; a record that no longer matches is simply never read again. The index is
+ * rebuilt from the record headers when the file is opened, and records are read with positional
+ * reads. The file is never memory-mapped, so it can be truncated or replaced while the cache is
+ * in use without pulling pages out from under a reader, on Windows as much as anywhere else.
+ *
+ * <p>Only one process uses a cache file at a time; it holds a lock on a {@code .lock} file next
+ * to it for as long as the cache is open. The lock is not taken on the cache file itself, since
+ * compaction replaces that file and would drop a lock held on it.
+ * <p>Writes are queued to a background thread. Once the file outgrows its budget, it is
+ * rewritten with only the most recently used current records, down to three quarters of the
+ * budget. All methods are thread-safe.
+ */
+public class DiskPageCache implements Closeable {
+
+  private static final int FILE_MAGIC = 0x4A445043;
+  private static final int FORMAT_VERSION = 2;
+  private static final int FILE_HEADER_BYTES = 8;
+
+  private static final int RECORD_MAGIC = 0x50414745;
+  // Magic, modification time, transformation version, key, raw and stored lengths
+  private static final int RECORD_HEADER_BYTES = 4 + 8 + 8 + 4 + 4 + 4;
+
+  /** Where a record lies in the file, and what it was written for. */
+  private static final class Slot {
+    final long lastModified;
+    final long version;
+    final long offset;
+    final int keyLength;
+    final int rawLength;
+    final int dataLength;
+
+    Slot(
+        long lastModified,
+        long version,
+        long offset,
+        int keyLength,
+        int rawLength,
+        int dataLength) {
+      this.lastModified = lastModified;
+      this.version = version;
+      this.offset = offset;
+      this.keyLength = keyLength;
+      this.rawLength = rawLength;
+      this.dataLength = dataLength;
+    }
+
+    long length() {
+      return RECORD_HEADER_BYTES + keyLength + (long) dataLength;
+    }
+
+    long dataOffset() {
+      return offset + RECORD_HEADER_BYTES + keyLength;
+    }
+
+    Slot movedTo(long newOffset) {
+      return new Slot(lastModified, version, newOffset, keyLength, rawLength, dataLength);
+    }
+  }
+
+  private final Path file;
+  private final long maxBytes;
+  private final long version;
+  private final ExecutorService writer;
+
+  // Keyed by page, least recently used first
+  private final LinkedHashMap<String, Slot> slots = new LinkedHashMap<>(256, 0.75f, true);
+  private FileChannel lockChannel;
+  private FileChannel channel;
+  private long fileSize;
+  private long hits;
+  private long misses;
+
+  private DiskPageCache(Path file, long maxBytes, long version) {
+    this.file = file;
+    this.maxBytes = maxBytes;
+    this.version = version;
+    this.writer =
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "disk-page-cache");
+              thread.setDaemon(true);
+              return thread;
+            });
+  }
+
+  /**
+   * Opens the cache in {@code ~/.javadoc-viewer/pages}.
+   *
+   * @param maxBytes The size the file may grow to
+   * @param version The version of the transformation the cached pages must come from
+   * @return The cache
+   * @throws IOException If the file can neither be opened nor created, or another process has it
+   */
+  public static DiskPageCache openDefault(long maxBytes, long version) throws IOException {
+    return open(
+        Paths.get(System.getProperty("user.home"), ".javadoc-viewer", "pages"),
+        maxBytes,
+        version);
+  }
+
+  /**
+   * Opens a cache file, creating it if needed. A file in another format is started over, and a
+   * record cut short by a crash is dropped along with anything after it.
+   *
+   * @param file The cache file
+   * @param maxBytes The size the file may grow to
+   * @param version The version of the transformation the cached pages must come from
+   * @return The cache
+   * @throws IOException If the file can neither be opened nor created, or another process has it
+   */
+  public static DiskPageCache open(Path file, long maxBytes, long version) throws IOException {
+    DiskPageCache cache = new DiskPageCache(file, maxBytes, version);
+    Files.createDirectories(file.toAbsolutePath().getParent());
+    Path lockFile = file.resolveSibling(file.getFileName() + ".lock");
+    cache.lockChannel =
+        FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    try {
+      FileLock lock;
+      try {
+        lock = cache.lockChannel.tryLock();
+      } catch (OverlappingFileLockException e) {
+        // Held by another cache in this process
+        lock = null;
+      }
+      if (lock == null) {
+        throw new IOException("Page cache is already in use: " + file);
+      }
+      cache.channel =
+          FileChannel.open(
+              file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      synchronized (cache) {
+        cache.readIndex();
+      }
+    } catch (IOException | RuntimeException e) {
+      cache.writer.shutdown();
+      if (cache.channel != null) {
+        cache.channel.close();
+      }
+      // Releases the lock too
+      cache.lockChannel.close();
+      throw e;
+    }
+    return cache;
+  }
+
+  /** Rebuilds the index from the record headers, keeping the last record of each page. */
+  private void readIndex() throws IOException {
+    slots.clear();
+    long size = channel.size();
+    ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+    if (size < FILE_HEADER_BYTES || !readFileHeader()) {
+      channel.truncate(0);
+      writeFileHeader(channel);
+      fileSize = FILE_HEADER_BYTES;
+      return;
+    }
+
+    long position = FILE_HEADER_BYTES;
+    while (position < size) {
+      header.clear();
+      if (!readFully(header, position)) {
+        break;
+      }
+      header.flip();
+      if (header.getInt() != RECORD_MAGIC) {
+        break;
+      }
+      long lastModified = header.getLong();
+      long recordVersion = header.getLong();
+      int keyLength = header.getInt();
+      int rawLength = header.getInt();
+      int dataLength = header.getInt();
+      Slot slot =
+          new Slot(lastModified, recordVersion, position, keyLength, rawLength, dataLength);
+      if (keyLength < 0 || rawLength < 0 || dataLength < 0 || position + slot.length() > size) {
+        break;
+      }
+      ByteBuffer key = ByteBuffer.allocate(keyLength);
+      if (!readFully(key, position + RECORD_HEADER_BYTES)) {
+        break;
+      }
+      if (recordVersion == version) {
+        slots.put(new String(key.array(), StandardCharsets.UTF_8), slot);
+      }
+      position += slot.length();
+    }
+    // Whatever follows the last whole record was being written when the process ended
+    if (position < size) {
+      channel.truncate(position);
+    }
+    fileSize = position;
+  }
+
+  private boolean readFileHeader() throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+    if (!readFully(header, 0)) {
+      return false;
+    }
+    header.flip();
+    return header.getInt() == FILE_MAGIC && header.getInt() == FORMAT_VERSION;
+  }
+
+  private static void writeFileHeader(FileChannel out) throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+    header.putInt(FILE_MAGIC).putInt(FORMAT_VERSION).flip();
+    writeFully(out, header, 0);
+  }
+
+  private boolean readFully(ByteBuffer buffer, long position) throws IOException {
+    long at = position;
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, at);
+      if (read < 0) {
+        return false;
+      }
+      at += read;
+    }
+    return true;
+  }
+
+  private static void writeFully(FileChannel out, ByteBuffer buffer, long position)
+      throws IOException {
+    long at = position;
+    while (buffer.hasRemaining()) {
+      at += out.write(buffer, at);
+    }
+  }
+
+  /**
+   * Gets a transformed page if it was cached from the same state of its file.
+   *
+   * @param key The page key
+   * @param lastModified The current modification time of the page's file
+   * @return The page, or null on a miss
+   */
+  public String get(String key, long lastModified) {
+    Slot slot;
+    byte[] data;
+    synchronized (this) {
+      slot = slots.get(key);
+      data = slot == null || slot.lastModified != lastModified ? null : read(slot);
+      if (data == null) {
+        misses++;
+        return null;
+      }
+    }
+
+    // Inflated outside the lock; the bytes are a copy, so compaction cannot change them
+    String html = inflate(data, slot.rawLength);
+    synchronized (this) {
+      if (html != null) {
+        hits++;
+      } else {
+        misses++;
+        slots.remove(key, slot);
+      }
+    }
+    return html;
+  }
+
+  /** Reads a slot's stored bytes, or returns null if the file cannot be read. */
+  private byte[] read(Slot slot) {
+    ByteBuffer data = ByteBuffer.allocate(slot.dataLength);
+    try {
+      return channel.isOpen() && readFully(data, slot.dataOffset()) ? data.array() : null;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static String inflate(byte[] data, int rawLength) {
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(data);
+      byte[] raw = new byte[rawLength];
+      int length = 0;
+      while (length < rawLength && !inflater.finished()) {
+        int inflated = inflater.inflate(raw, length, rawLength - length);
+        if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          break;
+        }
+        length += inflated;
+      }
+      return length == rawLength ? new String(raw, StandardCharsets.UTF_8) : null;
+    } catch (DataFormatException e) {
+      return null;
+    } finally {
+      inflater.end();
+    }
+  }
+
+  /**
+   * Queues a transformed page to be written. Pages whose file is gone are not cached.
+   *
+   * @param key The page key
+   * @param lastModified The modification time of the page's file, read before the page was
+   * @param html The transformed page
+   */
+  public void put(String key, long lastModified, String html) {
+    if (lastModified < 0) {
+      return;
+    }
+    try {
+      writer.execute(() -> write(key, lastModified, html));
+    } catch (RuntimeException e) {
+      // Closed; the page is simply not kept
+    }
+  }
+
+  private void write(String key, long lastModified, String html) {
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    byte[] raw = html.getBytes(StandardCharsets.UTF_8);
+    byte[] data = deflate(raw);
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + keyBytes.length + data.length);
+    record
+        .putInt(RECORD_MAGIC)
+        .putLong(lastModified)
+        .putLong(version)
+        .putInt(keyBytes.length)
+        .putInt(raw.length)
+        .putInt(data.length)
+        .put(keyBytes)
+        .put(data)
+        .flip();
+
+    synchronized (this) {
+      if (!channel.isOpen() || record.remaining() > maxBytes / 4) {
+        // A single huge page is not worth a quarter of the budget
+        return;
+      }
+      try {
+        long offset = fileSize;
+        writeFully(channel, record, offset);
+        fileSize += record.capacity();
+        slots.put(
+            key, new Slot(lastModified, version, offset, keyBytes.length, raw.length, data.length));
+        if (fileSize > maxBytes) {
+          compact();
+        }
+      } catch (IOException e) {
+        // A full disk costs the cache, not the page
+        tryReset();
+      }
+    }
+  }
+
+  private static byte[] deflate(byte[] raw) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(raw);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+      byte[] buffer = new byte[16 * 1024];
+      while (!deflater.finished()) {
+        out.write(buffer, 0, deflater.deflate(buffer));
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Rewrites the file with the most recently used records only, down to three quarters of the
+   * budget, so the next compaction is some way off.
+   */
+  private void compact() throws IOException {
+    List<Map.Entry<String, Slot>> newestFirst = new ArrayList<>(slots.entrySet());
+    Collections.reverse(newestFirst);
+    List<Map.Entry<String, Slot>> kept = new ArrayList<>();
+    long target = maxBytes / 4 * 3;
+    long size = FILE_HEADER_BYTES;
+    for (Map.Entry<String, Slot> entry : newestFirst) {
+      if (size + entry.getValue().length() > target) {
+        break;
+      }
+      size += entry.getValue().length();
+      kept.add(entry);
+    }
+    Collections.reverse(kept);
+
+    Path directory = file.toAbsolutePath().getParent();
+    // Write to a temporary file first so a crash never leaves a truncated cache behind
+    Path temp = Files.createTempFile(directory, "pages", ".tmp");
+    LinkedHashMap<String, Slot> moved = new LinkedHashMap<>(256, 0.75f, true);
+    try {
+      try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        writeFileHeader(out);
+        long position = FILE_HEADER_BYTES;
+        for (Map.Entry<String, Slot> entry : kept) {
+          Slot slot = entry.getValue();
+          long copied = 0;
+          while (copied < slot.length()) {
+            long transferred =
+                channel.transferTo(
+                    slot.offset + copied, slot.length() - copied, out.position(position + copied));
+            if (transferred <= 0) {
+              throw new EOFException("Cache file shrank while compacting");
+            }
+            copied += transferred;
+          }
+          moved.put(entry.getKey(), slot.movedTo(position));
+          position += slot.length();
+        }
+      }
+      channel.close();
+      try {
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+      if (!channel.isOpen()) {
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      }
+    }
+
+    slots.clear();
+    slots.putAll(moved);
+    fileSize = size;
+  }
+
+  /** Starts the file over after a failed write or compaction left it in doubt. */
+  private void tryReset() {
+    slots.clear();
+    try {
+      if (!channel.isOpen()) {
+        channel =
+            FileChannel.open(
+                file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      }
+      channel.truncate(0);
+      writeFileHeader(channel);
+      fileSize = FILE_HEADER_BYTES;
+    } catch (IOException e) {
+      // Left closed; lookups miss and writes are dropped
+      fileSize = 0;
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    long lookups = hits + misses;
+    return String.format(
+        "%d pages, %d/%d MB on disk, %.0f%% hits",
+        slots.size(),
+        fileSize >> 20,
+        maxBytes >> 20,
+        lookups == 0 ? 0.0 : 100.0 * hits / lookups);
+  }
+
+  /** Writes the queued pages and closes the file. */
+  @Override
+  public void close() throws IOException {
+    writer.shutdown();
+    try {
+      writer.awaitTermination(2, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    synchronized (this) {
+      try {
+        channel.close();
+      } finally {
+        lockChannel.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,241 @@
+package com.javadocviewer.cache;
+
+import com.javadocviewer.model.Docset;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache of page contents bounded by an approximate heap budget in bytes.
+ * Entries remember the modification time of their source file and are dropped on lookup when the
+ * file has changed since, so regenerated docs are never served stale.
+ *
+ * <p>All methods are thread-safe.
+ */
+public class PageCache {
+
+  /** Rough per-entry overhead of the map node, entry object and key string. */
+  static final long ENTRY_OVERHEAD_BYTES = 128;
+
+  private final long maxBytes;
+  private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+  private long currentBytes;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  /**
+   * Creates a cache.
+   *
+   * @param maxBytes The heap budget; a single page larger than this is never cached
+   */
+  public PageCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Gets a cached page if its file has not been modified since it was cached.
+   *
+   * @param path The page path
+   * @return The cached content, or null on a miss
+   */
+  public String get(String path) {
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(path);
+    }
+    // Stat outside the lock so a slow file system does not block other lookups
+    if (entry != null && entry.lastModified == lastModified(path)) {
+      synchronized (this) {
+        hits++;
+      }
+      return entry.content;
+    }
+
+    synchronized (this) {
+      misses++;
+      if (entry != null && entries.get(path) == entry) {
+        remove(path);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Caches a page, evicting the least recently used pages until the budget is met.
+   *
+   * @param path The page path
+   * @param content The page content
+   * @param lastModified The file modification time read before the content was
+   */
+  public synchronized void put(String path, String content, long lastModified) {
+    long weight = weigh(path, content);
+    remove(path);
+    if (weight > maxBytes) {
+      return;
+    }
+
+    entries.put(path, new Entry(content, lastModified, weight));
+    currentBytes += weight;
+
+    Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+    while (currentBytes > maxBytes && eldest.hasNext()) {
+      currentBytes -= eldest.next().getValue().weight;
+      eldest.remove();
+      evictions++;
+    }
+  }
+
+  /**
+   * Drops a single page.
+   *
+   * @param path The page path
+   */
+  public synchronized void invalidate(String path) {
+    remove(path);
+  }
+
+  /**
+   * Drops a page or every page below a directory.
+   *
+   * @param path The page or directory path
+   */
+  public synchronized void invalidateUnder(String path) {
+    String prefix = path + File.separator;
+    Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<String, Entry> entry = it.next();
+      if (entry.getKey().equals(path) || entry.getKey().startsWith(prefix)) {
+        currentBytes -= entry.getValue().weight;
+        it.remove();
+      }
+    }
+  }
+
+  /** Drops every page. */
+  public synchronized void clear() {
+    entries.clear();
+    currentBytes = 0;
+  }
+
+  /**
+   * Gets a consistent snapshot of the cache counters.
+   *
+   * @return The current statistics
+   */
+  public synchronized Stats getStats() {
+    return new Stats(hits, misses, evictions, entries.size(), currentBytes, maxBytes);
+  }
+
+  /**
+   * Reads a file's modification time, or -1 if it is gone.
+   *
+   * @param file The file
+   * @return The modification time in milliseconds
+   */
+  public static long lastModified(Path file) {
+    try {
+      return Files.getLastModifiedTime(file).toMillis();
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  /** Stats a page by key; a page in an archive that was closed counts as missing. */
+  private static long lastModified(String path) {
+    try {
+      return lastModified(Docset.toPath(path));
+    } catch (FileSystemNotFoundException e) {
+      return -1;
+    }
+  }
+
+  private void remove(String path) {
+    Entry removed = entries.remove(path);
+    if (removed != null) {
+      currentBytes -= removed.weight;
+    }
+  }
+
+  private static long weigh(String path, String content) {
+    // Strings hold at most two bytes per char; the estimate errs on the high side
+    return ENTRY_OVERHEAD_BYTES + 2L * (path.length() + content.length());
+  }
+
+  private static final class Entry {
+    final String content;
+    final long lastModified;
+    final long weight;
+
+    Entry(String content, long lastModified, long weight) {
+      this.content = content;
+      this.lastModified = lastModified;
+      this.weight = weight;
+    }
+  }
+
+  /** Point-in-time cache counters. */
+  public static final class Stats {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int entryCount;
+    private final long bytes;
+    private final long maxBytes;
+
+    Stats(long hits, long misses, long evictions, int entryCount, long bytes, long maxBytes) {
+      this.hits = hits;
+      this.misses = misses;
+      this.evictions = evictions;
+      this.entryCount = entryCount;
+      this.bytes = bytes;
+      this.maxBytes = maxBytes;
+    }
+
+    public long getHits() {
+      return hits;
+    }
+
+    public long getMisses() {
+      return misses;
+    }
+
+    public long getEvictions() {
+      return evictions;
+    }
+
+    public int getEntryCount() {
+      return entryCount;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+
+    public long getMaxBytes() {
+      return maxBytes;
+    }
+
+    /**
+     * Gets the fraction of lookups that were hits.
+     *
+     * @return A value between 0 and 1, or 0 before the first lookup
+     */
+    public double getHitRate() {
+      long lookups = hits + misses;
+      return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "%d pages, %d/%d KB, %.0f%% hits, %d evictions",
+          entryCount, bytes / 1024, maxBytes / 1024, getHitRate() * 100, evictions);
+    }
+  }
+}
@@ -0,0 +1,313 @@
+package com.javadocviewer.cache;
+
+import com.javadocviewer.model.Docset;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reads the pages a shown page links to before they are clicked, so following a link finds its
+ * target already read and transformed. Prefetching runs on one low-priority thread and is
+ * bounded by a number of pages and a byte budget per page shown; showing another page abandons
+ * the rest of the previous round.
+ *
+ * <p>The pages a {@link TransitionModel} learned are usually opened next come first, then the
+ * links in the order a reader is most likely to follow them: the superclasses, nearest first,
+ * then the package summary, then the other links of the page in document order.
+ *
+ * <p>Whether each page opened had been prefetched, and how long it took to show, is tallied so
+ * the statistics tell whether prefetching actually pays off.
+ */
+public class PagePrefetcher implements Closeable {
+
+  /** Reads a page and prepares it for display, typically into a cache. */
+  @FunctionalInterface
+  public interface PageLoader {
+    /**
+     * Loads a page.
+     *
+     * @param key The page key
+     * @return The raw or transformed HTML of the page
+     * @throws IOException If the page cannot be read
+     */
+    String load(String key) throws IOException;
+  }
+
+  private static final String PACKAGE_SUMMARY = "package-summary.html";
+
+  private final PageLoader loader;
+  private final TransitionModel model;
+  private final int maxPages;
+  private final long maxBytes;
+  private final ExecutorService executor;
+  private final AtomicLong round = new AtomicLong();
+  private final AtomicLong prefetchedPages = new AtomicLong();
+  private final AtomicLong prefetchedBytes = new AtomicLong();
+  // The pages of the latest round, which the next page opened is checked against
+  private final Set<String> prefetched = ConcurrentHashMap.newKeySet();
+
+  // Pages opened, and the time they took to show, by whether they had been prefetched
+  private long warmLoads;
+  private long warmNanos;
+  private long coldLoads;
+  private long coldNanos;
+
+  /**
+   * Creates a prefetcher with its own background thread.
+   *
+   * @param loader Loads pages; called on the prefetch thread
+   * @param model Predicts the pages opened next
+   * @param maxPages The most pages loaded for each page shown
+   * @param maxBytes The most bytes of page files loaded for each page shown
+   */
+  public PagePrefetcher(
+      PageLoader loader, TransitionModel model, int maxPages, long maxBytes) {
+    this.loader = loader;
+    this.model = model;
+    this.maxPages = maxPages;
+    this.maxBytes = maxBytes;
+    this.executor =
+        Executors.newSingleThreadExecutor(
+            runnable -> {
+              Thread thread = new Thread(runnable, "page-prefetcher");
+              thread.setDaemon(true);
+              // Page loads the user is waiting for come first
+              thread.setPriority(Thread.MIN_PRIORITY);
+              return thread;
+            });
+  }
+
+  /**
+   * Starts prefetching the pages likely to be opened after a page, abandoning the previous
+   * round.
+   *
+   * @param key The key of the page shown
+   */
+  public void prefetchFrom(String key) {
+    long current = round.incrementAndGet();
+    prefetched.clear();
+    executor.execute(
+        () -> {
+          if (round.get() != current) {
+            return;
+          }
+          String html;
+          try {
+            // Normally a cache hit, since the page was just shown
+            html = loader.load(key);
+          } catch (IOException | RuntimeException e) {
+            return;
+          }
+          Set<String> targets =
+              new LinkedHashSet<>(model.predict(key, TransitionModel.PREDICTIONS));
+          targets.addAll(extractLinks(key, html));
+          targets.remove(key);
+          prefetch(targets, current);
+        });
+  }
+
+  private void prefetch(Set<String> targets, long current) {
+    int pages = 0;
+    long bytes = 0;
+    for (String target : targets) {
+      if (pages >= maxPages || round.get() != current) {
+        return;
+      }
+      try {
+        long size = Files.size(Docset.toPath(target));
+        if (bytes + size > maxBytes) {
+          // A smaller page further down may still fit
+          continue;
+        }
+        loader.load(target);
+        if (round.get() == current) {
+          prefetched.add(target);
+        }
+        pages++;
+        bytes += size;
+        prefetchedPages.incrementAndGet();
+        prefetchedBytes.addAndGet(size);
+      } catch (IOException | RuntimeException e) {
+        // Broken links are not worth reporting ahead of a click
+      }
+    }
+  }
+
+  /**
+   * Lists the pages a page links to, most likely to be followed first. Links to other sites,
+   * to anchors of the page itself and to anything but pages are left out.
+   *
+   * @param key The key of the page
+   * @param html The HTML of the page
+   * @return The keys of the linked pages, without anchors or repeats
+   */
+  public static List<String> extractLinks(String key, String html) {
+    Path page;
+    try {
+      page = Docset.toPath(key);
+    } catch (RuntimeException e) {
+      return Collections.emptyList();
+    }
+    Path directory = page.getParent();
+    if (directory == null) {
+      return Collections.emptyList();
+    }
+
+    Set<String> links = new LinkedHashSet<>();
+    // Superclasses are listed outermost first; the direct superclass is the likeliest click
+    int inheritance = html.indexOf("class=\"inheritance\"");
+    if (inheritance >= 0) {
+      List<String> superclasses = new ArrayList<>();
+      collectLinks(directory, html, inheritance, inheritanceEnd(html, inheritance), superclasses);
+      Collections.reverse(superclasses);
+      links.addAll(superclasses);
+    }
+    if (!page.getFileName().toString().equals(PACKAGE_SUMMARY)) {
+      Path summary = directory.resolve(PACKAGE_SUMMARY);
+      if (Files.isRegularFile(summary)) {
+        links.add(Docset.toKey(summary));
+      }
+    }
+    // The navigation bar before the main content is hidden by the viewer's styles
+    int main = html.indexOf("<main");
+    List<String> body = new ArrayList<>();
+    collectLinks(directory, html, Math.max(main, 0), html.length(), body);
+    links.addAll(body);
+
+    links.remove(key);
+    return new ArrayList<>(links);
+  }
+
+  /** Finds where the inheritance tree ends, which is where the type's description starts. */
+  private static int inheritanceEnd(String html, int start) {
+    int end = html.length();
+    for (String marker : new String[] {"<dl", "<section", "<hr", "class=\"description\""}) {
+      int index = html.indexOf(marker, start);
+      if (index >= 0 && index < end) {
+        end = index;
+      }
+    }
+    return end;
+  }
+
+  private static void collectLinks(
+      Path directory, String html, int from, int to, List<String> links) {
+    int position = from;
+    while (true) {
+      int href = html.indexOf("href=", position);
+      if (href < 0 || href >= to) {
+        return;
+      }
+      int valueStart = href + 5;
+      position = valueStart;
+      if (valueStart >= html.length()) {
+        return;
+      }
+      char quote = html.charAt(valueStart);
+      if (quote != '"' && quote != '\'') {
+        continue;
+      }
+      int valueEnd = html.indexOf(quote, valueStart + 1);
+      if (valueEnd < 0) {
+        return;
+      }
+      position = valueEnd + 1;
+      String target = resolve(directory, html.substring(valueStart + 1, valueEnd));
+      if (target != null) {
+        links.add(target);
+      }
+    }
+  }
+
+  /** Resolves a relative link to a page key, or returns null if it is not a page link. */
+  private static String resolve(Path directory, String href) {
+    String link = href.replace("&amp;", "&");
+    int end = link.length();
+    int fragment = link.indexOf('#');
+    if (fragment >= 0) {
+      end = fragment;
+    }
+    int query = link.indexOf('?');
+    if (query >= 0 && query < end) {
+      end = query;
+    }
+    link = link.substring(0, end);
+    if (!link.endsWith(".html") || link.startsWith("/")) {
+      return null;
+    }
+    try {
+      URI uri = new URI(link);
+      if (uri.getScheme() != null || uri.getRawAuthority() != null) {
+        return null;
+      }
+      return Docset.toKey(directory.resolve(uri.getPath()).normalize());
+    } catch (URISyntaxException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Tests whether a page was read by the latest round. Called before the page is shown, since
+   * showing it starts a new round.
+   *
+   * @param key The page key
+   * @return True if the page is waiting in the caches
+   */
+  public boolean isPrefetched(String key) {
+    return prefetched.contains(key);
+  }
+
+  /**
+   * Tallies how long a page took to show.
+   *
+   * @param wasPrefetched What {@link #isPrefetched} said when the page was opened
+   * @param nanos The time from the click until the page was shown
+   */
+  public synchronized void recordLoad(boolean wasPrefetched, long nanos) {
+    if (wasPrefetched) {
+      warmLoads++;
+      warmNanos += nanos;
+    } else {
+      coldLoads++;
+      coldNanos += nanos;
+    }
+  }
+
+  /**
+   * Describes how much has been prefetched and what it saved.
+   *
+   * @return A summary of a few lines
+   */
+  public synchronized String getStats() {
+    long loads = warmLoads + coldLoads;
+    return String.format(
+        "%d pages prefetched, %d KB%n"
+            + "%.0f%% of %d pages opened were prefetched, shown in %d ms on average vs %d ms%n"
+            + "Navigation model: %s",
+        prefetchedPages.get(),
+        prefetchedBytes.get() / 1024,
+        loads == 0 ? 0.0 : 100.0 * warmLoads / loads,
+        loads,
+        warmLoads == 0 ? 0 : warmNanos / warmLoads / 1_000_000,
+        coldLoads == 0 ? 0 : coldNanos / coldLoads / 1_000_000,
+        model);
+  }
+
+  @Override
+  public void close() {
+    round.incrementAndGet();
+    executor.shutdownNow();
+  }
+}
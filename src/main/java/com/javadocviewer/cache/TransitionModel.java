@@ -0,0 +1,225 @@
+package com.javadocviewer.cache;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A first-order Markov model of page navigation: for each page, how often each other page was
+ * opened right after it. The likeliest successors of the page shown are what the prefetcher
+ * reads first. The model is kept across sessions in {@code ~/.javadoc-viewer/transitions}.
+ *
+ * <p>Memory stays bounded: only the pages shown most recently are kept, each with its most
+ * frequent successors, and a page's counts are halved once they add up to a limit so that new
+ * habits outweigh old ones. All methods are thread-safe.
+ */
+public class TransitionModel {
+
+  /** How many successors a prediction names; a transition to one of them counts as a hit. */
+  public static final int PREDICTIONS = 4;
+
+  private static final int MAGIC = 0x4A44544D;
+  private static final int VERSION = 1;
+
+  static final int MAX_PAGES = 4096;
+  static final int MAX_SUCCESSORS = 16;
+  static final int DECAY_THRESHOLD = 1024;
+
+  private final Path file;
+  // Pages in the order they were last shown, so the one unused longest is dropped first
+  private final LinkedHashMap<String, Map<String, Integer>> transitions =
+      new LinkedHashMap<>(256, 0.75f, true);
+  private long hits;
+  private long misses;
+
+  private TransitionModel(Path file) {
+    this.file = file;
+  }
+
+  /**
+   * Loads the model saved in {@code ~/.javadoc-viewer/transitions}.
+   *
+   * @return The model, empty if none was saved or it cannot be read
+   */
+  public static TransitionModel loadDefault() {
+    return load(Paths.get(System.getProperty("user.home"), ".javadoc-viewer", "transitions"));
+  }
+
+  /**
+   * Loads a saved model.
+   *
+   * @param file The file the model is read from and saved to
+   * @return The model, empty if the file is missing, corrupt or of another version
+   */
+  public static TransitionModel load(Path file) {
+    TransitionModel model = new TransitionModel(file);
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        return model;
+      }
+      int pages = in.readInt();
+      for (int i = 0; i < pages; i++) {
+        String from = in.readUTF();
+        int successors = in.readInt();
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (int j = 0; j < successors; j++) {
+          String to = in.readUTF();
+          counts.put(to, in.readInt());
+        }
+        model.transitions.put(from, counts);
+      }
+    } catch (NoSuchFileException e) {
+      // First session
+    } catch (IOException e) {
+      // A partly read model is still a fair guess, and is replaced on the next save
+    }
+    return model;
+  }
+
+  /**
+   * Records that a page was opened right after another, scoring the prediction made for it.
+   *
+   * @param from The page left
+   * @param to The page opened
+   */
+  public synchronized void record(String from, String to) {
+    if (from.equals(to)) {
+      return;
+    }
+    Map<String, Integer> counts = transitions.get(from);
+    if (counts != null && !counts.isEmpty()) {
+      if (topSuccessors(counts, PREDICTIONS).contains(to)) {
+        hits++;
+      } else {
+        misses++;
+      }
+    }
+    if (counts == null) {
+      counts = new LinkedHashMap<>();
+      transitions.put(from, counts);
+      if (transitions.size() > MAX_PAGES) {
+        Iterator<String> eldest = transitions.keySet().iterator();
+        eldest.next();
+        eldest.remove();
+      }
+    }
+
+    counts.merge(to, 1, Integer::sum);
+    if (counts.size() > MAX_SUCCESSORS) {
+      dropRarest(counts, to);
+    }
+    int total = 0;
+    for (int count : counts.values()) {
+      total += count;
+    }
+    if (total >= DECAY_THRESHOLD) {
+      // Pages followed only once fade out entirely
+      counts.replaceAll((page, count) -> count / 2);
+      counts.values().removeIf(count -> count == 0);
+    }
+  }
+
+  /** Drops the least followed successor other than the one just recorded. */
+  private static void dropRarest(Map<String, Integer> counts, String keep) {
+    String rarest = null;
+    int fewest = Integer.MAX_VALUE;
+    for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+      if (!entry.getKey().equals(keep) && entry.getValue() < fewest) {
+        rarest = entry.getKey();
+        fewest = entry.getValue();
+      }
+    }
+    counts.remove(rarest);
+  }
+
+  /**
+   * Predicts the pages likely to be opened after a page.
+   *
+   * @param from The page shown
+   * @param limit The maximum number of pages
+   * @return The successors seen so far, most frequent first
+   */
+  public synchronized List<String> predict(String from, int limit) {
+    Map<String, Integer> counts = transitions.get(from);
+    return counts == null ? Collections.emptyList() : topSuccessors(counts, limit);
+  }
+
+  private static List<String> topSuccessors(Map<String, Integer> counts, int limit) {
+    List<Map.Entry<String, Integer>> sorted = new ArrayList<>(counts.entrySet());
+    // Stable, so ties go to the successor seen first
+    sorted.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+    List<String> top = new ArrayList<>(Math.min(limit, sorted.size()));
+    for (int i = 0; i < sorted.size() && i < limit; i++) {
+      top.add(sorted.get(i).getKey());
+    }
+    return top;
+  }
+
+  /**
+   * Gets the fraction of transitions out of a known page that went to one of its predicted
+   * successors, this session.
+   *
+   * @return A value between 0 and 1, or 0 before the first prediction was scored
+   */
+  public synchronized double getHitRate() {
+    long scored = hits + misses;
+    return scored == 0 ? 0 : (double) hits / scored;
+  }
+
+  /**
+   * Saves the model to the file it was loaded from.
+   *
+   * @throws IOException If the file cannot be written
+   */
+  public synchronized void save() throws IOException {
+    Path directory = file.toAbsolutePath().getParent();
+    Files.createDirectories(directory);
+    // Write to a temporary file first so a crash never leaves a truncated model behind
+    Path temp = Files.createTempFile(directory, "transitions", ".tmp");
+    try {
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(transitions.size());
+        for (Map.Entry<String, Map<String, Integer>> page : transitions.entrySet()) {
+          out.writeUTF(page.getKey());
+          out.writeInt(page.getValue().size());
+          for (Map.Entry<String, Integer> successor : page.getValue().entrySet()) {
+            out.writeUTF(successor.getKey());
+            out.writeInt(successor.getValue());
+          }
+        }
+      }
+      try {
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format(
+        "%d pages learned, %.0f%% of %d predictions right",
+        transitions.size(), getHitRate() * 100, hits + misses);
+  }
+}
@@ -0,0 +1,102 @@
+package com.javadocviewer.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Immutable picture of a documentation directory: its subdirectories and .html pages, already
+ * sorted for display. Produced off the FX thread and turned into tree items later.
+ *
+ * <p>A snapshot is a view of one entry of a {@link PathTable}; names and paths are read from the
+ * table's arena when asked for, so holding a scan of a large docset costs a few ints per page.
+ */
+public class DirectorySnapshot {
+  private final PathTable table;
+  private final int id;
+
+  public DirectorySnapshot(PathTable table, int id) {
+    this.table = table;
+    this.id = id;
+  }
+
+  public String getName() {
+    return table.getName(id);
+  }
+
+  public String getPath() {
+    return table.getPath(id);
+  }
+
+  public boolean isDirectory() {
+    return table.isDirectory(id);
+  }
+
+  public List<DirectorySnapshot> getChildren() {
+    int count = table.getChildCount(id);
+    return new AbstractList<>() {
+      @Override
+      public DirectorySnapshot get(int index) {
+        if (index < 0 || index >= count) {
+          throw new IndexOutOfBoundsException(index);
+        }
+        return new DirectorySnapshot(table, table.getChild(id, index));
+      }
+
+      @Override
+      public int size() {
+        return count;
+      }
+    };
+  }
+
+  /**
+   * Tests whether the name contains a string, ignoring case, without creating the name.
+   *
+   * @param lowerQuery The string to look for, already lower case
+   * @return True if the name contains it
+   */
+  public boolean nameContains(String lowerQuery) {
+    return table.nameContains(id, lowerQuery);
+  }
+
+  /**
+   * Collects every page below this entry, depth first.
+   *
+   * @return The page entries
+   */
+  public List<DirectorySnapshot> getPages() {
+    List<DirectorySnapshot> pages = new ArrayList<>();
+    collectPages(id, pages);
+    return pages;
+  }
+
+  private void collectPages(int entry, List<DirectorySnapshot> pages) {
+    if (!table.isDirectory(entry)) {
+      pages.add(new DirectorySnapshot(table, entry));
+      return;
+    }
+    for (int i = 0; i < table.getChildCount(entry); i++) {
+      collectPages(table.getChild(entry, i), pages);
+    }
+  }
+
+  /**
+   * Gets the table this snapshot reads from.
+   *
+   * @return The shared path table
+   */
+  public PathTable getTable() {
+    return table;
+  }
+
+  /**
+   * Converts this entry to the node shown in the tree.
+   *
+   * @return A file node with the .html extension dropped from page names
+   */
+  public FileNode toFileNode() {
+    String name = getName();
+    return new FileNode(isDirectory() ? name : name.replace(".html", ""), getPath(), !isDirectory());
+  }
+}
@@ -0,0 +1,203 @@
+package com.javadocviewer.model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+
+/**
+ * A documentation set, either an extracted directory or a javadoc JAR or ZIP opened in place
+ * through the zip file system. Only the archive's central directory is read when it is opened;
+ * each page is decompressed when it is read. Everything else works on {@link Path}s, so both
+ * kinds look the same to the rest of the viewer.
+ *
+ * <p>Pages are identified by string keys, as stored in tree nodes, history, the page cache and
+ * search indexes. A page in a directory is keyed by its plain path. A page in an archive is
+ * keyed by its {@code jar:} URI, which {@link #toPath} resolves while the docset is open and
+ * which the WebEngine can load as a base for relative links.
+ */
+public final class Docset implements Closeable {
+
+  private final Path location;
+  private final Path root;
+  private final FileSystem archive;
+
+  private Docset(Path location, Path root, FileSystem archive) {
+    this.location = location;
+    this.root = root;
+    this.archive = archive;
+  }
+
+  /**
+   * Opens a docset. Files ending in .jar or .zip are opened as archives and descended into while
+   * they hold a single directory besides META-INF and no index.html, which finds the pages of
+   * archives that wrap them in {@code docs/api/}.
+   *
+   * @param location A documentation directory or archive
+   * @return The docset, to be closed when no longer shown
+   * @throws IOException If an archive cannot be opened
+   */
+  public static Docset open(Path location) throws IOException {
+    Path absolute = location.toAbsolutePath().normalize();
+    if (!isArchiveFile(absolute)) {
+      return new Docset(absolute, absolute, null);
+    }
+
+    // Opened by URI so that the file system is registered and page keys resolve through it
+    URI uri = URI.create("jar:" + absolute.toUri());
+    FileSystem archive = FileSystems.newFileSystem(uri, Collections.emptyMap());
+    Path root = archive.getRootDirectories().iterator().next();
+    while (!Files.exists(root.resolve("index.html"))) {
+      Path only = singleDirectory(root);
+      if (only == null) {
+        break;
+      }
+      root = only;
+    }
+    return new Docset(absolute, root, archive);
+  }
+
+  /**
+   * Opens a directory as a docset, for when the configured location cannot be opened.
+   *
+   * @param directory The directory, which need not exist
+   * @return The docset
+   */
+  public static Docset ofDirectory(Path directory) {
+    Path absolute = directory.toAbsolutePath().normalize();
+    return new Docset(absolute, absolute, null);
+  }
+
+  /**
+   * Tests whether a location would be opened as an archive.
+   *
+   * @param location An absolute docs location
+   * @return True for an existing .jar or .zip file
+   */
+  public static boolean isArchiveFile(Path location) {
+    String name = location.getFileName() == null ? "" : location.getFileName().toString();
+    return Files.isRegularFile(location) && (name.endsWith(".jar") || name.endsWith(".zip"));
+  }
+
+  private static Path singleDirectory(Path directory) throws IOException {
+    Path only = null;
+    try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+      for (Path entry : entries) {
+        if (entry.getFileName().toString().equals("META-INF")) {
+          continue;
+        }
+        if (only != null || !Files.isDirectory(entry)) {
+          return null;
+        }
+        only = entry;
+      }
+    }
+    return only;
+  }
+
+  /**
+   * Gets the directory holding the pages: the docset directory itself, or a directory inside
+   * the archive.
+   *
+   * @return The root
+   */
+  public Path getRoot() {
+    return root;
+  }
+
+  /**
+   * Gets what was opened, the directory or the archive file.
+   *
+   * @return The absolute location
+   */
+  public Path getLocation() {
+    return location;
+  }
+
+  /**
+   * Whether the pages are read from an archive. Archives are not watched for changes.
+   *
+   * @return True for a JAR or ZIP docset
+   */
+  public boolean isArchive() {
+    return archive != null;
+  }
+
+  /**
+   * Gets the key a page or directory is stored under.
+   *
+   * @param path A path in any docset
+   * @return Its plain path for the default file system, else its URI
+   */
+  public static String toKey(Path path) {
+    if (path.getFileSystem() == FileSystems.getDefault()) {
+      return path.toString();
+    }
+    return path.toUri().toString();
+  }
+
+  /**
+   * Resolves a key made by {@link #toKey}. Keys into an archive only resolve while it is open.
+   *
+   * @param key The key
+   * @return The path
+   * @throws FileSystemNotFoundException If the key points into an archive that is not open
+   */
+  public static Path toPath(String key) {
+    if (key.startsWith("jar:")) {
+      return Paths.get(URI.create(key));
+    }
+    return Paths.get(key);
+  }
+
+  /**
+   * Tests whether a key still names an existing file, answering false for keys into an archive
+   * that is not open or that cannot be parsed.
+   *
+   * @param key The key
+   * @return True if the file exists
+   */
+  public static boolean exists(String key) {
+    try {
+      return Files.exists(toPath(key));
+    } catch (FileSystemNotFoundException | IllegalArgumentException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Gets the URL the WebEngine should resolve a page's relative links against.
+   *
+   * @param key The page key
+   * @return A {@code file:} or {@code jar:} URL
+   */
+  public static String toUrl(String key) {
+    return key.startsWith("jar:") ? key : Paths.get(key).toUri().toString();
+  }
+
+  /**
+   * Gets the last name of a key, such as {@code List.html}.
+   *
+   * @param key The key
+   * @return The file name
+   */
+  public static String getFileName(String key) {
+    int slash = Math.max(key.lastIndexOf('/'), key.lastIndexOf(File.separatorChar));
+    return key.substring(slash + 1);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (archive != null) {
+      archive.close();
+    }
+  }
+}
@@ -0,0 +1,208 @@
+package com.javadocviewer.model;
+
+import java.util.Arrays;
+
+/**
+ * Compact store for the entries of a scanned documentation tree. Names live in one shared char
+ * arena addressed by int offsets, and entries refer to their parent directory by id instead of
+ * holding a full path, so each directory prefix is stored once no matter how many pages are below
+ * it. The children of a directory have consecutive ids.
+ *
+ * <p>Entry 0 is the root. Instances are immutable once built and safe to share between threads.
+ */
+public final class PathTable {
+
+  /** The id of the root directory. */
+  public static final int ROOT = 0;
+
+  private final String rootPath;
+  private final char separator;
+  private final char[] arena;
+  private final int[] nameStart;
+  private final int[] nameLength;
+  private final int[] parent;
+  private final int[] firstChild;
+  private final int[] childCount;
+  private final boolean[] directory;
+  private final int size;
+
+  private PathTable(Builder builder) {
+    this.rootPath = builder.rootPath;
+    this.separator = builder.separator;
+    this.size = builder.size;
+    this.arena = Arrays.copyOf(builder.arena, builder.arenaLength);
+    this.nameStart = Arrays.copyOf(builder.nameStart, size);
+    this.nameLength = Arrays.copyOf(builder.nameLength, size);
+    this.parent = Arrays.copyOf(builder.parent, size);
+    this.firstChild = Arrays.copyOf(builder.firstChild, size);
+    this.childCount = Arrays.copyOf(builder.childCount, size);
+    this.directory = Arrays.copyOf(builder.directory, size);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public String getName(int id) {
+    return new String(arena, nameStart[id], nameLength[id]);
+  }
+
+  /**
+   * Rebuilds the absolute path of an entry from its ancestors' names.
+   *
+   * @param id The entry
+   * @return The path, using the separator of the file system it was scanned from
+   */
+  public String getPath(int id) {
+    if (id == ROOT) {
+      return rootPath;
+    }
+    StringBuilder path = new StringBuilder(rootPath.length() + 64);
+    appendPath(id, path);
+    return path.toString();
+  }
+
+  private void appendPath(int id, StringBuilder path) {
+    if (id == ROOT) {
+      path.append(rootPath);
+      return;
+    }
+    appendPath(parent[id], path);
+    // A root such as "/" or an archive's "jar:...!/" already ends with one
+    if (path.charAt(path.length() - 1) != separator) {
+      path.append(separator);
+    }
+    path.append(arena, nameStart[id], nameLength[id]);
+  }
+
+  public boolean isDirectory(int id) {
+    return directory[id];
+  }
+
+  public int getParent(int id) {
+    return parent[id];
+  }
+
+  public int getChildCount(int id) {
+    return childCount[id];
+  }
+
+  public int getChild(int id, int index) {
+    return firstChild[id] + index;
+  }
+
+  /**
+   * Tests whether an entry's name contains a string, ignoring case, without creating the name.
+   *
+   * @param id The entry
+   * @param lowerQuery The string to look for, already lower case
+   * @return True if the name contains it
+   */
+  public boolean nameContains(int id, String lowerQuery) {
+    int start = nameStart[id];
+    int last = start + nameLength[id] - lowerQuery.length();
+    for (int i = start; i <= last; i++) {
+      int j = 0;
+      while (j < lowerQuery.length()
+          && Character.toLowerCase(arena[i + j]) == lowerQuery.charAt(j)) {
+        j++;
+      }
+      if (j == lowerQuery.length()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the approximate heap held by this table, for comparing against the object graph it
+   * replaces.
+   *
+   * @return The size in bytes of the arena and the per-entry arrays
+   */
+  public long getRetainedBytes() {
+    // Array headers are 16 bytes; the root path is the only remaining object
+    return 16L * 8
+        + 2L * arena.length
+        + 4L * (nameStart.length + nameLength.length + parent.length)
+        + 4L * (firstChild.length + childCount.length)
+        + directory.length
+        + 40
+        + 2L * rootPath.length();
+  }
+
+  /**
+   * Collects entries in id order. A directory's children must be added together, right after
+   * each other, with {@link #addChildren}.
+   */
+  public static final class Builder {
+    private final String rootPath;
+    private final char separator;
+    private char[] arena = new char[4096];
+    private int arenaLength;
+    private int[] nameStart = new int[256];
+    private int[] nameLength = new int[256];
+    private int[] parent = new int[256];
+    private int[] firstChild = new int[256];
+    private int[] childCount = new int[256];
+    private boolean[] directory = new boolean[256];
+    private int size;
+
+    /**
+     * Starts a table with the root directory as entry 0.
+     *
+     * @param rootPath The key of the root, as made by {@link Docset#toKey}
+     * @param rootName The name shown for the root
+     * @param separator The name separator of the file system being scanned
+     */
+    public Builder(String rootPath, String rootName, char separator) {
+      this.rootPath = rootPath;
+      this.separator = separator;
+      add(ROOT, rootName, true);
+    }
+
+    /**
+     * Adds the children of a directory, in display order.
+     *
+     * @param directoryId The directory, already added
+     * @param names The child names
+     * @param directories Which children are directories
+     * @return The id of the first child; the rest follow consecutively
+     */
+    public int addChildren(int directoryId, String[] names, boolean[] directories) {
+      int first = size;
+      for (int i = 0; i < names.length; i++) {
+        add(directoryId, names[i], directories[i]);
+      }
+      firstChild[directoryId] = first;
+      childCount[directoryId] = names.length;
+      return first;
+    }
+
+    private void add(int parentId, String name, boolean isDirectory) {
+      if (size == nameStart.length) {
+        int capacity = size * 2;
+        nameStart = Arrays.copyOf(nameStart, capacity);
+        nameLength = Arrays.copyOf(nameLength, capacity);
+        parent = Arrays.copyOf(parent, capacity);
+        firstChild = Arrays.copyOf(firstChild, capacity);
+        childCount = Arrays.copyOf(childCount, capacity);
+        directory = Arrays.copyOf(directory, capacity);
+      }
+      if (arenaLength + name.length() > arena.length) {
+        arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaLength + name.length()));
+      }
+      name.getChars(0, name.length(), arena, arenaLength);
+      nameStart[size] = arenaLength;
+      nameLength[size] = name.length();
+      parent[size] = parentId;
+      directory[size] = isDirectory;
+      arenaLength += name.length();
+      size++;
+    }
+
+    public PathTable build() {
+      return new PathTable(this);
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package com.javadocviewer.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * Ranking shared by every inverted index layout. Subclasses expose their dictionary and posting
+ * lists through term ids; this class does the term intersection, tf-idf scoring and top-K
+ * selection so all layouts return identical results.
+ */
+abstract class AbstractSearchIndex implements SearchIndex {
+
+  /** Upper bound on how many dictionary terms a prefix may expand to. */
+  static final int MAX_PREFIX_EXPANSION = 64;
+
+  static final double TITLE_BOOST = 10.0;
+
+  /**
+   * Resolves a query term to dictionary term ids.
+   *
+   * @param term The lowercase term
+   * @param prefix Whether every term starting with {@code term} should match
+   * @return The matching term ids, at most {@link #MAX_PREFIX_EXPANSION}
+   */
+  abstract int[] lookupTerms(String term, boolean prefix);
+
+  abstract int postingCount(int termId);
+
+  abstract int postingDocument(int termId, int index);
+
+  abstract int postingFrequency(int termId, int index);
+
+  abstract String title(int doc);
+
+  abstract String path(int doc);
+
+  /** Document slots, including any removed documents. */
+  abstract int documentSlots();
+
+  /** Whether the document in a slot is still part of the index. */
+  boolean isLive(int doc) {
+    return true;
+  }
+
+  @Override
+  public List<SearchHit> search(String query, int limit) {
+    return search(query, limit, documentCount());
+  }
+
+  /**
+   * Runs a query with idf weights taken from a collection of a given size, so that scores of
+   * several indexes over parts of one docset can be compared.
+   *
+   * @param query The user query
+   * @param limit The maximum number of hits to return
+   * @param collectionSize The number of pages the idf weights are computed from
+   * @return Hits ordered from best to worst
+   */
+  List<SearchHit> search(String query, int limit, int collectionSize) {
+    List<String> terms = new ArrayList<>();
+    HtmlTokenizer.tokenizeText(query, terms::add);
+    if (terms.isEmpty() || limit <= 0) {
+      return Collections.emptyList();
+    }
+
+    int slots = documentSlots();
+    int docCount = Math.max(1, collectionSize);
+    double[] scores = new double[slots];
+    int[] matchedTerms = new int[slots];
+
+    for (int t = 0; t < terms.size(); t++) {
+      boolean isLast = t == terms.size() - 1;
+      for (int termId : lookupTerms(terms.get(t), isLast)) {
+        int size = postingCount(termId);
+        double idf = Math.log(1.0 + (double) docCount / size);
+        for (int i = 0; i < size; i++) {
+          int doc = postingDocument(termId, i);
+          // A document may match several expansions of a prefix but counts once per query term
+          if (matchedTerms[doc] == t) {
+            matchedTerms[doc] = t + 1;
+          } else if (matchedTerms[doc] != t + 1) {
+            continue;
+          }
+          scores[doc] += (1.0 + Math.log(postingFrequency(termId, i))) * idf;
+        }
+      }
+    }
+
+    PriorityQueue<SearchHit> best =
+        new PriorityQueue<>(limit + 1, (a, b) -> Double.compare(a.getScore(), b.getScore()));
+    for (int doc = 0; doc < slots; doc++) {
+      if (matchedTerms[doc] != terms.size() || !isLive(doc)) {
+        continue;
+      }
+      String title = title(doc);
+      String lowerTitle = title.toLowerCase(Locale.ROOT);
+      double score = scores[doc];
+      for (String term : terms) {
+        if (lowerTitle.contains(term)) {
+          score += TITLE_BOOST;
+        }
+      }
+      best.add(new SearchHit(title, path(doc), score));
+      if (best.size() > limit) {
+        best.poll();
+      }
+    }
+
+    List<SearchHit> hits = new ArrayList<>(best);
+    hits.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+    return hits;
+  }
+}
@@ -0,0 +1,57 @@
+package com.javadocviewer.search;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * Summarizes the state of a documentation directory in a single number. The fingerprint changes
+ * whenever a page is added, removed or modified, so a persisted index can be checked for
+ * staleness without reading any page content.
+ */
+public final class DocsetFingerprint {
+
+  private DocsetFingerprint() {}
+
+  /**
+   * Computes the fingerprint of every .html file below a directory from its relative path,
+   * modification time and size, plus the file count.
+   *
+   * @param docsRoot The documentation root
+   * @return The fingerprint
+   * @throws IOException If the directory cannot be walked
+   */
+  public static long compute(Path docsRoot) throws IOException {
+    long[] state = new long[2];
+    Files.walkFileTree(
+        docsRoot,
+        new SimpleFileVisitor<>() {
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (file.toString().endsWith(".html")) {
+              long entry = docsRoot.relativize(file).toString().hashCode();
+              entry = entry * 31 + attrs.lastModifiedTime().toMillis();
+              entry = entry * 31 + attrs.size();
+              // Summing the mixed entries keeps the result independent of walk order
+              state[0] += mix(entry);
+              state[1]++;
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+    return mix(state[0] ^ mix(state[1]));
+  }
+
+  /** The 64-bit finalizer from MurmurHash3. */
+  static long mix(long value) {
+    value ^= value >>> 33;
+    value *= 0xff51afd7ed558ccdL;
+    value ^= value >>> 33;
+    value *= 0xc4ceb9fe1a85ec53L;
+    value ^= value >>> 33;
+    return value;
+  }
+}
@@ -0,0 +1,360 @@
+package com.javadocviewer.search;
+
+import com.javadocviewer.model.DirectorySnapshot;
+import com.javadocviewer.model.Docset;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+/**
+ * The search state of one docset: the scanned page list and the word, text and symbol indexes.
+ * Each is built in the background and published when ready; until then queries fall back to
+ * slower answers. Pages changed while an index is being built are queued and applied before it
+ * is published, so no change is lost to the race.
+ *
+ * <p>All methods are safe to call from any thread.
+ */
+public final class DocsetIndexes {
+
+  private final Path docsRoot;
+
+  private volatile DirectorySnapshot snapshot;
+  private volatile LiveSearchIndex searchIndex;
+  private volatile TrigramIndex textIndex;
+
+  // Loaded on first use, which may be the first search rather than the first page shown
+  private SymbolIndex symbolIndex;
+  private boolean symbolsLoaded;
+
+  // Changes seen while an index is built; the indexes are expected from the start
+  private final Object lock = new Object();
+  private boolean searchIndexBuilding = true;
+  private final List<Change> pendingIndexChanges = new ArrayList<>();
+  private boolean textIndexBuilding = true;
+  private final List<Change> pendingTextChanges = new ArrayList<>();
+  // Bumped whenever pages come or go, so a scan started before that is not published
+  private long snapshotGeneration;
+
+  /** A batch of page changes waiting for an index being built. */
+  private static final class Change {
+    private final Collection<Path> changed;
+    private final Collection<Path> removed;
+
+    Change(Collection<Path> changed, Collection<Path> removed) {
+      this.changed = changed;
+      this.removed = removed;
+    }
+  }
+
+  public DocsetIndexes(Path docsRoot) {
+    this.docsRoot = docsRoot;
+  }
+
+  public Path getDocsRoot() {
+    return docsRoot;
+  }
+
+  /**
+   * Gets the last background scan of the docset.
+   *
+   * @return The snapshot, or null until the first scan finished and again from each batch of
+   *     changed pages until the docset is scanned again
+   */
+  public DirectorySnapshot getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Gets the generation to pass to {@link #setSnapshot} for a scan about to start.
+   *
+   * @return The current generation
+   */
+  public long getSnapshotGeneration() {
+    synchronized (lock) {
+      return snapshotGeneration;
+    }
+  }
+
+  /**
+   * Publishes a scan, unless pages changed since it started.
+   *
+   * @param snapshot The scan
+   * @param generation What {@link #getSnapshotGeneration} returned before the scan started
+   */
+  public void setSnapshot(DirectorySnapshot snapshot, long generation) {
+    synchronized (lock) {
+      if (generation == snapshotGeneration) {
+        this.snapshot = snapshot;
+      }
+    }
+  }
+
+  /**
+   * Opens the word index, building it unless the on-disk copy is current, and publishes it.
+   * Blocks; meant for a background thread.
+   *
+   * @return The index
+   * @throws IOException If the index could neither be read nor built
+   */
+  public LiveSearchIndex buildSearchIndex() throws IOException {
+    synchronized (lock) {
+      searchIndexBuilding = true;
+    }
+    try {
+      LiveSearchIndex index = LiveSearchIndex.open(SearchIndexStore.createDefault(), docsRoot);
+      // Apply pages regenerated while the index was being built before publishing it
+      synchronized (lock) {
+        for (Change change : pendingIndexChanges) {
+          index.update(change.changed, change.removed);
+        }
+        pendingIndexChanges.clear();
+        searchIndexBuilding = false;
+        searchIndex = index;
+      }
+      return index;
+    } catch (IOException | RuntimeException e) {
+      synchronized (lock) {
+        pendingIndexChanges.clear();
+        searchIndexBuilding = false;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Builds the trigram index over page text and publishes it, replacing any earlier one, which
+   * keeps answering until then. Blocks; meant for a background thread.
+   *
+   * @return The index
+   * @throws IOException If the docset cannot be walked
+   */
+  public TrigramIndex buildTextIndex() throws IOException {
+    synchronized (lock) {
+      textIndexBuilding = true;
+    }
+    try {
+      TrigramIndex index = TrigramIndex.build(docsRoot);
+      // Pages rewritten during the build may have been read before the change
+      synchronized (lock) {
+        for (Change change : pendingTextChanges) {
+          index.update(change.changed, change.removed);
+        }
+        pendingTextChanges.clear();
+        textIndexBuilding = false;
+        textIndex = index;
+      }
+      return index;
+    } catch (IOException | RuntimeException e) {
+      synchronized (lock) {
+        pendingTextChanges.clear();
+        textIndexBuilding = false;
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Gets the symbol index, loading it on the first call. Blocks while another thread loads it.
+   *
+   * @return The index, or null if the docset's index files could not be read
+   */
+  public synchronized SymbolIndex getSymbolIndex() {
+    if (!symbolsLoaded) {
+      symbolsLoaded = true;
+      try {
+        symbolIndex = SymbolIndex.load(docsRoot);
+      } catch (IOException e) {
+        symbolIndex = null;
+      }
+    }
+    return symbolIndex;
+  }
+
+  /** Drops the symbol index so the next use reads the index files again. */
+  public synchronized void invalidateSymbols() {
+    symbolsLoaded = false;
+    symbolIndex = null;
+  }
+
+  private synchronized SymbolIndex loadedSymbols() {
+    return symbolIndex;
+  }
+
+  /**
+   * Whether the word index or symbol index has been published.
+   *
+   * @return True once either can answer queries
+   */
+  public boolean isIndexed() {
+    return searchIndex != null || loadedSymbols() != null;
+  }
+
+  /**
+   * Applies a batch of changed pages to every index. Called on the watcher thread; the pages
+   * are read here. The scanned page list may now be missing pages or holding removed ones, so
+   * it is dropped and page lists are read from disk until the docset is scanned again.
+   *
+   * @param changed Pages created or modified
+   * @param removed Pages or directories removed
+   * @return Whether the text index has taken so many changes that it should be rebuilt with
+   *     {@link #buildTextIndex}; it is then marked as building, so only one caller is told
+   */
+  public boolean update(Collection<Path> changed, Collection<Path> removed) {
+    boolean rebuildText = false;
+    synchronized (lock) {
+      if (!changed.isEmpty() || !removed.isEmpty()) {
+        snapshotGeneration++;
+        snapshot = null;
+      }
+      if (searchIndexBuilding) {
+        pendingIndexChanges.add(new Change(changed, removed));
+      } else if (searchIndex != null) {
+        searchIndex.update(changed, removed);
+      }
+      // A published index keeps answering during a rebuild, so it is kept current too
+      if (textIndex != null) {
+        textIndex.update(changed, removed);
+      }
+      if (textIndexBuilding) {
+        pendingTextChanges.add(new Change(changed, removed));
+      } else if (textIndex != null && textIndex.needsRebuild()) {
+        textIndexBuilding = true;
+        rebuildText = true;
+      }
+    }
+
+    // javadoc rewrites its symbol files along with the pages
+    SymbolIndex symbols = loadedSymbols();
+    if (symbols != null && symbols.isStale()) {
+      invalidateSymbols();
+      getSymbolIndex();
+    }
+    return rebuildText;
+  }
+
+  /**
+   * Finds types and members by name.
+   *
+   * @param query The query
+   * @param limit The maximum number of hits
+   * @return The hits, best first, empty if the docset has no symbol index
+   */
+  public List<SearchHit> searchSymbols(String query, int limit) {
+    SymbolIndex symbols = getSymbolIndex();
+    return symbols == null ? Collections.emptyList() : symbols.search(query, limit);
+  }
+
+  /**
+   * Whether the word index has been published. It stays published once it was.
+   *
+   * @return True if {@link #searchPages} can answer
+   */
+  public boolean hasSearchIndex() {
+    return searchIndex != null;
+  }
+
+  /**
+   * Runs a word query against the word index.
+   *
+   * @param query The query
+   * @param limit The maximum number of hits
+   * @return The ranked hits, empty while the index is not ready
+   */
+  public List<SearchHit> searchPages(String query, int limit) {
+    SearchIndex index = searchIndex;
+    return index == null ? Collections.emptyList() : index.search(query, limit);
+  }
+
+  /**
+   * Lists the pages whose file name contains a string, for use until the word index is ready.
+   *
+   * @param lowerQuery The string, already lower case
+   * @param cancelled Polled while matching; the matches so far are returned once it is true
+   * @return The matches, unranked, with a score of zero
+   * @throws IOException If there is no current scan and the docset cannot be walked
+   */
+  public List<SearchHit> matchPageNames(String lowerQuery, BooleanSupplier cancelled)
+      throws IOException {
+    List<SearchHit> hits = new ArrayList<>();
+    DirectorySnapshot scanned = snapshot;
+    if (scanned != null) {
+      // The background scan already holds every page name in memory
+      List<DirectorySnapshot> pages = scanned.getPages();
+      for (int i = 0; i < pages.size(); i++) {
+        if ((i & 1023) == 0 && cancelled.getAsBoolean()) {
+          break;
+        }
+        DirectorySnapshot page = pages.get(i);
+        if (page.nameContains(lowerQuery)) {
+          hits.add(new SearchHit(page.toFileNode().getName(), page.getPath(), 0));
+        }
+      }
+      return hits;
+    }
+
+    try (Stream<Path> paths = Files.walk(docsRoot)) {
+      paths
+          .filter(path -> path.toString().endsWith(".html"))
+          .filter(path -> path.getFileName().toString().toLowerCase().contains(lowerQuery))
+          .forEach(
+              path ->
+                  hits.add(
+                      new SearchHit(
+                          path.getFileName().toString().replace(".html", ""),
+                          Docset.toKey(path),
+                          0)));
+    }
+    return hits;
+  }
+
+  /**
+   * Runs a "substring" or /regex/ query over page text, narrowed by the trigram index once it
+   * is ready.
+   *
+   * @param query The query
+   * @param limit The maximum number of hits
+   * @param cancelled Polled between pages
+   * @return The hits, ranked by the number of matches in the page
+   * @throws IOException If the index is not ready and the docset cannot be walked
+   */
+  public List<SearchHit> searchText(TextQuery query, int limit, BooleanSupplier cancelled)
+      throws IOException {
+    TrigramIndex index = textIndex;
+    if (index != null) {
+      return index.search(query, limit, cancelled);
+    }
+    // Until the index is ready every page has to be checked
+    List<String> pages = new ArrayList<>();
+    for (Path page : listPages()) {
+      pages.add(Docset.toKey(page));
+    }
+    return TrigramIndex.scan(pages, query, limit, cancelled);
+  }
+
+  /**
+   * Lists every page, from the background scan if it is current, else from disk.
+   *
+   * @return The pages
+   * @throws IOException If there is no current scan and the docset cannot be walked
+   */
+  public List<Path> listPages() throws IOException {
+    List<Path> pages = new ArrayList<>();
+    DirectorySnapshot scanned = snapshot;
+    if (scanned != null) {
+      for (DirectorySnapshot page : scanned.getPages()) {
+        pages.add(Docset.toPath(page.getPath()));
+      }
+      return pages;
+    }
+    try (Stream<Path> paths = Files.walk(docsRoot)) {
+      paths.filter(path -> path.toString().endsWith(".html")).forEach(pages::add);
+    }
+    return pages;
+  }
+}
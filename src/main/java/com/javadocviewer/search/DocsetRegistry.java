@@ -0,0 +1,376 @@
+package com.javadocviewer.search;
+
+import com.javadocviewer.model.Docset;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The docsets shown side by side, such as the JDK, Spring and Guava. Registering a docset costs
+ * nothing: it is opened the first time one of its pages is needed, and its indexes are only
+ * built once it is put to use with {@link Entry#activate}, so a dozen registered docsets start
+ * as fast as one.
+ *
+ * <p>Searches are federated: the query runs against every docset's indexes in parallel on a
+ * {@link ForkJoinPool} and the ranked hits are merged by score. Symbol searches cover every
+ * registered docset, loading each one's symbol index on first use, because finding a type in
+ * any library is what federation is for and javadoc's symbol files are small. Word, text and
+ * file searches cover the docsets in use, since their indexes have to be built from every page.
+ */
+public final class DocsetRegistry implements Closeable {
+
+  /** A registered docset, opened and indexed on demand. */
+  public static final class Entry {
+    private final Path location;
+    private final String name;
+    private final String locationKey;
+    private final boolean archive;
+    private Docset docset;
+    private DocsetIndexes indexes;
+    private boolean active;
+
+    Entry(Path location) {
+      this.location = location;
+      Path fileName = location.getFileName();
+      this.name = fileName == null ? location.toString() : fileName.toString();
+      this.archive = Docset.isArchiveFile(location);
+      // Keys into an archive are its entries' jar: URIs
+      this.locationKey =
+          archive ? "jar:" + location.toUri() + "!/" : location.toString() + File.separator;
+    }
+
+    /**
+     * Gets the name shown for the docset.
+     *
+     * @return The file name of the directory or archive
+     */
+    public String getName() {
+      return name;
+    }
+
+    public Path getLocation() {
+      return location;
+    }
+
+    /**
+     * Opens the docset if it is not open yet. Opening an archive reads its central directory.
+     *
+     * @return The docset
+     * @throws IOException If the archive cannot be opened
+     */
+    public synchronized Docset open() throws IOException {
+      if (docset == null) {
+        docset = Docset.open(location);
+        indexes = new DocsetIndexes(docset.getRoot());
+      }
+      return docset;
+    }
+
+    public synchronized boolean isOpen() {
+      return docset != null;
+    }
+
+    /**
+     * Gets the search state of the docset.
+     *
+     * @return The indexes, or null until the docset was opened
+     */
+    public synchronized DocsetIndexes getIndexes() {
+      return indexes;
+    }
+
+    /**
+     * Marks the docset as in use, so searches cover all of it. The caller builds its indexes
+     * when this returns true.
+     *
+     * @return True the first time only
+     */
+    public synchronized boolean activate() {
+      if (active) {
+        return false;
+      }
+      active = true;
+      return true;
+    }
+
+    public synchronized boolean isActive() {
+      return active;
+    }
+
+    /**
+     * Tests whether a page key points into this docset, without opening it.
+     *
+     * @param key A page or directory key
+     * @return True if the key is below the docset's location
+     */
+    public boolean contains(String key) {
+      return key.startsWith(locationKey)
+          || key.equals(locationKey.substring(0, locationKey.length() - 1));
+    }
+
+    synchronized void close() throws IOException {
+      if (docset != null) {
+        docset.close();
+      }
+    }
+  }
+
+  private final List<Entry> entries;
+  private final ForkJoinPool pool;
+
+  /**
+   * Registers docsets. Nothing is opened yet.
+   *
+   * @param locations Documentation directories and javadoc archives; repeats are ignored
+   * @param pool Runs the parts of federated searches
+   */
+  public DocsetRegistry(List<Path> locations, ForkJoinPool pool) {
+    Map<Path, Entry> unique = new LinkedHashMap<>();
+    for (Path location : locations) {
+      Path absolute = location.toAbsolutePath().normalize();
+      unique.putIfAbsent(absolute, new Entry(absolute));
+    }
+    this.entries = Collections.unmodifiableList(new ArrayList<>(unique.values()));
+    this.pool = pool;
+  }
+
+  /**
+   * Registers docsets, searched on the common fork/join pool.
+   *
+   * @param locations Documentation directories and javadoc archives
+   * @return The registry
+   */
+  public static DocsetRegistry create(List<Path> locations) {
+    return new DocsetRegistry(locations, ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Gets the registered docsets in the order they were given.
+   *
+   * @return The entries
+   */
+  public List<Entry> getEntries() {
+    return entries;
+  }
+
+  /**
+   * Finds the docset a page belongs to.
+   *
+   * @param key A page key
+   * @return The entry, or null if the page is in no registered docset
+   */
+  public Entry find(String key) {
+    Entry found = null;
+    for (Entry entry : entries) {
+      // Prefer the innermost location when docsets are nested
+      if (entry.contains(key)
+          && (found == null || entry.locationKey.length() > found.locationKey.length())) {
+        found = entry;
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Tests whether a key names a page of a registered docset. Pages of an archive that is not
+   * open yet are assumed to exist, and are checked when the archive is opened.
+   *
+   * @param key A page key
+   * @return False if the page is in no docset or no longer exists
+   */
+  public boolean exists(String key) {
+    Entry entry = find(key);
+    if (entry == null) {
+      return false;
+    }
+    return (entry.archive && !entry.isOpen()) || Docset.exists(key);
+  }
+
+  /**
+   * Whether any docset can answer queries from an index yet.
+   *
+   * @return True once one word index or symbol index is ready
+   */
+  public boolean isIndexed() {
+    for (Entry entry : entries) {
+      DocsetIndexes indexes = entry.getIndexes();
+      if (indexes != null && indexes.isIndexed()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Finds types and members in every registered docset, opening docsets and loading their
+   * symbol indexes as needed.
+   *
+   * @param query The query
+   * @param limit The maximum number of hits
+   * @return The hits of all docsets, best first
+   * @throws IOException If the search was interrupted; unreadable docsets contribute no hits
+   */
+  public List<SearchHit> searchSymbols(String query, int limit) throws IOException {
+    return merge(
+        fanOut(
+            entries,
+            entry -> {
+              try {
+                entry.open();
+              } catch (IOException e) {
+                // A broken archive has no symbols to offer
+                return Collections.emptyList();
+              }
+              return entry.getIndexes().searchSymbols(query, limit);
+            }),
+        limit);
+  }
+
+  /**
+   * Runs a word query against the docsets in use. Docsets whose word index is still being built
+   * contribute their pages with a matching file name after the ranked hits.
+   *
+   * @param query The query
+   * @param limit The maximum number of ranked hits
+   * @param cancelled Polled while matching file names
+   * @return The ranked hits followed by file name matches
+   * @throws IOException If a docset without a scan cannot be walked
+   */
+  public List<SearchHit> searchPages(String query, int limit, BooleanSupplier cancelled)
+      throws IOException {
+    List<Entry> indexed = new ArrayList<>();
+    List<Entry> unindexed = new ArrayList<>();
+    for (Entry entry : activeEntries()) {
+      (entry.getIndexes().hasSearchIndex() ? indexed : unindexed).add(entry);
+    }
+
+    List<SearchHit> hits =
+        merge(fanOut(indexed, entry -> entry.getIndexes().searchPages(query, limit)), limit);
+    String lowerQuery = query.toLowerCase();
+    for (List<SearchHit> matches :
+        fanOut(unindexed, entry -> entry.getIndexes().matchPageNames(lowerQuery, cancelled))) {
+      hits.addAll(matches);
+    }
+    return hits;
+  }
+
+  /**
+   * Runs a "substring" or /regex/ query over the text of the docsets in use.
+   *
+   * @param query The query
+   * @param limit The maximum number of hits
+   * @param cancelled Polled between pages
+   * @return The hits of all docsets, ranked by the number of matches
+   * @throws IOException If a docset without a text index cannot be walked
+   */
+  public List<SearchHit> searchText(TextQuery query, int limit, BooleanSupplier cancelled)
+      throws IOException {
+    return merge(
+        fanOut(activeEntries(), entry -> entry.getIndexes().searchText(query, limit, cancelled)),
+        limit);
+  }
+
+  /**
+   * Lists every page of the docsets in use.
+   *
+   * @return The pages, docset by docset
+   * @throws IOException If a docset without a scan cannot be walked
+   */
+  public List<Path> listPages() throws IOException {
+    List<Path> pages = new ArrayList<>();
+    for (Entry entry : activeEntries()) {
+      pages.addAll(entry.getIndexes().listPages());
+    }
+    return pages;
+  }
+
+  private List<Entry> activeEntries() {
+    List<Entry> active = new ArrayList<>();
+    for (Entry entry : entries) {
+      if (entry.isActive() && entry.getIndexes() != null) {
+        active.add(entry);
+      }
+    }
+    return active;
+  }
+
+  /** Runs a search on each docset in parallel and collects the results in docset order. */
+  private List<List<SearchHit>> fanOut(List<Entry> targets, EntrySearch search)
+      throws IOException {
+    List<List<SearchHit>> results = new ArrayList<>(targets.size());
+    if (targets.size() <= 1) {
+      if (targets.isEmpty()) {
+        return results;
+      }
+      // Not worth a hand-off to the pool
+      results.add(search.search(targets.get(0)));
+      return results;
+    }
+    List<Future<List<SearchHit>>> parts = new ArrayList<>(targets.size());
+    for (Entry entry : targets) {
+      parts.add(pool.submit(() -> search.search(entry)));
+    }
+    for (Future<List<SearchHit>> part : parts) {
+      try {
+        results.add(part.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Search interrupted", e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof IOException) {
+          throw (IOException) e.getCause();
+        }
+        throw new IOException(e.getCause());
+      }
+    }
+    return results;
+  }
+
+  /** Runs one docset's part of a federated search. */
+  @FunctionalInterface
+  private interface EntrySearch {
+    List<SearchHit> search(Entry entry) throws IOException;
+  }
+
+  /**
+   * Merges hit lists that are each sorted best first. Ties keep the order of the lists, so the
+   * docset registered first wins.
+   */
+  static List<SearchHit> merge(List<List<SearchHit>> ranked, int limit) {
+    List<SearchHit> merged = new ArrayList<>();
+    int[] next = new int[ranked.size()];
+    while (merged.size() < limit) {
+      int best = -1;
+      for (int i = 0; i < ranked.size(); i++) {
+        List<SearchHit> hits = ranked.get(i);
+        if (next[i] < hits.size()
+            && (best < 0
+                || hits.get(next[i]).getScore() > ranked.get(best).get(next[best]).getScore())) {
+          best = i;
+        }
+      }
+      if (best < 0) {
+        break;
+      }
+      merged.add(ranked.get(best).get(next[best]++));
+    }
+    return merged;
+  }
+
+  @Override
+  public void close() throws IOException {
+    for (Entry entry : entries) {
+      entry.close();
+    }
+  }
+}
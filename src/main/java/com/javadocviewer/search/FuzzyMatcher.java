@@ -0,0 +1,289 @@
+package com.javadocviewer.search;
+
+/**
+ * Scores how well a symbol name matches what was typed, the way IDE class lookup does. A match is
+ * one of, from best to worst:
+ *
+ * <ul>
+ *   <li>the whole name or a prefix of it, ignoring case
+ *   <li>camel humps: each run of typed characters starts a hump of the name, so {@code HMap} and
+ *       {@code hm} find {@code HashMap} and {@code CHM} finds {@code ConcurrentHashMap}; a typed
+ *       capital must start a hump, so {@code CHM} does not match {@code CharMap}
+ *   <li>a prefix with one or two typos, such as {@code HahsMap}, checked only on request
+ *   <li>a subsequence starting at a hump, such as {@code hsmp} for {@code HashMap}
+ * </ul>
+ *
+ * <p>Text is passed as a slice of a char array so names stored in an arena can be scored without
+ * creating strings. A matcher keeps scratch space for the typo check, so it must not be shared
+ * between threads.
+ */
+public final class FuzzyMatcher {
+
+  public static final int NO_MATCH = -1;
+  public static final int EXACT = 1000;
+  public static final int PREFIX = 800;
+  public static final int CAMEL_AT_START = 600;
+  public static final int CAMEL = 500;
+  public static final int TYPO = 300;
+  public static final int SUBSEQUENCE = 150;
+
+  /** Longer patterns are only matched as prefixes, which keeps backtracking bounded. */
+  static final int MAX_FUZZY_LENGTH = 32;
+
+  private final char[] pattern;
+  private final boolean[] typedUpper;
+  private final int[] previousRow;
+  private final int[] currentRow;
+  private final int[] olderRow;
+
+  /**
+   * Compiles a pattern.
+   *
+   * @param pattern The typed text, without qualifiers
+   */
+  public FuzzyMatcher(String pattern) {
+    // Lowered char by char, like the names, so indexes stay aligned whatever the locale
+    this.pattern = new char[pattern.length()];
+    this.typedUpper = new boolean[pattern.length()];
+    for (int i = 0; i < this.pattern.length; i++) {
+      this.pattern[i] = lower(pattern.charAt(i));
+      typedUpper[i] = Character.isUpperCase(pattern.charAt(i));
+    }
+    this.previousRow = new int[this.pattern.length + 1];
+    this.currentRow = new int[this.pattern.length + 1];
+    this.olderRow = new int[this.pattern.length + 1];
+  }
+
+  /**
+   * Gets the lower-case first character of the pattern, which every match except a typo match
+   * starts with at a hump.
+   *
+   * @return The first character
+   */
+  public char getFirstChar() {
+    return pattern[0];
+  }
+
+  /**
+   * Gets the number of edits {@link #matchWithTypos} tolerates.
+   *
+   * @return 0 for patterns too short for typo matching, else 1 or 2
+   */
+  public int getMaxEdits() {
+    if (pattern.length < 4 || pattern.length > MAX_FUZZY_LENGTH) {
+      return 0;
+    }
+    return pattern.length >= 8 ? 2 : 1;
+  }
+
+  /**
+   * Gets the letters of a text as a bit set, bit 0 for 'a' through bit 25 for 'z', ignoring
+   * case. Everything else sets bit 26.
+   *
+   * @param text The text
+   * @return The mask
+   */
+  public static int letterMask(String text) {
+    int mask = 0;
+    for (int i = 0; i < text.length(); i++) {
+      mask |= letterBit(text.charAt(i));
+    }
+    return mask;
+  }
+
+  /**
+   * Gets the letters of a slice as a bit set, as {@link #letterMask(String)} does.
+   *
+   * @param text The array holding the text
+   * @param start Where the text starts
+   * @param length The text length
+   * @return The mask
+   */
+  public static int letterMask(char[] text, int start, int length) {
+    int mask = 0;
+    for (int i = start; i < start + length; i++) {
+      mask |= letterBit(text[i]);
+    }
+    return mask;
+  }
+
+  private static int letterBit(char c) {
+    char lower = lower(c);
+    return lower >= 'a' && lower <= 'z' ? 1 << (lower - 'a') : 1 << 26;
+  }
+
+  /**
+   * Scores a name by prefix, camel humps or subsequence.
+   *
+   * @param text The array holding the name
+   * @param start Where the name starts
+   * @param length The name length
+   * @return A score up to {@link #EXACT}, or {@link #NO_MATCH}
+   */
+  public int match(char[] text, int start, int length) {
+    int n = pattern.length;
+    if (n == 0 || length == 0) {
+      return NO_MATCH;
+    }
+    if (length >= n && startsWith(text, start, n)) {
+      return length == n ? EXACT : PREFIX;
+    }
+    if (n > MAX_FUZZY_LENGTH) {
+      return NO_MATCH;
+    }
+
+    int end = start + length;
+    for (int h = start; h < end; h++) {
+      if (isHumpStart(text, start, end, h) && lower(text[h]) == pattern[0]) {
+        if (matchHumps(text, start, end, h, 0)) {
+          // Unmatched characters cost a little so shorter names rank first
+          int penalty = Math.min(length - n, 99);
+          return (h == start ? CAMEL_AT_START : CAMEL) - penalty;
+        }
+      }
+    }
+
+    int first = -1;
+    for (int h = start; h < end; h++) {
+      if (isHumpStart(text, start, end, h) && lower(text[h]) == pattern[0]) {
+        first = h;
+        break;
+      }
+    }
+    if (first >= 0) {
+      int matched = 1;
+      int pos = first + 1;
+      while (matched < n && pos < end) {
+        if (lower(text[pos]) == pattern[matched]) {
+          matched++;
+        }
+        pos++;
+      }
+      if (matched == n) {
+        int gaps = Math.min(pos - first - n, 99);
+        return SUBSEQUENCE - gaps - (first == start ? 0 : 20);
+      }
+    }
+    return NO_MATCH;
+  }
+
+  /**
+   * Scores a name whose prefix is within one edit of the pattern, or two for patterns of eight
+   * or more characters. Edits are insertions, deletions, substitutions and swaps of neighbours.
+   * Patterns shorter than four characters never match, since nearly everything is close to them.
+   *
+   * @param text The array holding the name
+   * @param start Where the name starts
+   * @param length The name length
+   * @return A score below {@link #TYPO}, or {@link #NO_MATCH}
+   */
+  public int matchWithTypos(char[] text, int start, int length) {
+    int n = pattern.length;
+    int maxEdits = getMaxEdits();
+    if (maxEdits == 0) {
+      return NO_MATCH;
+    }
+    int columns = Math.min(length, n + maxEdits);
+    if (columns < n - maxEdits) {
+      return NO_MATCH;
+    }
+
+    // Rows run over the name, columns over the pattern; the best value in the last column is
+    // the distance from the pattern to some prefix of the name
+    int[] older = olderRow;
+    int[] previous = previousRow;
+    int[] current = currentRow;
+    for (int j = 0; j <= n; j++) {
+      previous[j] = j;
+    }
+    int best = previous[n];
+    for (int i = 1; i <= columns; i++) {
+      char c = lower(text[start + i - 1]);
+      current[0] = i;
+      int rowMin = current[0];
+      for (int j = 1; j <= n; j++) {
+        int cost = c == pattern[j - 1] ? 0 : 1;
+        int value = Math.min(Math.min(previous[j] + 1, current[j - 1] + 1), previous[j - 1] + cost);
+        if (i > 1
+            && j > 1
+            && c == pattern[j - 2]
+            && lower(text[start + i - 2]) == pattern[j - 1]) {
+          value = Math.min(value, older[j - 2] + 1);
+        }
+        current[j] = value;
+        rowMin = Math.min(rowMin, value);
+      }
+      best = Math.min(best, current[n]);
+      if (rowMin > maxEdits) {
+        break;
+      }
+      int[] recycled = older;
+      older = previous;
+      previous = current;
+      current = recycled;
+    }
+    return best <= maxEdits ? TYPO - 40 * best : NO_MATCH;
+  }
+
+  private boolean matchHumps(char[] text, int start, int end, int pos, int index) {
+    if (index == pattern.length) {
+      return true;
+    }
+    // Longest run first; shorter runs leave more of the pattern for later humps. A typed capital
+    // always starts a hump, so a run never swallows one
+    int run = 0;
+    while (index + run < pattern.length
+        && pos + run < end
+        && (run == 0 || !typedUpper[index + run])
+        && lower(text[pos + run]) == pattern[index + run]) {
+      run++;
+    }
+    for (int length = run; length >= 1; length--) {
+      if (index + length == pattern.length) {
+        return true;
+      }
+      for (int h = pos + length; h < end; h++) {
+        if (isHumpStart(text, start, end, h)
+            && lower(text[h]) == pattern[index + length]
+            && matchHumps(text, start, end, h, index + length)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private boolean startsWith(char[] text, int start, int n) {
+    for (int i = 0; i < n; i++) {
+      if (lower(text[start + i]) != pattern[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Tests whether a character starts a hump: the first character, an upper-case letter after a
+   * lower-case one, the last capital of an acronym followed by lower case (the C in
+   * {@code URLConnection}), or a letter or digit after punctuation.
+   */
+  static boolean isHumpStart(char[] text, int start, int end, int i) {
+    if (i == start) {
+      return true;
+    }
+    char c = text[i];
+    char before = text[i - 1];
+    if (!Character.isLetterOrDigit(before)) {
+      return Character.isLetterOrDigit(c);
+    }
+    if (!Character.isUpperCase(c)) {
+      return false;
+    }
+    return !Character.isUpperCase(before)
+        || (i + 1 < end && Character.isLowerCase(text[i + 1]));
+  }
+
+  private static char lower(char c) {
+    return c < 128 ? (c >= 'A' && c <= 'Z' ? (char) (c + 32) : c) : Character.toLowerCase(c);
+  }
+}
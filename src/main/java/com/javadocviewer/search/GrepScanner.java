@@ -0,0 +1,318 @@
+package com.javadocviewer.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Greps the raw bytes of documentation files without any index, for searches the indexes cannot
+ * answer yet. Each file is read into a heap buffer and searched there undecoded; files are
+ * spread over a {@link ForkJoinPool}, whose work stealing keeps every core busy however unevenly
+ * the file sizes fall. Matching lines are handed to a sink as soon as they are found.
+ *
+ * <p>Patterns are regular expressions matched ignoring ASCII case. One without metacharacters is
+ * searched for as a byte string, which avoids the regex engine altogether. Since the bytes are
+ * not decoded, a pattern's non-ASCII characters are matched as their UTF-8 encoding.
+ *
+ * <p>Files are not memory-mapped: a mapping outlives the scan until it is garbage collected,
+ * and on Windows it keeps the file from being deleted or rewritten, which would get in the way
+ * of regenerating the docs. Pages are small enough that reading them costs little more.
+ */
+public class GrepScanner {
+
+  /** Later matches in the same file are not reported. */
+  static final int MAX_MATCHES_PER_FILE = 5;
+
+  /** Bytes of a line kept on each side of a match, which bounds work on minified pages. */
+  private static final int MAX_LINE_CONTEXT = 400;
+
+  private static final int MAX_SNIPPET_LENGTH = 100;
+
+  private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+
+  /** A matching line of a file. */
+  public static final class Match {
+    private final Path file;
+    private final int lineNumber;
+    private final String snippet;
+
+    Match(Path file, int lineNumber, String snippet) {
+      this.file = file;
+      this.lineNumber = lineNumber;
+      this.snippet = snippet;
+    }
+
+    public Path getFile() {
+      return file;
+    }
+
+    /** Gets the 1-based number of the matching line. */
+    public int getLineNumber() {
+      return lineNumber;
+    }
+
+    /** Gets the visible text of the line, or its markup if it has no text, shortened. */
+    public String getSnippet() {
+      return snippet;
+    }
+  }
+
+  private final ForkJoinPool pool;
+
+  public GrepScanner(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Creates a scanner running on the common fork/join pool.
+   *
+   * @return The scanner
+   */
+  public static GrepScanner createDefault() {
+    return new GrepScanner(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Searches files in parallel and blocks until every file was searched or the scan was stopped.
+   *
+   * @param files The files to search
+   * @param pattern The regular expression
+   * @param sink Receives matches from the pool's threads as they are found
+   * @param stopped Polled between files and matches; the scan winds down once it is true
+   * @throws java.util.regex.PatternSyntaxException If the pattern does not compile
+   */
+  public void scan(
+      List<Path> files, String pattern, Consumer<Match> sink, BooleanSupplier stopped) {
+    if (pattern.isEmpty() || files.isEmpty()) {
+      return;
+    }
+    byte[] literal =
+        isLiteral(pattern) ? foldAscii(pattern.getBytes(StandardCharsets.UTF_8)) : null;
+    // Bytes are read as ISO-8859-1 chars, so the pattern is spelled the same way
+    Pattern regex =
+        literal == null
+            ? Pattern.compile(
+                new String(pattern.getBytes(StandardCharsets.UTF_8), StandardCharsets.ISO_8859_1),
+                Pattern.CASE_INSENSITIVE)
+            : null;
+    pool.invoke(new ScanTask(files, 0, files.size(), literal, regex, sink, stopped));
+  }
+
+  static boolean isLiteral(String pattern) {
+    for (int i = 0; i < pattern.length(); i++) {
+      if (REGEX_METACHARACTERS.indexOf(pattern.charAt(i)) >= 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** Splits its range of files in half until one is left, then searches that file. */
+  private static final class ScanTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final List<Path> files;
+    private final int from;
+    private final int to;
+    private final byte[] literal;
+    private final Pattern regex;
+    private final Consumer<Match> sink;
+    private final BooleanSupplier stopped;
+
+    ScanTask(
+        List<Path> files,
+        int from,
+        int to,
+        byte[] literal,
+        Pattern regex,
+        Consumer<Match> sink,
+        BooleanSupplier stopped) {
+      this.files = files;
+      this.from = from;
+      this.to = to;
+      this.literal = literal;
+      this.regex = regex;
+      this.sink = sink;
+      this.stopped = stopped;
+    }
+
+    @Override
+    protected void compute() {
+      if (stopped.getAsBoolean()) {
+        return;
+      }
+      if (to - from == 1) {
+        try {
+          scanFile(files.get(from));
+        } catch (IOException e) {
+          // Removed or unreadable; nothing to report
+        }
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      invokeAll(
+          new ScanTask(files, from, middle, literal, regex, sink, stopped),
+          new ScanTask(files, middle, to, literal, regex, sink, stopped));
+    }
+
+    private void scanFile(Path file) throws IOException {
+      ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+      if (!bytes.hasRemaining()) {
+        return;
+      }
+
+      Matcher matcher = regex == null ? null : regex.matcher(new Latin1Chars(bytes));
+      int position = 0;
+      int line = 1;
+      int lineCountedTo = 0;
+      int found = 0;
+      while (found < MAX_MATCHES_PER_FILE && !stopped.getAsBoolean()) {
+        int start;
+        int end;
+        if (matcher != null) {
+          if (!matcher.find(position)) {
+            break;
+          }
+          start = matcher.start();
+          end = matcher.end();
+        } else {
+          start = indexOf(bytes, literal, position);
+          if (start < 0) {
+            break;
+          }
+          end = start + literal.length;
+        }
+
+        line += countNewlines(bytes, lineCountedTo, start);
+        lineCountedTo = start;
+        int lineStart = lineStart(bytes, start);
+        int lineEnd = lineEnd(bytes, Math.max(end, start + 1));
+        sink.accept(new Match(file, line, snippet(bytes, lineStart, lineEnd)));
+        found++;
+
+        // One report per line; the next match is looked for on a later line
+        position = lineEnd + 1;
+        if (position >= bytes.limit()) {
+          break;
+        }
+      }
+    }
+  }
+
+  /** Finds a pattern folded by {@link #foldAscii}, ignoring ASCII case. */
+  static int indexOf(ByteBuffer bytes, byte[] literal, int from) {
+    byte first = literal[0];
+    int last = bytes.limit() - literal.length;
+    for (int i = from; i <= last; i++) {
+      if (fold(bytes.get(i)) != first) {
+        continue;
+      }
+      int j = 1;
+      while (j < literal.length && fold(bytes.get(i + j)) == literal[j]) {
+        j++;
+      }
+      if (j == literal.length) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static byte[] foldAscii(byte[] bytes) {
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = fold(bytes[i]);
+    }
+    return bytes;
+  }
+
+  private static byte fold(byte b) {
+    return b >= 'A' && b <= 'Z' ? (byte) (b + 32) : b;
+  }
+
+  private static int countNewlines(ByteBuffer bytes, int from, int to) {
+    int count = 0;
+    for (int i = from; i < to; i++) {
+      if (bytes.get(i) == '\n') {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private static int lineStart(ByteBuffer bytes, int position) {
+    int limit = Math.max(0, position - MAX_LINE_CONTEXT);
+    int i = position;
+    while (i > limit && bytes.get(i - 1) != '\n') {
+      i--;
+    }
+    return i;
+  }
+
+  private static int lineEnd(ByteBuffer bytes, int position) {
+    int limit = Math.min(bytes.limit(), position + MAX_LINE_CONTEXT);
+    int i = position;
+    while (i < limit && bytes.get(i) != '\n') {
+      i++;
+    }
+    return i;
+  }
+
+  private static String snippet(ByteBuffer bytes, int start, int end) {
+    byte[] line = new byte[end - start];
+    bytes.get(start, line);
+    String raw = new String(line, StandardCharsets.UTF_8);
+    String text = HtmlTokenizer.extractText(raw);
+    String snippet = text.isEmpty() ? raw.strip() : text;
+    return snippet.length() > MAX_SNIPPET_LENGTH
+        ? snippet.substring(0, MAX_SNIPPET_LENGTH) + "…"
+        : snippet;
+  }
+
+  /** Reads bytes as ISO-8859-1 characters, so a regex can run over a file undecoded. */
+  private static final class Latin1Chars implements CharSequence {
+    private final ByteBuffer bytes;
+    private final int offset;
+    private final int length;
+
+    Latin1Chars(ByteBuffer bytes) {
+      this(bytes, 0, bytes.limit());
+    }
+
+    private Latin1Chars(ByteBuffer bytes, int offset, int length) {
+      this.bytes = bytes;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+      return (char) (bytes.get(offset + index) & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+      return new Latin1Chars(bytes, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+      byte[] copy = new byte[length];
+      bytes.get(offset, copy);
+      return new String(copy, StandardCharsets.ISO_8859_1);
+    }
+  }
+}
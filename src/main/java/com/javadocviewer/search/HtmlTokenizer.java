@@ -0,0 +1,237 @@
+package com.javadocviewer.search;
+
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Splits HTML documents into lowercase search terms in a single pass. Markup, comments, entities
+ * and the bodies of script and style elements are skipped so only visible text is indexed.
+ */
+public final class HtmlTokenizer {
+
+  static final int MIN_TERM_LENGTH = 2;
+  static final int MAX_TERM_LENGTH = 64;
+
+  /** Elements that run on within a line; any other tag separates the text around it. */
+  private static final Set<String> INLINE_ELEMENTS =
+      Set.of("a", "abbr", "b", "code", "em", "i", "span", "strong", "sub", "sup", "tt", "var");
+
+  private HtmlTokenizer() {}
+
+  /**
+   * Emits every term of the visible text of an HTML document.
+   *
+   * @param html The raw HTML source
+   * @param sink Receives each lowercase term, in document order
+   */
+  public static void tokenizeHtml(CharSequence html, Consumer<String> sink) {
+    StringBuilder term = new StringBuilder(MAX_TERM_LENGTH);
+    int length = html.length();
+    int i = 0;
+
+    while (i < length) {
+      char c = html.charAt(i);
+
+      if (c == '<') {
+        flush(term, sink);
+        i = skipMarkup(html, i);
+      } else if (c == '&') {
+        flush(term, sink);
+        i = skipEntity(html, i);
+      } else {
+        append(term, c, sink);
+        i++;
+      }
+    }
+    flush(term, sink);
+  }
+
+  /**
+   * Emits the terms of plain text such as a user query.
+   *
+   * @param text The text to split
+   * @param sink Receives each lowercase term
+   */
+  public static void tokenizeText(CharSequence text, Consumer<String> sink) {
+    StringBuilder term = new StringBuilder(MAX_TERM_LENGTH);
+    for (int i = 0; i < text.length(); i++) {
+      append(term, text.charAt(i), sink);
+    }
+    flush(term, sink);
+  }
+
+  /**
+   * Extracts the visible text of an HTML document as it reads on screen. Inline tags such as
+   * {@code <code>} and {@code <a>} are dropped without a break so signatures stay intact, other
+   * tags become a space, common entities are decoded and runs of whitespace collapse to one
+   * space.
+   *
+   * @param html The raw HTML source
+   * @return The visible text
+   */
+  public static String extractText(CharSequence html) {
+    StringBuilder text = new StringBuilder(html.length() / 2);
+    int length = html.length();
+    int i = 0;
+
+    while (i < length) {
+      char c = html.charAt(i);
+
+      if (c == '<') {
+        int end = skipMarkup(html, i);
+        if (!isInlineTag(html, i)) {
+          appendSpace(text);
+        }
+        i = end;
+      } else if (c == '&') {
+        int end = skipEntity(html, i);
+        char decoded = end > i + 1 ? decodeEntity(html, i + 1, end - 1) : '&';
+        if (decoded == ' ') {
+          appendSpace(text);
+        } else if (decoded != 0) {
+          text.append(decoded);
+        }
+        i = end;
+      } else if (Character.isWhitespace(c)) {
+        appendSpace(text);
+        i++;
+      } else {
+        text.append(c);
+        i++;
+      }
+    }
+    return text.toString().trim();
+  }
+
+  private static void appendSpace(StringBuilder text) {
+    if (text.length() > 0 && text.charAt(text.length() - 1) != ' ') {
+      text.append(' ');
+    }
+  }
+
+  private static boolean isInlineTag(CharSequence html, int start) {
+    int i = start + 1;
+    if (i < html.length() && html.charAt(i) == '/') {
+      i++;
+    }
+    int nameStart = i;
+    while (i < html.length() && Character.isLetterOrDigit(html.charAt(i))) {
+      i++;
+    }
+    if (i == nameStart) {
+      return false;
+    }
+    return INLINE_ELEMENTS.contains(html.subSequence(nameStart, i).toString().toLowerCase());
+  }
+
+  /** Decodes the entity between {@code &} and {@code ;}, or returns 0 for an unknown one. */
+  private static char decodeEntity(CharSequence html, int start, int end) {
+    String name = html.subSequence(start, end).toString();
+    switch (name) {
+      case "lt":
+        return '<';
+      case "gt":
+        return '>';
+      case "amp":
+        return '&';
+      case "quot":
+        return '"';
+      case "apos":
+        return '\'';
+      case "nbsp":
+        return ' ';
+      default:
+        break;
+    }
+    if (name.length() > 1 && name.charAt(0) == '#') {
+      try {
+        boolean hex = name.charAt(1) == 'x' || name.charAt(1) == 'X';
+        int code = Integer.parseInt(name.substring(hex ? 2 : 1), hex ? 16 : 10);
+        return code > 0 && code <= Character.MAX_VALUE ? (char) code : 0;
+      } catch (NumberFormatException e) {
+        return 0;
+      }
+    }
+    return 0;
+  }
+
+  private static void append(StringBuilder term, char c, Consumer<String> sink) {
+    if (Character.isLetterOrDigit(c)) {
+      if (term.length() < MAX_TERM_LENGTH) {
+        term.append(Character.toLowerCase(c));
+      }
+    } else {
+      flush(term, sink);
+    }
+  }
+
+  private static void flush(StringBuilder term, Consumer<String> sink) {
+    if (term.length() >= MIN_TERM_LENGTH) {
+      sink.accept(term.toString());
+    }
+    term.setLength(0);
+  }
+
+  /** Returns the index just past the tag, comment or raw-text element starting at {@code start}. */
+  private static int skipMarkup(CharSequence html, int start) {
+    if (regionMatches(html, start, "<!--")) {
+      int end = indexOf(html, "-->", start + 4);
+      return end < 0 ? html.length() : end + 3;
+    }
+
+    int end = indexOf(html, ">", start + 1);
+    if (end < 0) {
+      return html.length();
+    }
+
+    // The contents of script and style elements are not visible text
+    for (String rawText : new String[] {"script", "style"}) {
+      if (regionMatches(html, start + 1, rawText)) {
+        int close = indexOf(html, "</" + rawText, end + 1);
+        if (close < 0) {
+          return html.length();
+        }
+        int closeEnd = indexOf(html, ">", close);
+        return closeEnd < 0 ? html.length() : closeEnd + 1;
+      }
+    }
+    return end + 1;
+  }
+
+  private static int skipEntity(CharSequence html, int start) {
+    int limit = Math.min(html.length(), start + 10);
+    for (int i = start + 1; i < limit; i++) {
+      char c = html.charAt(i);
+      if (c == ';') {
+        return i + 1;
+      }
+      if (!Character.isLetterOrDigit(c) && c != '#') {
+        break;
+      }
+    }
+    return start + 1;
+  }
+
+  private static boolean regionMatches(CharSequence html, int offset, String token) {
+    if (offset + token.length() > html.length()) {
+      return false;
+    }
+    for (int i = 0; i < token.length(); i++) {
+      char c = html.charAt(offset + i);
+      if (Character.toLowerCase(c) != token.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int indexOf(CharSequence html, String token, int from) {
+    int last = html.length() - token.length();
+    for (int i = from; i <= last; i++) {
+      if (regionMatches(html, i, token)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+}
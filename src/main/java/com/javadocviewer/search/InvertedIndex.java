@@ -0,0 +1,226 @@
+package com.javadocviewer.search;
+
+import com.javadocviewer.model.Docset;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * In-memory inverted index mapping each term of the page text to the pages containing it. Pages
+ * are ranked with a tf-idf score plus a boost when a query term appears in the page name.
+ */
+public class InvertedIndex extends AbstractSearchIndex {
+
+  private final List<String> paths = new ArrayList<>();
+  private final List<String> titles = new ArrayList<>();
+  private final TreeMap<String, Integer> dictionary = new TreeMap<>();
+  private final List<PostingList> postings = new ArrayList<>();
+  private final Map<String, Integer> docIds = new HashMap<>();
+  private final BitSet removed = new BitSet();
+
+  /**
+   * Indexes every .html file below the given directory.
+   *
+   * @param docsRoot The documentation root
+   * @return The populated index
+   * @throws IOException If the directory cannot be walked
+   */
+  public static InvertedIndex build(Path docsRoot) throws IOException {
+    InvertedIndex index = new InvertedIndex();
+    List<Path> pages;
+    try (Stream<Path> stream = Files.walk(docsRoot)) {
+      pages =
+          stream
+              .filter(path -> path.toString().endsWith(".html"))
+              .sorted()
+              .collect(Collectors.toList());
+    }
+
+    for (Path page : pages) {
+      try {
+        index.addDocument(Docset.toKey(page), titleOf(page), readPage(page));
+      } catch (IOException | UncheckedIOException e) {
+        // Unreadable pages are left out of the index rather than failing the whole build
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Adds a page to the index, replacing any earlier version of the same path.
+   *
+   * @param path The page path, returned in search hits
+   * @param title The display name of the page
+   * @param html The page source
+   */
+  public void addDocument(String path, String title, CharSequence html) {
+    removeDocument(path);
+
+    Map<String, int[]> frequencies = new HashMap<>();
+    Consumer<String> counter = term -> frequencies.computeIfAbsent(term, t -> new int[1])[0]++;
+    HtmlTokenizer.tokenizeHtml(html, counter);
+    HtmlTokenizer.tokenizeText(title, counter);
+
+    int docId = paths.size();
+    paths.add(path);
+    titles.add(title);
+    docIds.put(path, docId);
+
+    for (Map.Entry<String, int[]> entry : frequencies.entrySet()) {
+      Integer termId = dictionary.get(entry.getKey());
+      if (termId == null) {
+        termId = postings.size();
+        dictionary.put(entry.getKey(), termId);
+        postings.add(new PostingList());
+      }
+      postings.get(termId).add(docId, entry.getValue()[0]);
+    }
+  }
+
+  /**
+   * Removes a page from the index. Its postings stay in place but are skipped by searches.
+   *
+   * @param path The page path
+   * @return Whether the page was indexed
+   */
+  public boolean removeDocument(String path) {
+    Integer docId = docIds.remove(path);
+    if (docId == null) {
+      return false;
+    }
+    removed.set(docId);
+    return true;
+  }
+
+  /**
+   * Removes every page whose path starts with the given directory prefix.
+   *
+   * @param directoryPrefix The directory path, ending with a separator
+   */
+  public void removeDocumentsUnder(String directoryPrefix) {
+    docIds.keySet().removeIf(
+        path -> {
+          if (path.startsWith(directoryPrefix)) {
+            removed.set(docIds.get(path));
+            return true;
+          }
+          return false;
+        });
+  }
+
+  @Override
+  public int documentCount() {
+    return paths.size() - removed.cardinality();
+  }
+
+  /**
+   * Gets the number of distinct terms in the index.
+   *
+   * @return The dictionary size
+   */
+  public int termCount() {
+    return dictionary.size();
+  }
+
+  @Override
+  int[] lookupTerms(String term, boolean prefix) {
+    if (!prefix) {
+      Integer termId = dictionary.get(term);
+      return termId == null ? new int[0] : new int[] {termId};
+    }
+
+    SortedMap<String, Integer> matches = dictionary.subMap(term, term + Character.MAX_VALUE);
+    int[] termIds = new int[Math.min(matches.size(), MAX_PREFIX_EXPANSION)];
+    int count = 0;
+    for (Integer termId : matches.values()) {
+      if (count == termIds.length) {
+        break;
+      }
+      termIds[count++] = termId;
+    }
+    return termIds;
+  }
+
+  @Override
+  int postingCount(int termId) {
+    return postings.get(termId).size;
+  }
+
+  @Override
+  int postingDocument(int termId, int index) {
+    return postings.get(termId).docs[index];
+  }
+
+  @Override
+  int postingFrequency(int termId, int index) {
+    return postings.get(termId).frequencies[index];
+  }
+
+  @Override
+  String title(int doc) {
+    return titles.get(doc);
+  }
+
+  @Override
+  String path(int doc) {
+    return paths.get(doc);
+  }
+
+  @Override
+  int documentSlots() {
+    return paths.size();
+  }
+
+  @Override
+  boolean isLive(int doc) {
+    return !removed.get(doc);
+  }
+
+  /** The dictionary in sorted term order, for writing the index to disk. */
+  SortedMap<String, Integer> dictionary() {
+    return dictionary;
+  }
+
+  PostingList postings(int termId) {
+    return postings.get(termId);
+  }
+
+  static String titleOf(Path page) {
+    return page.getFileName().toString().replace(".html", "");
+  }
+
+  static String readPage(Path page) throws IOException {
+    // Decoding leniently keeps a stray non-UTF-8 byte from dropping the whole page
+    return new String(Files.readAllBytes(page), StandardCharsets.UTF_8);
+  }
+
+  /** Growable parallel arrays of document ids and term frequencies, sorted by document id. */
+  static final class PostingList {
+    int[] docs = new int[4];
+    int[] frequencies = new int[4];
+    int size;
+
+    void add(int doc, int frequency) {
+      if (size == docs.length) {
+        docs = Arrays.copyOf(docs, size * 2);
+        frequencies = Arrays.copyOf(frequencies, size * 2);
+      }
+      docs[size] = doc;
+      frequencies[size] = frequency;
+      size++;
+    }
+  }
+}
@@ -0,0 +1,199 @@
+package com.javadocviewer.search;
+
+import com.javadocviewer.model.Docset;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Makes a read-only index updatable by layering a small in-memory delta over it. Pages that
+ * change after the base index was built are re-indexed into the delta and hidden in the base, so
+ * regenerating a few pages costs a few page reads instead of a full rebuild.
+ *
+ * <p>Once the delta grows past a share of the docset, as it does when the whole docset is
+ * regenerated, the base is rebuilt and persisted again and the delta starts over empty, so
+ * memory stays bounded however often the docs change.
+ */
+public class LiveSearchIndex implements SearchIndex {
+
+  /** Pages the delta may hold before a rebuild, however small the docset. */
+  static final int MIN_REBUILD_PAGES = 256;
+
+  /** The share of the base the delta may reach before the base is rebuilt. */
+  static final int REBUILD_DIVISOR = 4;
+
+  private final SearchIndexStore store;
+  private final Path docsRoot;
+  private AbstractSearchIndex base;
+  private InvertedIndex delta = new InvertedIndex();
+  private final Set<String> shadowedPaths = new HashSet<>();
+  private final Set<String> removedDirectories = new HashSet<>();
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  private LiveSearchIndex(SearchIndexStore store, Path docsRoot, AbstractSearchIndex base) {
+    this.store = store;
+    this.docsRoot = docsRoot;
+    this.base = base;
+  }
+
+  /**
+   * Opens the persisted index of a docset, building it first if it is missing or outdated.
+   *
+   * @param store The store the base index is kept in, and republished to after a rebuild
+   * @param docsRoot The documentation root
+   * @return The index
+   * @throws IOException If the docset cannot be read
+   */
+  public static LiveSearchIndex open(SearchIndexStore store, Path docsRoot) throws IOException {
+    return new LiveSearchIndex(store, docsRoot, store.load(docsRoot));
+  }
+
+  /**
+   * Re-indexes changed pages and drops removed ones. A removed path that is not an .html file is
+   * treated as a directory and hides every page below it. When the delta would outgrow its
+   * budget, the base is rebuilt from disk instead, which blocks for the length of a full build.
+   *
+   * @param changed Pages that were created or modified
+   * @param removed Pages or directories that were deleted
+   */
+  public void update(Collection<Path> changed, Collection<Path> removed) {
+    if (needsRebuild(changed.size()) && rebuild()) {
+      // The rebuilt base already reflects every change on disk
+      return;
+    }
+
+    // Read the pages before taking the lock so searches are only blocked for the swap
+    Map<String, String> pages = new LinkedHashMap<>();
+    for (Path page : changed) {
+      try {
+        pages.put(Docset.toKey(page), InvertedIndex.readPage(page));
+      } catch (IOException e) {
+        // Deleted again before we got to it; the removal event will follow
+      }
+    }
+
+    lock.writeLock().lock();
+    try {
+      for (Path path : removed) {
+        String key = Docset.toKey(path);
+        shadowedPaths.add(key);
+        delta.removeDocument(key);
+        if (!key.endsWith(".html")) {
+          removedDirectories.add(key + File.separator);
+          delta.removeDocumentsUnder(key + File.separator);
+        }
+      }
+      for (Map.Entry<String, String> page : pages.entrySet()) {
+        String title = InvertedIndex.titleOf(Docset.toPath(page.getKey()));
+        shadowedPaths.add(page.getKey());
+        delta.addDocument(page.getKey(), title, page.getValue());
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Whether adding a batch would take the delta, removed pages included, past its budget. */
+  private boolean needsRebuild(int incoming) {
+    lock.readLock().lock();
+    try {
+      int budget = Math.max(MIN_REBUILD_PAGES, base.documentCount() / REBUILD_DIVISOR);
+      return delta.documentSlots() + incoming > budget;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Rebuilds the base from disk, persists it and drops the delta.
+   *
+   * @return Whether the base was replaced; if not, the caller applies the batch to the delta
+   */
+  private boolean rebuild() {
+    AbstractSearchIndex rebuilt;
+    try {
+      rebuilt = store.load(docsRoot);
+    } catch (IOException | RuntimeException e) {
+      // The docs may be half deleted mid-regeneration; the delta carries on until the next batch
+      return false;
+    }
+    lock.writeLock().lock();
+    try {
+      base = rebuilt;
+      delta = new InvertedIndex();
+      shadowedPaths.clear();
+      removedDirectories.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+    return true;
+  }
+
+  @Override
+  public List<SearchHit> search(String query, int limit) {
+    lock.readLock().lock();
+    try {
+      // Both layers weigh terms against the same page count so their scores compare
+      int collectionSize = base.documentCount() + delta.documentCount();
+      List<SearchHit> hits = new ArrayList<>(delta.search(query, limit, collectionSize));
+      hits.addAll(searchBase(query, limit, collectionSize));
+      hits.sort((a, b) -> Double.compare(b.getScore(), a.getScore()));
+      return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the best base hits that are not hidden by the delta. A removed directory hides any
+   * number of pages, so the base is asked for more hits until enough survive or it runs out.
+   */
+  private List<SearchHit> searchBase(String query, int limit, int collectionSize) {
+    int fetch = limit + shadowedPaths.size();
+    while (true) {
+      List<SearchHit> found = base.search(query, fetch, collectionSize);
+      List<SearchHit> visible = new ArrayList<>();
+      for (SearchHit hit : found) {
+        if (!isShadowed(hit.getPath())) {
+          visible.add(hit);
+        }
+      }
+      if (visible.size() >= limit || found.size() < fetch || fetch >= base.documentCount()) {
+        return visible;
+      }
+      fetch = (int) Math.min(Integer.MAX_VALUE, 2L * fetch);
+    }
+  }
+
+  /** Counts pages hidden in the base as well, so the figure is an upper bound after updates. */
+  @Override
+  public int documentCount() {
+    lock.readLock().lock();
+    try {
+      return base.documentCount() + delta.documentCount();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private boolean isShadowed(String path) {
+    if (shadowedPaths.contains(path)) {
+      return true;
+    }
+    for (String directory : removedDirectories) {
+      if (path.startsWith(directory)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
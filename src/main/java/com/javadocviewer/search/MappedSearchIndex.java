@@ -0,0 +1,357 @@
+package com.javadocviewer.search;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Search index queried directly from a memory-mapped file. Nothing is deserialized up front: the
+ * term table is binary searched in place and only the titles and paths of returned hits are
+ * decoded, so opening even a very large index is effectively free.
+ *
+ * <p>File layout (big-endian), version 1:
+ *
+ * <pre>
+ * header    magic, version, fingerprint, doc count, term count,
+ *           offsets of the doc table, term table, string area and postings
+ * doc table per doc: path offset, path length, title offset, title length
+ * term table per term, sorted by UTF-8 bytes: term offset, term length,
+ *           postings offset, posting count
+ * strings   UTF-8 bytes of all paths, titles and terms
+ * postings  per posting: doc id, term frequency
+ * </pre>
+ */
+public class MappedSearchIndex extends AbstractSearchIndex {
+
+  static final int MAGIC = 0x4A445649; // "JDVI"
+  static final int VERSION = 1;
+
+  private static final int HEADER_SIZE = 64;
+  private static final int DOC_ENTRY_SIZE = 16;
+  private static final int TERM_ENTRY_SIZE = 20;
+  private static final int POSTING_SIZE = 8;
+
+  private final ByteBuffer buffer;
+  private final long fingerprint;
+  private final int docCount;
+  private final int termCount;
+  private final int docTable;
+  private final int termTable;
+  private final int strings;
+  private final int postings;
+
+  private MappedSearchIndex(ByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+    if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+      throw new IOException("Not a search index file");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException("Unsupported search index version " + buffer.getInt(4));
+    }
+    this.fingerprint = buffer.getLong(8);
+    this.docCount = buffer.getInt(16);
+    this.termCount = buffer.getInt(20);
+    this.docTable = (int) buffer.getLong(24);
+    this.termTable = (int) buffer.getLong(32);
+    this.strings = (int) buffer.getLong(40);
+    this.postings = (int) buffer.getLong(48);
+    checkLayout(buffer.getLong(24), buffer.getLong(32), buffer.getLong(40), buffer.getLong(48));
+  }
+
+  /**
+   * Checks that the sections named in the header fit the file, so a truncated or corrupt index is
+   * rejected here and rebuilt instead of failing later in the middle of a search. The last doc
+   * and term entries are checked too: entries are written in order, so they reach furthest into
+   * the string area and postings.
+   */
+  private void checkLayout(long docTable, long termTable, long strings, long postings)
+      throws IOException {
+    long capacity = buffer.capacity();
+    if (docCount < 0
+        || termCount < 0
+        || docTable != HEADER_SIZE
+        || termTable != docTable + (long) docCount * DOC_ENTRY_SIZE
+        || strings != termTable + (long) termCount * TERM_ENTRY_SIZE
+        || postings < strings
+        || postings > capacity) {
+      throw new IOException("Corrupt search index header");
+    }
+    long stringsSize = postings - strings;
+    if (docCount > 0) {
+      int entry = this.docTable + (docCount - 1) * DOC_ENTRY_SIZE;
+      if (!fits(buffer.getInt(entry), buffer.getInt(entry + 4), stringsSize)
+          || !fits(buffer.getInt(entry + 8), buffer.getInt(entry + 12), stringsSize)) {
+        throw new IOException("Truncated search index strings");
+      }
+    }
+    if (termCount > 0) {
+      int entry = this.termTable + (termCount - 1) * TERM_ENTRY_SIZE;
+      long postingOffset = buffer.getLong(entry + 8);
+      int postingCount = buffer.getInt(entry + 16);
+      if (!fits(buffer.getInt(entry), buffer.getInt(entry + 4), stringsSize)
+          || postingOffset < 0
+          || postingCount < 0
+          || postings + postingOffset + (long) postingCount * POSTING_SIZE > capacity) {
+        throw new IOException("Truncated search index postings");
+      }
+    }
+  }
+
+  private static boolean fits(int offset, int length, long size) {
+    return offset >= 0 && length >= 0 && (long) offset + length <= size;
+  }
+
+  /**
+   * Maps an index file written by {@link #write}.
+   *
+   * @param file The index file
+   * @return The mapped index
+   * @throws IOException If the file cannot be mapped, has the wrong format or version, or is
+   *     truncated
+   */
+  public static MappedSearchIndex open(Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      // The mapping stays valid after the channel is closed
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new MappedSearchIndex(mapped);
+    }
+  }
+
+  /**
+   * Writes an index to disk in the mapped layout.
+   *
+   * @param index The index to persist
+   * @param fingerprint The docset fingerprint the index was built from
+   * @param file The destination file
+   * @throws IOException If the file cannot be written or would exceed 2 GB
+   */
+  public static void write(InvertedIndex index, long fingerprint, Path file) throws IOException {
+    // Removed documents are dropped and the survivors renumbered densely
+    int[] remap = new int[index.documentSlots()];
+    List<byte[]> docStrings = new ArrayList<>(index.documentCount() * 2);
+    int docCount = 0;
+    for (int doc = 0; doc < remap.length; doc++) {
+      if (!index.isLive(doc)) {
+        remap[doc] = -1;
+        continue;
+      }
+      remap[doc] = docCount++;
+      docStrings.add(index.path(doc).getBytes(StandardCharsets.UTF_8));
+      docStrings.add(index.title(doc).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Sort by UTF-8 bytes so lookups can compare the mapped bytes directly
+    List<byte[]> termBytes = new ArrayList<>(index.termCount());
+    List<int[]> termPostings = new ArrayList<>(index.termCount());
+    List<Map.Entry<byte[], Integer>> terms = new ArrayList<>(index.termCount());
+    for (Map.Entry<String, Integer> entry : index.dictionary().entrySet()) {
+      terms.add(Map.entry(entry.getKey().getBytes(StandardCharsets.UTF_8), entry.getValue()));
+    }
+    terms.sort((a, b) -> Arrays.compareUnsigned(a.getKey(), b.getKey()));
+
+    long stringsSize = 0;
+    for (byte[] bytes : docStrings) {
+      stringsSize += bytes.length;
+    }
+    long postingsSize = 0;
+    for (Map.Entry<byte[], Integer> term : terms) {
+      int[] live = livePostings(index.postings(term.getValue()), remap);
+      if (live.length == 0) {
+        continue;
+      }
+      termBytes.add(term.getKey());
+      termPostings.add(live);
+      stringsSize += term.getKey().length;
+      postingsSize += (long) live.length / 2 * POSTING_SIZE;
+    }
+
+    long docTable = HEADER_SIZE;
+    long termTable = docTable + (long) docCount * DOC_ENTRY_SIZE;
+    long strings = termTable + (long) termBytes.size() * TERM_ENTRY_SIZE;
+    long postings = strings + stringsSize;
+    if (postings + postingsSize > Integer.MAX_VALUE) {
+      throw new IOException("Search index exceeds 2 GB");
+    }
+
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(fingerprint);
+      out.writeInt(docCount);
+      out.writeInt(termBytes.size());
+      out.writeLong(docTable);
+      out.writeLong(termTable);
+      out.writeLong(strings);
+      out.writeLong(postings);
+      out.write(new byte[HEADER_SIZE - 56]);
+
+      int stringOffset = 0;
+      for (byte[] bytes : docStrings) {
+        out.writeInt(stringOffset);
+        out.writeInt(bytes.length);
+        stringOffset += bytes.length;
+      }
+
+      long postingOffset = 0;
+      for (int t = 0; t < termBytes.size(); t++) {
+        int size = termPostings.get(t).length / 2;
+        out.writeInt(stringOffset);
+        out.writeInt(termBytes.get(t).length);
+        out.writeLong(postingOffset);
+        out.writeInt(size);
+        stringOffset += termBytes.get(t).length;
+        postingOffset += (long) size * POSTING_SIZE;
+      }
+
+      for (byte[] bytes : docStrings) {
+        out.write(bytes);
+      }
+      for (byte[] bytes : termBytes) {
+        out.write(bytes);
+      }
+
+      for (int[] live : termPostings) {
+        for (int value : live) {
+          out.writeInt(value);
+        }
+      }
+    }
+  }
+
+  /** Interleaved (doc id, frequency) pairs of the live postings, with doc ids remapped. */
+  private static int[] livePostings(InvertedIndex.PostingList list, int[] remap) {
+    int[] live = new int[list.size * 2];
+    int count = 0;
+    for (int i = 0; i < list.size; i++) {
+      int doc = remap[list.docs[i]];
+      if (doc >= 0) {
+        live[count++] = doc;
+        live[count++] = list.frequencies[i];
+      }
+    }
+    return count == live.length ? live : Arrays.copyOf(live, count);
+  }
+
+  /**
+   * Gets the fingerprint of the docset this index was built from.
+   *
+   * @return The stored fingerprint
+   */
+  public long getFingerprint() {
+    return fingerprint;
+  }
+
+  @Override
+  public int documentCount() {
+    return docCount;
+  }
+
+  @Override
+  int documentSlots() {
+    return docCount;
+  }
+
+  @Override
+  int[] lookupTerms(String term, boolean prefix) {
+    byte[] key = term.getBytes(StandardCharsets.UTF_8);
+
+    // Binary search for the first term >= key
+    int low = 0;
+    int high = termCount;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compareTerm(mid, key, false) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+
+    if (!prefix) {
+      return low < termCount && compareTerm(low, key, false) == 0 ? new int[] {low} : new int[0];
+    }
+
+    int end = low;
+    while (end < termCount
+        && end - low < MAX_PREFIX_EXPANSION
+        && compareTerm(end, key, true) == 0) {
+      end++;
+    }
+    int[] termIds = new int[end - low];
+    for (int i = 0; i < termIds.length; i++) {
+      termIds[i] = low + i;
+    }
+    return termIds;
+  }
+
+  @Override
+  int postingCount(int termId) {
+    return buffer.getInt(termTable + termId * TERM_ENTRY_SIZE + 16);
+  }
+
+  @Override
+  int postingDocument(int termId, int index) {
+    return buffer.getInt(postingBase(termId) + index * POSTING_SIZE);
+  }
+
+  @Override
+  int postingFrequency(int termId, int index) {
+    return buffer.getInt(postingBase(termId) + index * POSTING_SIZE + 4);
+  }
+
+  @Override
+  String title(int doc) {
+    int entry = docTable + doc * DOC_ENTRY_SIZE;
+    return readString(buffer.getInt(entry + 8), buffer.getInt(entry + 12));
+  }
+
+  @Override
+  String path(int doc) {
+    int entry = docTable + doc * DOC_ENTRY_SIZE;
+    return readString(buffer.getInt(entry), buffer.getInt(entry + 4));
+  }
+
+  private int postingBase(int termId) {
+    return postings + (int) buffer.getLong(termTable + termId * TERM_ENTRY_SIZE + 8);
+  }
+
+  /**
+   * Compares the stored term with a key as unsigned bytes. In prefix mode a stored term that
+   * starts with the key compares equal.
+   */
+  private int compareTerm(int termId, byte[] key, boolean prefix) {
+    int entry = termTable + termId * TERM_ENTRY_SIZE;
+    int offset = strings + buffer.getInt(entry);
+    int length = buffer.getInt(entry + 4);
+
+    int common = Math.min(length, key.length);
+    for (int i = 0; i < common; i++) {
+      int cmp = Byte.toUnsignedInt(buffer.get(offset + i)) - Byte.toUnsignedInt(key[i]);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    if (prefix && length >= key.length) {
+      return 0;
+    }
+    return length - key.length;
+  }
+
+  private String readString(int offset, int length) {
+    byte[] bytes = new byte[length];
+    buffer.get(strings + offset, bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
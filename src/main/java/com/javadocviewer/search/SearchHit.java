@@ -0,0 +1,31 @@
+package com.javadocviewer.search;
+
+/** A single ranked search result pointing at a documentation page. */
+public class SearchHit {
+  private final String title;
+  private final String path;
+  private final double score;
+
+  public SearchHit(String title, String path, double score) {
+    this.title = title;
+    this.path = path;
+    this.score = score;
+  }
+
+  public String getTitle() {
+    return title;
+  }
+
+  public String getPath() {
+    return path;
+  }
+
+  public double getScore() {
+    return score;
+  }
+
+  @Override
+  public String toString() {
+    return title + " (" + path + ")";
+  }
+}
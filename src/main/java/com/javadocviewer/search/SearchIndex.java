@@ -0,0 +1,24 @@
+package com.javadocviewer.search;
+
+import java.util.List;
+
+/** Answers ranked full-text queries over the pages of a documentation set. */
+public interface SearchIndex {
+
+  /**
+   * Finds the pages matching every term of the query. The last term is matched as a prefix so
+   * results are useful while the user is still typing.
+   *
+   * @param query The user query
+   * @param limit The maximum number of hits to return
+   * @return Hits ordered from best to worst
+   */
+  List<SearchHit> search(String query, int limit);
+
+  /**
+   * Gets the number of pages in the index.
+   *
+   * @return The document count
+   */
+  int documentCount();
+}
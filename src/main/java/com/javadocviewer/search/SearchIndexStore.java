@@ -0,0 +1,99 @@
+package com.javadocviewer.search;
+
+import com.javadocviewer.model.Docset;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Keeps search indexes on disk in a per-user cache directory so a docset is only indexed again
+ * when its pages change. Each docset gets one file named after its absolute path.
+ */
+public class SearchIndexStore {
+
+  private final Path cacheDir;
+
+  public SearchIndexStore(Path cacheDir) {
+    this.cacheDir = cacheDir;
+  }
+
+  /**
+   * Creates a store in {@code ~/.javadoc-viewer/index}.
+   *
+   * @return The default store
+   */
+  public static SearchIndexStore createDefault() {
+    return new SearchIndexStore(
+        Paths.get(System.getProperty("user.home"), ".javadoc-viewer", "index"));
+  }
+
+  /**
+   * Opens the persisted index for a docset, rebuilding and persisting it first when it is
+   * missing, unreadable or was built from a different state of the docset.
+   *
+   * @param docsRoot The documentation root
+   * @return An index backed by the mapped file, or an in-memory index if it cannot be persisted
+   * @throws IOException If the docset cannot be read
+   */
+  public SearchIndex openOrBuild(Path docsRoot) throws IOException {
+    return load(docsRoot);
+  }
+
+  /** Same as {@link #openOrBuild}, typed for callers that merge scores across indexes. */
+  AbstractSearchIndex load(Path docsRoot) throws IOException {
+    long fingerprint = DocsetFingerprint.compute(docsRoot);
+    Path file = indexFile(docsRoot);
+
+    if (Files.isRegularFile(file)) {
+      try {
+        MappedSearchIndex mapped = MappedSearchIndex.open(file);
+        if (mapped.getFingerprint() == fingerprint) {
+          return mapped;
+        }
+      } catch (IOException e) {
+        // Corrupt or outdated format; fall through and rebuild
+      }
+    }
+
+    InvertedIndex index = InvertedIndex.build(docsRoot);
+    try {
+      save(index, fingerprint, file);
+      return MappedSearchIndex.open(file);
+    } catch (IOException e) {
+      // A read-only home directory should not cost the user search
+      return index;
+    }
+  }
+
+  /**
+   * Gets the index file used for a docset.
+   *
+   * @param docsRoot The documentation root
+   * @return The path of its index file
+   */
+  public Path indexFile(Path docsRoot) {
+    // Archive roots such as "/" are told apart by their jar: URI
+    String key = Docset.toKey(docsRoot.toAbsolutePath().normalize());
+    long hash = DocsetFingerprint.mix(key.hashCode() * 31L + key.length());
+    return cacheDir.resolve(String.format("%016x.idx", hash));
+  }
+
+  private void save(InvertedIndex index, long fingerprint, Path file) throws IOException {
+    Files.createDirectories(cacheDir);
+    // Write to a temporary file first so a crash never leaves a truncated index behind
+    Path temp = Files.createTempFile(cacheDir, "index", ".tmp");
+    try {
+      MappedSearchIndex.write(index, fingerprint, temp);
+      try {
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+}
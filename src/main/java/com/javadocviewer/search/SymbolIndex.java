@@ -0,0 +1,844 @@
+package com.javadocviewer.search;
+
+import com.javadocviewer.model.Docset;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Modules, packages, types and members read from the search index files javadoc writes next to
+ * the pages ({@code type-search-index.js} and friends). Symbols are kept in parallel primitive
+ * arrays sorted by simple name, so a query is a binary search followed by a scan of the matching
+ * prefix. All text lives in one char arena; containers and page paths are deduplicated into a
+ * dictionary, and no strings are created until a symbol is returned as a hit.
+ *
+ * <p>Queries may qualify the name: {@code subList}, {@code List.subList}, {@code List#subList},
+ * {@code java.util.List#subList(int,int)} and {@code java.util} all work. Instances are immutable
+ * and thread-safe.
+ */
+public class SymbolIndex {
+
+  private static final String UNNAMED_PACKAGE = "<Unnamed>";
+  private static final int KIND_COUNT = SymbolKind.values().length;
+
+  /** One bucket per letter a to z, plus one for everything else. */
+  private static final int HUMP_BUCKETS = 27;
+
+  private static final int MAX_KIND_BONUS = KIND_COUNT * 10;
+
+  private final Path docsRoot;
+  private final long[] sourceModified;
+  private final int size;
+
+  // Every string lives in one shared arena; symbols refer to it by offset
+  private final char[] arena;
+  private final byte[] kinds;
+  private final int[] labelStart;
+  private final short[] labelLength;
+  private final short[] nameOffset;
+  private final short[] nameLength;
+  private final int[] container;
+  private final int[] page;
+  private final int[] anchorStart;
+  private final short[] anchorLength;
+
+  // Containers and page paths repeat across symbols, so each is stored once and referenced by id
+  private final int[] dictionaryStart;
+  private final int[] dictionaryLength;
+
+  // Symbols grouped by the first letters of their camel humps, for fuzzy lookup. A symbol is
+  // listed once per distinct letter; humpSymbols is assigned once, before the index is published
+  private final int[] humpBucketStart = new int[HUMP_BUCKETS + 1];
+  private int[] humpSymbols;
+
+  // The letters in each name as a bit set, so most names are rejected without being scanned
+  private final int[] letterMask;
+
+  private SymbolIndex(
+      Path docsRoot, long[] sourceModified, int size, char[] arena, int dictionarySize) {
+    this.docsRoot = docsRoot;
+    this.sourceModified = sourceModified;
+    this.size = size;
+    this.arena = arena;
+    this.kinds = new byte[size];
+    this.labelStart = new int[size];
+    this.labelLength = new short[size];
+    this.nameOffset = new short[size];
+    this.nameLength = new short[size];
+    this.container = new int[size];
+    this.page = new int[size];
+    this.anchorStart = new int[size];
+    this.anchorLength = new short[size];
+    this.dictionaryStart = new int[dictionarySize];
+    this.dictionaryLength = new int[dictionarySize];
+    this.letterMask = new int[size];
+  }
+
+  /**
+   * Loads the symbols of a docset. Docsets without search index files, such as those from JDK 8
+   * and earlier, give an empty index.
+   *
+   * @param docsRoot The documentation root holding the index files
+   * @return The symbol index
+   * @throws IOException If an index file exists but cannot be read
+   */
+  public static SymbolIndex load(Path docsRoot) throws IOException {
+    Builder builder = new Builder();
+    long[] sourceModified = new long[KIND_COUNT];
+
+    // Packages first, since types and members need their package's module
+    SymbolKind[] loadOrder = {
+      SymbolKind.PACKAGE, SymbolKind.MODULE, SymbolKind.TYPE, SymbolKind.MEMBER
+    };
+    for (SymbolKind kind : loadOrder) {
+      Path source = indexFile(docsRoot, kind);
+      sourceModified[kind.ordinal()] = lastModified(source);
+      if (source != null) {
+        parseEntries(readIndex(source), entry -> builder.add(kind, entry));
+      }
+    }
+    return builder.build(docsRoot, sourceModified);
+  }
+
+  /**
+   * Whether any index file was written, added or removed since this index was loaded.
+   *
+   * @return True if {@link #load} would give a different result
+   */
+  public boolean isStale() {
+    for (SymbolKind kind : SymbolKind.values()) {
+      if (lastModified(indexFile(docsRoot, kind)) != sourceModified[kind.ordinal()]) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Gets the number of symbols.
+   *
+   * @return The symbol count
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the approximate heap held by this index.
+   *
+   * @return The size in bytes of the arena and the per-symbol arrays
+   */
+  public long getRetainedBytes() {
+    // 18 arrays with 16-byte headers
+    return 18 * 16L
+        + 2L * arena.length
+        + (long) size * (1 + 4 + 2 + 2 + 2 + 4 + 4 + 4 + 2)
+        + 8L * dictionaryStart.length
+        + 4L * (humpBucketStart.length + humpSymbols.length + letterMask.length)
+        + 8L * sourceModified.length;
+  }
+
+  /**
+   * Finds symbols whose simple name starts with the query's name part. Unqualified queries also
+   * match camel humps, subsequences and, while results are short, near misses; see {@link
+   * FuzzyMatcher}. Better match kinds rank first, then types, packages, modules and members, then
+   * shorter labels. Only the best {@code limit} symbols are turned into hits.
+   *
+   * @param query The query, optionally qualified with a package, type or member signature
+   * @param limit The maximum number of results
+   * @return The hits, best first; paths carry the member anchor after a '#'
+   */
+  public List<SearchHit> search(String query, int limit) {
+    String q = query.trim();
+    if (q.isEmpty() || size == 0 || limit <= 0) {
+      return Collections.emptyList();
+    }
+
+    Collector collector = new Collector(limit);
+    int hash = q.indexOf('#');
+    if (hash >= 0) {
+      collect(q.substring(hash + 1), q.substring(0, hash), true, collector);
+    } else {
+      collect(q, "", false, collector);
+      int dot = q.lastIndexOf('.');
+      if (dot > 0 && dot < q.length() - 1) {
+        collect(q.substring(dot + 1), q.substring(0, dot), false, collector);
+      } else if (dot < 0 && q.indexOf('(') < 0) {
+        collectFuzzy(q, collector);
+      }
+    }
+    return collector.toHits();
+  }
+
+  private void collectFuzzy(String query, Collector collector) {
+    FuzzyMatcher matcher = new FuzzyMatcher(query);
+    char first = matcher.getFirstChar();
+    int queryMask = FuzzyMatcher.letterMask(query);
+
+    // Prefix matches were collected already and outrank everything found here
+    if (collector.accepts(FuzzyMatcher.CAMEL_AT_START + MAX_KIND_BONUS)) {
+      int bucket = humpBucket(first);
+      for (int k = humpBucketStart[bucket]; k < humpBucketStart[bucket + 1]; k++) {
+        int symbol = humpSymbols[k];
+        if ((letterMask[symbol] & queryMask) != queryMask) {
+          continue;
+        }
+        int start = labelStart[symbol] + nameOffset[symbol];
+        int match = matcher.match(arena, start, nameLength[symbol]);
+        if (match != FuzzyMatcher.NO_MATCH && match < FuzzyMatcher.PREFIX) {
+          collector.offer(symbol, rank(symbol, match));
+        }
+      }
+    }
+
+    // Typos are only worth the scan while the results are not full of better matches
+    if (collector.accepts(FuzzyMatcher.TYPO + MAX_KIND_BONUS)) {
+      for (int i = lowerBound(String.valueOf(first)); i < size; i++) {
+        int start = labelStart[i] + nameOffset[i];
+        if (!equalsIgnoreCase(arena[start], first)) {
+          break;
+        }
+        // Each edit can account for at most one letter the name lacks
+        if (Integer.bitCount(queryMask & ~letterMask[i]) > matcher.getMaxEdits()) {
+          continue;
+        }
+        int match = matcher.matchWithTypos(arena, start, nameLength[i]);
+        if (match != FuzzyMatcher.NO_MATCH) {
+          collector.offer(i, rank(i, match));
+        }
+      }
+    }
+  }
+
+  private double rank(int symbol, int match) {
+    return match + (KIND_COUNT - kinds[symbol]) * 10 - Math.min(labelLength[symbol], 99) * 0.1;
+  }
+
+  private static int humpBucket(char c) {
+    char lower = Character.toLowerCase(c);
+    return lower >= 'a' && lower <= 'z' ? lower - 'a' : HUMP_BUCKETS - 1;
+  }
+
+  private void indexHumps() {
+    int[] fill = new int[HUMP_BUCKETS];
+    for (int pass = 0; pass < 2; pass++) {
+      if (pass == 1) {
+        for (int b = 0; b < HUMP_BUCKETS; b++) {
+          humpBucketStart[b + 1] += humpBucketStart[b];
+          fill[b] = humpBucketStart[b];
+        }
+        humpSymbols = new int[humpBucketStart[HUMP_BUCKETS]];
+      }
+      for (int i = 0; i < size; i++) {
+        int start = labelStart[i] + nameOffset[i];
+        int end = start + nameLength[i];
+        if (pass == 0) {
+          letterMask[i] = FuzzyMatcher.letterMask(arena, start, nameLength[i]);
+        }
+        int seenBuckets = 0;
+        for (int h = start; h < end; h++) {
+          if (!FuzzyMatcher.isHumpStart(arena, start, end, h)) {
+            continue;
+          }
+          int bucket = humpBucket(arena[h]);
+          if ((seenBuckets & (1 << bucket)) == 0) {
+            seenBuckets |= 1 << bucket;
+            if (pass == 0) {
+              humpBucketStart[bucket + 1]++;
+            } else {
+              humpSymbols[fill[bucket]++] = i;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private void collect(String member, String qualifier, boolean membersOnly, Collector collector) {
+    int paren = member.indexOf('(');
+    String name = paren >= 0 ? member.substring(0, paren) : member;
+    String signature = paren >= 0 ? stripSpaces(member) : null;
+    if (name.isEmpty() && qualifier.isEmpty()) {
+      return;
+    }
+
+    for (int i = lowerBound(name); i < size; i++) {
+      if (!startsWithIgnoreCase(labelStart[i] + nameOffset[i], nameLength[i], name)) {
+        break;
+      }
+      if (membersOnly && kinds[i] != SymbolKind.MEMBER.ordinal()) {
+        continue;
+      }
+      if (!qualifierMatches(container[i], qualifier)) {
+        continue;
+      }
+      if (signature != null && !signatureMatches(i, signature)) {
+        continue;
+      }
+
+      boolean exact = nameLength[i] == name.length();
+      collector.offer(i, rank(i, exact ? FuzzyMatcher.EXACT : FuzzyMatcher.PREFIX));
+    }
+  }
+
+  /** Finds the first symbol whose name is not below the prefix, ignoring case. */
+  private int lowerBound(String prefix) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (compareIgnoreCase(labelStart[mid] + nameOffset[mid], nameLength[mid], prefix) < 0) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /** Compares an arena slice the way {@link String#CASE_INSENSITIVE_ORDER} compares strings. */
+  private int compareIgnoreCase(int start, int length, String other) {
+    int common = Math.min(length, other.length());
+    for (int i = 0; i < common; i++) {
+      char c1 = arena[start + i];
+      char c2 = other.charAt(i);
+      if (c1 != c2) {
+        c1 = Character.toUpperCase(c1);
+        c2 = Character.toUpperCase(c2);
+        if (c1 != c2) {
+          c1 = Character.toLowerCase(c1);
+          c2 = Character.toLowerCase(c2);
+          if (c1 != c2) {
+            return c1 - c2;
+          }
+        }
+      }
+    }
+    return length - other.length();
+  }
+
+  private boolean startsWithIgnoreCase(int start, int length, String prefix) {
+    if (length < prefix.length()) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (!equalsIgnoreCase(arena[start + i], prefix.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean equalsIgnoreCase(char a, char b) {
+    if (a == b) {
+      return true;
+    }
+    char upperA = Character.toUpperCase(a);
+    char upperB = Character.toUpperCase(b);
+    return upperA == upperB || Character.toLowerCase(upperA) == Character.toLowerCase(upperB);
+  }
+
+  private boolean qualifierMatches(int containerId, String qualifier) {
+    int length = qualifier.length();
+    if (length == 0) {
+      return true;
+    }
+    int containerStart = dictionaryStart[containerId];
+    int start = dictionaryLength[containerId] - length;
+    if (start < 0 || (start > 0 && arena[containerStart + start - 1] != '.')) {
+      return false;
+    }
+    return startsWithIgnoreCase(containerStart + start, length, qualifier);
+  }
+
+  /** Tests whether the label starts with a signature, ignoring case and spaces in the label. */
+  private boolean signatureMatches(int symbol, String signature) {
+    int pos = labelStart[symbol];
+    int end = pos + labelLength[symbol];
+    for (int i = 0; i < signature.length(); i++) {
+      while (pos < end && arena[pos] == ' ') {
+        pos++;
+      }
+      if (pos == end || !equalsIgnoreCase(arena[pos], signature.charAt(i))) {
+        return false;
+      }
+      pos++;
+    }
+    return true;
+  }
+
+  private String slice(int start, int length) {
+    return new String(arena, start, length);
+  }
+
+  private String dictionaryEntry(int id) {
+    return slice(dictionaryStart[id], dictionaryLength[id]);
+  }
+
+  private SearchHit toHit(int symbol, double score) {
+    String path = Docset.toKey(docsRoot.resolve(dictionaryEntry(page[symbol])).normalize());
+    if (anchorStart[symbol] >= 0) {
+      path += "#" + slice(anchorStart[symbol], anchorLength[symbol]);
+    }
+    return new SearchHit(displayName(symbol), path, score);
+  }
+
+  private String displayName(int symbol) {
+    String label = slice(labelStart[symbol], labelLength[symbol]);
+    String owner = dictionaryEntry(container[symbol]);
+    if (kinds[symbol] == SymbolKind.TYPE.ordinal()) {
+      String name = label.substring(nameOffset[symbol]);
+      return owner.isEmpty() ? name : owner + "." + name;
+    }
+    if (kinds[symbol] == SymbolKind.MEMBER.ordinal()) {
+      return owner.substring(owner.lastIndexOf('.') + 1) + "#" + label;
+    }
+    return label;
+  }
+
+  private static String stripSpaces(String text) {
+    return text.indexOf(' ') < 0 ? text : text.replace(" ", "");
+  }
+
+  private static Path indexFile(Path docsRoot, SymbolKind kind) {
+    // javadoc 11 and later write scripts; 9 and 10 wrote zipped JSON
+    Path script = docsRoot.resolve(kind.getIndexName() + ".js");
+    if (Files.isRegularFile(script)) {
+      return script;
+    }
+    Path zip = docsRoot.resolve(kind.getIndexName() + ".zip");
+    return Files.isRegularFile(zip) ? zip : null;
+  }
+
+  private static long lastModified(Path file) {
+    if (file == null) {
+      return -1;
+    }
+    try {
+      return Files.getLastModifiedTime(file).toMillis();
+    } catch (IOException e) {
+      return -1;
+    }
+  }
+
+  private static String readIndex(Path file) throws IOException {
+    if (!file.getFileName().toString().endsWith(".zip")) {
+      return Files.readString(file, StandardCharsets.UTF_8);
+    }
+    try (InputStream in = Files.newInputStream(file);
+        ZipInputStream zip = new ZipInputStream(in)) {
+      ZipEntry entry = zip.getNextEntry();
+      return entry == null ? "" : new String(zip.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  /**
+   * Parses the array of flat objects in a javadoc search index, such as {@code memberSearchIndex
+   * = [{"p":"java.util","c":"List","l":"size()"}, ...];}. Anything before the first '[' is
+   * skipped. Keys are single letters, so each object is passed on as an array indexed by key
+   * letter, reused between objects.
+   *
+   * @param script The file contents
+   * @param consumer Receives each object's values; unknown keys are dropped
+   */
+  static void parseEntries(String script, Consumer<String[]> consumer) {
+    String[] entry = new String[26];
+    int pos = script.indexOf('[');
+    if (pos < 0) {
+      return;
+    }
+    int[] cursor = {pos + 1};
+    while (true) {
+      char c = skipSeparators(script, cursor);
+      if (c != '{') {
+        return;
+      }
+      cursor[0]++;
+
+      Arrays.fill(entry, null);
+      while (true) {
+        c = skipSeparators(script, cursor);
+        if (c != '"') {
+          // '}' or malformed input; either way the object ends here
+          cursor[0]++;
+          break;
+        }
+        String key = readString(script, cursor);
+        if (skipSeparators(script, cursor) != ':') {
+          return;
+        }
+        cursor[0]++;
+        skipSeparators(script, cursor);
+        String value = readValue(script, cursor);
+        if (key.length() == 1 && key.charAt(0) >= 'a' && key.charAt(0) <= 'z') {
+          entry[key.charAt(0) - 'a'] = value;
+        }
+      }
+      consumer.accept(entry);
+    }
+  }
+
+  private static char skipSeparators(String text, int[] cursor) {
+    int pos = cursor[0];
+    while (pos < text.length()) {
+      char c = text.charAt(pos);
+      if (!Character.isWhitespace(c) && c != ',') {
+        cursor[0] = pos;
+        return c;
+      }
+      pos++;
+    }
+    cursor[0] = pos;
+    return 0;
+  }
+
+  private static String readValue(String text, int[] cursor) {
+    if (cursor[0] < text.length() && text.charAt(cursor[0]) == '"') {
+      return readString(text, cursor);
+    }
+    // Bare literal; javadoc does not write these, but skip them safely
+    int start = cursor[0];
+    int pos = start;
+    while (pos < text.length() && ",}".indexOf(text.charAt(pos)) < 0) {
+      pos++;
+    }
+    cursor[0] = pos;
+    return text.substring(start, pos).trim();
+  }
+
+  private static String readString(String text, int[] cursor) {
+    int start = cursor[0] + 1;
+    int end = text.indexOf('"', start);
+    if (end < 0) {
+      cursor[0] = text.length();
+      return text.substring(start);
+    }
+    if (!containsEscape(text, start, end)) {
+      // Common case: no escapes, so the value is a plain slice
+      cursor[0] = end + 1;
+      return text.substring(start, end);
+    }
+
+    StringBuilder value = new StringBuilder();
+    int pos = start;
+    while (pos < text.length()) {
+      char c = text.charAt(pos++);
+      if (c == '"') {
+        break;
+      }
+      if (c == '\\' && pos < text.length()) {
+        char escaped = text.charAt(pos++);
+        switch (escaped) {
+          case 'n':
+            value.append('\n');
+            break;
+          case 't':
+            value.append('\t');
+            break;
+          case 'u':
+            if (pos + 4 <= text.length()) {
+              value.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+              pos += 4;
+            }
+            break;
+          default:
+            value.append(escaped);
+        }
+      } else {
+        value.append(c);
+      }
+    }
+    cursor[0] = pos;
+    return value.toString();
+  }
+
+  private static boolean containsEscape(String text, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (text.charAt(i) == '\\') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Turns parsed index entries into symbols, resolving each one's page URL. */
+  private static final class Builder {
+    private final List<Row> rows = new ArrayList<>();
+    private final Map<String, String> packageModules = new HashMap<>();
+
+    // Members arrive grouped by type, so consecutive ones share these strings
+    private String lastPackage;
+    private String lastType;
+    private String lastContainer;
+    private String lastPage;
+
+    void add(SymbolKind kind, String[] entry) {
+      String label = entry['l' - 'a'];
+      if (label == null || label.length() > Short.MAX_VALUE) {
+        return;
+      }
+      if (kind != SymbolKind.MEMBER && label.indexOf(' ') >= 0) {
+        // Entries such as "All Classes and Interfaces" link to overview pages, not symbols
+        return;
+      }
+      String module = entry['m' - 'a'];
+      String url = entry['u' - 'a'];
+      String pkg = entry['p' - 'a'];
+      if (pkg == null || UNNAMED_PACKAGE.equals(pkg)) {
+        pkg = "";
+      }
+
+      switch (kind) {
+        case MODULE:
+          rows.add(
+              new Row(
+                  kind,
+                  label,
+                  0,
+                  label.length(),
+                  "",
+                  url != null ? url : label + "/module-summary.html",
+                  null));
+          break;
+        case PACKAGE:
+          if (module != null) {
+            packageModules.put(label, module);
+          }
+          rows.add(
+              new Row(
+                  kind,
+                  label,
+                  0,
+                  label.length(),
+                  module != null ? module : "",
+                  url != null ? url : prefix(module) + packagePath(label) + "package-summary.html",
+                  null));
+          break;
+        case TYPE:
+          {
+            int dot = label.lastIndexOf('.');
+            String outer = dot < 0 ? "" : label.substring(0, dot);
+            rows.add(
+                new Row(
+                    kind,
+                    label,
+                    dot + 1,
+                    label.length() - dot - 1,
+                    qualify(pkg, outer),
+                    url != null ? url : typePage(module, pkg, label),
+                    null));
+            break;
+          }
+        case MEMBER:
+          {
+            String type = entry['c' - 'a'];
+            if (type == null) {
+              type = "";
+            }
+            if (!pkg.equals(lastPackage) || !type.equals(lastType)) {
+              lastPackage = pkg;
+              lastType = type;
+              lastContainer = qualify(pkg, type);
+              lastPage = typePage(module, pkg, type);
+            }
+            int paren = label.indexOf('(');
+            rows.add(
+                new Row(
+                    kind,
+                    label,
+                    0,
+                    paren < 0 ? label.length() : paren,
+                    lastContainer,
+                    lastPage,
+                    url != null ? url : label));
+            break;
+          }
+      }
+    }
+
+    private String typePage(String module, String pkg, String type) {
+      if (module == null) {
+        module = packageModules.get(pkg);
+      }
+      return prefix(module) + packagePath(pkg) + type + ".html";
+    }
+
+    private static String prefix(String module) {
+      return module == null ? "" : module + "/";
+    }
+
+    private static String packagePath(String pkg) {
+      return pkg.isEmpty() ? "" : pkg.replace('.', '/') + "/";
+    }
+
+    private static String qualify(String pkg, String name) {
+      if (pkg.isEmpty()) {
+        return name;
+      }
+      return name.isEmpty() ? pkg : pkg + "." + name;
+    }
+
+    SymbolIndex build(Path docsRoot, long[] sourceModified) {
+      rows.sort((a, b) -> String.CASE_INSENSITIVE_ORDER.compare(a.name, b.name));
+
+      // Identical strings, such as the many "toString()" labels, share one arena slice
+      ArenaWriter writer = new ArenaWriter();
+      Map<String, Integer> dictionaryIds = new HashMap<>();
+      List<String> dictionary = new ArrayList<>();
+      int count = rows.size();
+      int[] rowLabels = new int[count];
+      int[] rowAnchors = new int[count];
+      int[] rowContainers = new int[count];
+      int[] rowPages = new int[count];
+      for (int i = 0; i < count; i++) {
+        Row row = rows.get(i);
+        rowLabels[i] = writer.intern(row.label);
+        rowAnchors[i] = row.anchor == null ? -1 : writer.intern(row.anchor);
+        rowContainers[i] = dictionaryId(row.container, dictionaryIds, dictionary);
+        rowPages[i] = dictionaryId(row.page, dictionaryIds, dictionary);
+      }
+      int[] dictionaryStarts = new int[dictionary.size()];
+      for (int i = 0; i < dictionaryStarts.length; i++) {
+        dictionaryStarts[i] = writer.intern(dictionary.get(i));
+      }
+
+      SymbolIndex index =
+          new SymbolIndex(docsRoot, sourceModified, count, writer.toArray(), dictionary.size());
+      for (int i = 0; i < count; i++) {
+        Row row = rows.get(i);
+        index.kinds[i] = (byte) row.kind.ordinal();
+        index.labelStart[i] = rowLabels[i];
+        index.labelLength[i] = (short) row.label.length();
+        index.nameOffset[i] = (short) row.nameOffset;
+        index.nameLength[i] = (short) row.name.length();
+        index.container[i] = rowContainers[i];
+        index.page[i] = rowPages[i];
+        index.anchorStart[i] = rowAnchors[i];
+        index.anchorLength[i] = (short) (row.anchor == null ? 0 : row.anchor.length());
+      }
+      for (int i = 0; i < dictionaryStarts.length; i++) {
+        index.dictionaryStart[i] = dictionaryStarts[i];
+        index.dictionaryLength[i] = dictionary.get(i).length();
+      }
+      index.indexHumps();
+      return index;
+    }
+
+    private static int dictionaryId(String value, Map<String, Integer> ids, List<String> values) {
+      Integer id = ids.get(value);
+      if (id == null) {
+        id = values.size();
+        ids.put(value, id);
+        values.add(value);
+      }
+      return id;
+    }
+  }
+
+  /** Appends strings to a growing char arena, storing each distinct string once. */
+  private static final class ArenaWriter {
+    private final Map<String, Integer> offsets = new HashMap<>();
+    private char[] chars = new char[1 << 16];
+    private int length;
+
+    int intern(String value) {
+      Integer existing = offsets.get(value);
+      if (existing != null) {
+        return existing;
+      }
+      if (length + value.length() > chars.length) {
+        chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + value.length()));
+      }
+      value.getChars(0, value.length(), chars, length);
+      offsets.put(value, length);
+      length += value.length();
+      return length - value.length();
+    }
+
+    char[] toArray() {
+      return Arrays.copyOf(chars, length);
+    }
+  }
+
+  /** A symbol between parsing and packing, still holding its strings. */
+  private static final class Row {
+    final SymbolKind kind;
+    final String label;
+    final String name;
+    final int nameOffset;
+    final String container;
+    final String page;
+    final String anchor;
+
+    Row(
+        SymbolKind kind,
+        String label,
+        int nameOffset,
+        int nameLength,
+        String container,
+        String page,
+        String anchor) {
+      this.kind = kind;
+      this.label = label;
+      this.name = label.substring(nameOffset, nameOffset + nameLength);
+      this.nameOffset = nameOffset;
+      this.container = container;
+      this.page = page;
+      this.anchor = anchor;
+    }
+  }
+
+  /** Keeps the best hits seen so far in a bounded min-heap. */
+  private final class Collector {
+    private final int limit;
+    private final BitSet seen = new BitSet();
+    private final PriorityQueue<double[]> heap =
+        new PriorityQueue<>((a, b) -> Double.compare(a[1], b[1]));
+
+    Collector(int limit) {
+      this.limit = limit;
+    }
+
+    /** Whether a symbol with the given score would still make it into the results. */
+    boolean accepts(double score) {
+      return heap.size() < limit || score > heap.peek()[1];
+    }
+
+    void offer(int symbol, double score) {
+      if (seen.get(symbol)) {
+        return;
+      }
+      seen.set(symbol);
+      if (heap.size() < limit) {
+        heap.add(new double[] {symbol, score});
+      } else if (score > heap.peek()[1]) {
+        heap.poll();
+        heap.add(new double[] {symbol, score});
+      }
+    }
+
+    List<SearchHit> toHits() {
+      List<double[]> best = new ArrayList<>(heap);
+      // Ties keep the name order of the index
+      best.sort((a, b) -> a[1] != b[1] ? Double.compare(b[1], a[1]) : Double.compare(a[0], b[0]));
+      List<SearchHit> hits = new ArrayList<>(best.size());
+      for (double[] entry : best) {
+        hits.add(toHit((int) entry[0], entry[1]));
+      }
+      return hits;
+    }
+  }
+}
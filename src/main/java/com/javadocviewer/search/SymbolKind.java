@@ -0,0 +1,24 @@
+package com.javadocviewer.search;
+
+/** The kinds of symbols listed in javadoc's search index files, in result ranking order. */
+public enum SymbolKind {
+  TYPE("type-search-index"),
+  PACKAGE("package-search-index"),
+  MODULE("module-search-index"),
+  MEMBER("member-search-index");
+
+  private final String indexName;
+
+  SymbolKind(String indexName) {
+    this.indexName = indexName;
+  }
+
+  /**
+   * Gets the base name of the javadoc file listing this kind, without the .js or .zip extension.
+   *
+   * @return The index file base name
+   */
+  public String getIndexName() {
+    return indexName;
+  }
+}
@@ -0,0 +1,327 @@
+package com.javadocviewer.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A search over the visible text of pages rather than over indexed words: either a literal
+ * substring or a regular expression, both matched ignoring case.
+ *
+ * <p>Along with the compiled pattern a query carries the literal strings every match must
+ * contain. A {@link TrigramIndex} only verifies the pages holding all of their trigrams, so
+ * {@code throws .*Timeout} reads the pages that mention both words instead of every page. A
+ * regex whose required text cannot be worked out, such as one with a top-level alternation,
+ * carries no literals and is checked against every page.
+ */
+public final class TextQuery {
+
+  private static final int FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+
+  private final String text;
+  private final Pattern pattern;
+  private final List<String> requiredLiterals;
+
+  private TextQuery(String text, Pattern pattern, List<String> requiredLiterals) {
+    this.text = text;
+    this.pattern = pattern;
+    this.requiredLiterals = requiredLiterals;
+  }
+
+  /**
+   * Recognizes a text query typed into the search field: {@code /regex/} (the closing slash is
+   * optional) or {@code "substring"} (the closing quote is optional).
+   *
+   * @param query What was typed
+   * @return The query, or null if it is an ordinary word search
+   * @throws java.util.regex.PatternSyntaxException If a regex does not compile
+   */
+  public static TextQuery parse(String query) {
+    if (query.length() < 2) {
+      return null;
+    }
+    char open = query.charAt(0);
+    if (open != '/' && open != '"') {
+      return null;
+    }
+    String body = query.substring(1);
+    if (body.length() > 0 && body.charAt(body.length() - 1) == open) {
+      body = body.substring(0, body.length() - 1);
+    }
+    if (body.isEmpty()) {
+      return null;
+    }
+    return open == '/' ? regex(body) : literal(body);
+  }
+
+  /**
+   * Creates a query for a literal substring.
+   *
+   * @param substring The text to find
+   * @return The query
+   */
+  public static TextQuery literal(String substring) {
+    List<String> literals =
+        substring.length() >= TrigramIndex.GRAM_LENGTH
+            ? List.of(TrigramIndex.fold(substring))
+            : Collections.emptyList();
+    return new TextQuery(substring, Pattern.compile(Pattern.quote(substring), FLAGS), literals);
+  }
+
+  /**
+   * Creates a query for a regular expression.
+   *
+   * @param regex The expression
+   * @return The query
+   * @throws java.util.regex.PatternSyntaxException If the expression does not compile
+   */
+  public static TextQuery regex(String regex) {
+    Pattern pattern = Pattern.compile(regex, FLAGS);
+    return new TextQuery(regex, pattern, requiredLiterals(regex));
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Gets the case-folded strings that every match contains, each at least a trigram long.
+   *
+   * @return The literals, empty if any page could match
+   */
+  public List<String> getRequiredLiterals() {
+    return requiredLiterals;
+  }
+
+  /**
+   * Creates a matcher over a page's extracted text.
+   *
+   * @param pageText The text from {@link HtmlTokenizer#extractText}
+   * @return The matcher
+   */
+  public Matcher matcher(CharSequence pageText) {
+    return pattern.matcher(pageText);
+  }
+
+  /**
+   * Works out runs of literal characters that any match of a regex must contain. Only the top
+   * level of the expression is analysed: groups, classes and escapes like {@code \w} end a run,
+   * and a quantifier that allows zero repetitions drops the character before it. Anything this
+   * does not understand yields fewer literals, never wrong ones.
+   */
+  static List<String> requiredLiterals(String regex) {
+    // Inline flags such as (?x) change how the rest of the expression reads
+    for (int open = regex.indexOf("(?"); open >= 0; open = regex.indexOf("(?", open + 2)) {
+      if (!regex.startsWith("(?:", open)) {
+        return Collections.emptyList();
+      }
+    }
+
+    List<String> literals = new ArrayList<>();
+    StringBuilder run = new StringBuilder();
+    boolean lastWasLiteral = false;
+    int i = 0;
+    while (i < regex.length()) {
+      char c = regex.charAt(i);
+      switch (c) {
+        case '\\':
+          if (i + 1 >= regex.length()) {
+            return Collections.emptyList();
+          }
+          char escaped = regex.charAt(i + 1);
+          if (escaped == 'Q') {
+            int end = regex.indexOf("\\E", i + 2);
+            String quoted = regex.substring(i + 2, end < 0 ? regex.length() : end);
+            run.append(TrigramIndex.fold(quoted));
+            lastWasLiteral = !quoted.isEmpty();
+            i = end < 0 ? regex.length() : end + 2;
+          } else if (Character.isLetterOrDigit(escaped)) {
+            // A class, an anchor, a back reference or a character code
+            flush(run, literals);
+            lastWasLiteral = false;
+            i = skipEscape(regex, i);
+            if (i < 0) {
+              return Collections.emptyList();
+            }
+          } else {
+            run.append(TrigramIndex.fold(escaped));
+            lastWasLiteral = true;
+            i += 2;
+          }
+          break;
+        case '[':
+        case '(':
+          flush(run, literals);
+          lastWasLiteral = false;
+          i = skipBracketed(regex, i);
+          if (i < 0) {
+            return Collections.emptyList();
+          }
+          break;
+        case '|':
+        case ')':
+          // Either branch may match, so nothing is required
+          return Collections.emptyList();
+        case '*':
+        case '?':
+          if (lastWasLiteral) {
+            run.setLength(run.length() - 1);
+          }
+          flush(run, literals);
+          lastWasLiteral = false;
+          i = skipQuantifierSuffix(regex, i + 1);
+          break;
+        case '+':
+          flush(run, literals);
+          lastWasLiteral = false;
+          i = skipQuantifierSuffix(regex, i + 1);
+          break;
+        case '{':
+          int close = regex.indexOf('}', i);
+          if (close < 0) {
+            return Collections.emptyList();
+          }
+          if (lastWasLiteral && regex.charAt(i + 1) == '0') {
+            run.setLength(run.length() - 1);
+          }
+          flush(run, literals);
+          lastWasLiteral = false;
+          i = skipQuantifierSuffix(regex, close + 1);
+          break;
+        case '.':
+        case '^':
+        case '$':
+          flush(run, literals);
+          lastWasLiteral = false;
+          i++;
+          break;
+        default:
+          run.append(TrigramIndex.fold(c));
+          lastWasLiteral = true;
+          i++;
+          break;
+      }
+    }
+    flush(run, literals);
+    return literals;
+  }
+
+  private static void flush(StringBuilder run, List<String> literals) {
+    if (run.length() >= TrigramIndex.GRAM_LENGTH) {
+      literals.add(run.toString());
+    }
+    run.setLength(0);
+  }
+
+  /**
+   * Returns the index past an escape that starts with a letter or digit, such as {@code \d},
+   * {@code \p{Lu}}, {@code \x41} or {@code \0101}, or -1 for an escape not known here, whose
+   * length cannot be trusted.
+   */
+  private static int skipEscape(String regex, int start) {
+    char escaped = regex.charAt(start + 1);
+    int i = start + 2;
+    switch (escaped) {
+      case 'x':
+        return i < regex.length() && regex.charAt(i) == '{' ? skipBraces(regex, i) : i + 2;
+      case 'u':
+        return i + 4;
+      case 'c':
+        return i + 1;
+      case '0':
+        // Up to three octal digits, the first of three no higher than 3
+        int digits = 0;
+        while (digits < 3 && i + digits < regex.length() && isOctal(regex.charAt(i + digits))) {
+          digits++;
+        }
+        if (digits == 3 && regex.charAt(i) > '3') {
+          digits = 2;
+        }
+        return i + digits;
+      case 'k':
+        int close = regex.indexOf('>', i);
+        return i < regex.length() && regex.charAt(i) == '<' && close > 0 ? close + 1 : -1;
+      case 'p':
+      case 'P':
+        // \pL names a one-letter category, \p{Lu} any other
+        return i < regex.length() && regex.charAt(i) == '{' ? skipBraces(regex, i) : i + 1;
+      case 'N':
+        return i < regex.length() && regex.charAt(i) == '{' ? skipBraces(regex, i) : -1;
+      case 'b':
+        // \b{g} is a grapheme boundary, plain \b a word boundary
+        return i < regex.length() && regex.charAt(i) == '{' ? skipBraces(regex, i) : i;
+      case 'd':
+      case 'D':
+      case 's':
+      case 'S':
+      case 'w':
+      case 'W':
+      case 'h':
+      case 'H':
+      case 'v':
+      case 'V':
+      case 'B':
+      case 'A':
+      case 'G':
+      case 'Z':
+      case 'z':
+      case 'R':
+      case 'X':
+      case 't':
+      case 'n':
+      case 'r':
+      case 'f':
+      case 'a':
+      case 'e':
+        return i;
+      default:
+        if (escaped >= '1' && escaped <= '9') {
+          // A back reference takes as many digits as there are groups; none are literal here
+          while (i < regex.length() && Character.isDigit(regex.charAt(i))) {
+            i++;
+          }
+          return i;
+        }
+        return -1;
+    }
+  }
+
+  private static boolean isOctal(char c) {
+    return c >= '0' && c <= '7';
+  }
+
+  private static int skipBraces(String regex, int open) {
+    int close = regex.indexOf('}', open);
+    return close < 0 ? -1 : close + 1;
+  }
+
+  /** Returns the index past a bracketed class or group, or -1 if it is not closed. */
+  private static int skipBracketed(String regex, int start) {
+    char open = regex.charAt(start);
+    char close = open == '[' ? ']' : ')';
+    int depth = 0;
+    for (int i = start; i < regex.length(); i++) {
+      char c = regex.charAt(i);
+      if (c == '\\') {
+        i++;
+      } else if (c == open) {
+        depth++;
+      } else if (c == close && --depth == 0) {
+        return i + 1;
+      }
+    }
+    return -1;
+  }
+
+  /** Skips the {@code ?} or {@code +} that makes a quantifier lazy or possessive. */
+  private static int skipQuantifierSuffix(String regex, int i) {
+    return i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+') ? i + 1 : i;
+  }
+
+  @Override
+  public String toString() {
+    return text;
+  }
+}
@@ -0,0 +1,513 @@
+package com.javadocviewer.search;
+
+import com.javadocviewer.model.Docset;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Maps every three-character sequence of the visible page text to the pages containing it, so
+ * substring and regex queries only read pages that can match. A query's required literals are
+ * split into trigrams, their posting lists intersected, and the surviving candidates verified by
+ * running the real pattern over the page text. The index only ever narrows the scan, so results
+ * are exactly those of matching every page.
+ *
+ * <p>Text is case folded before it is split. Posting lists are stored as delta-encoded varints
+ * in one byte array, which keeps the index at a byte or two per posting.
+ *
+ * <p>Pages changed after the build are always verified rather than re-indexed, and removed pages
+ * are left out, so the index stays correct until the next rebuild. Verifying costs a page read
+ * per changed page and query, so once the changes outgrow the same budget as the word index's
+ * delta the index asks to be rebuilt.
+ */
+public class TrigramIndex {
+
+  static final int GRAM_LENGTH = 3;
+
+  /** Pages read and split in parallel per batch, bounding the trigram sets held at once. */
+  private static final int BUILD_BATCH = 256;
+
+  private static final int SNIPPET_BEFORE = 20;
+  private static final int SNIPPET_AFTER = 50;
+
+  /** Matches past this many in a page no longer change its rank. */
+  private static final int MAX_COUNTED_MATCHES = 100;
+
+  /** Breaks ties between pages with as many matches. */
+  private static final Comparator<SearchHit> PAGE_ORDER = Comparator.comparing(SearchHit::getPath);
+
+  private final String[] paths;
+  private final int[] keys;
+  private final int[] postingCount;
+  private final int[] postingStart;
+  private final byte[] postings;
+  private final Set<String> changedPaths = ConcurrentHashMap.newKeySet();
+  private final Set<String> removedPaths = ConcurrentHashMap.newKeySet();
+  private final Set<String> removedDirectories = ConcurrentHashMap.newKeySet();
+
+  private TrigramIndex(
+      String[] paths, int[] keys, int[] postingCount, int[] postingStart, byte[] postings) {
+    this.paths = paths;
+    this.keys = keys;
+    this.postingCount = postingCount;
+    this.postingStart = postingStart;
+    this.postings = postings;
+  }
+
+  /**
+   * Indexes the text of every .html file below a directory.
+   *
+   * @param docsRoot The documentation root
+   * @return The index
+   * @throws IOException If the directory cannot be walked
+   */
+  public static TrigramIndex build(Path docsRoot) throws IOException {
+    List<String> pages;
+    try (Stream<Path> stream = Files.walk(docsRoot)) {
+      pages =
+          stream
+              .filter(path -> path.toString().endsWith(".html"))
+              .map(Docset::toKey)
+              .sorted()
+              .collect(Collectors.toList());
+    }
+
+    Builder builder = new Builder();
+    for (int from = 0; from < pages.size(); from += BUILD_BATCH) {
+      int batchStart = from;
+      int batchEnd = Math.min(pages.size(), from + BUILD_BATCH);
+      int[][] grams =
+          IntStream.range(batchStart, batchEnd)
+              .parallel()
+              .mapToObj(i -> distinctTrigrams(pages.get(i)))
+              .toArray(int[][]::new);
+      for (int i = 0; i < grams.length; i++) {
+        builder.addDocument(batchStart + i, grams[i]);
+      }
+    }
+    return builder.build(pages.toArray(new String[0]));
+  }
+
+  /**
+   * Notes pages that changed since the build. Changed pages are verified for every query from
+   * now on, and removed ones are no longer candidates. A removed path that is not an .html file
+   * is treated as a directory and removes every page below it.
+   *
+   * @param changed Pages that were created or modified
+   * @param removed Pages or directories that were deleted
+   */
+  public void update(Collection<Path> changed, Collection<Path> removed) {
+    for (Path path : removed) {
+      String key = Docset.toKey(path);
+      changedPaths.remove(key);
+      if (key.endsWith(".html")) {
+        removedPaths.add(key);
+      } else {
+        String directory = key + File.separator;
+        removedDirectories.add(directory);
+        changedPaths.removeIf(page -> page.startsWith(directory));
+      }
+    }
+    for (Path page : changed) {
+      changedPaths.add(Docset.toKey(page));
+    }
+  }
+
+  /**
+   * Whether so many pages changed since the build that verifying them all on every query costs
+   * more than building the index again. The budget is the word index's.
+   *
+   * @return True once the index should be replaced by a fresh build
+   */
+  public boolean needsRebuild() {
+    int budget =
+        Math.max(
+            LiveSearchIndex.MIN_REBUILD_PAGES, paths.length / LiveSearchIndex.REBUILD_DIVISOR);
+    return changedPaths.size() + removedPaths.size() + removedDirectories.size() > budget;
+  }
+
+  public int documentCount() {
+    return paths.length;
+  }
+
+  /**
+   * Finds the pages whose text matches a query, best first. A page's title is followed by the
+   * text around its first match.
+   *
+   * @param query The query
+   * @param limit The maximum number of hits
+   * @param cancelled Polled between pages; the hits so far are returned once it is true
+   * @return The hits, ranked by the number of matches in the page
+   */
+  public List<SearchHit> search(TextQuery query, int limit, BooleanSupplier cancelled) {
+    List<String> candidates = new ArrayList<>();
+    int[] docs = candidates(query);
+    int count = docs == null ? paths.length : docs.length;
+    for (int i = 0; i < count; i++) {
+      String page = paths[docs == null ? i : docs[i]];
+      if (!changedPaths.contains(page) && !isRemoved(page)) {
+        candidates.add(page);
+      }
+    }
+    // The index knows nothing about these pages' new text
+    candidates.addAll(changedPaths);
+    return scan(candidates, query, limit, cancelled);
+  }
+
+  private boolean isRemoved(String page) {
+    if (removedPaths.contains(page)) {
+      return true;
+    }
+    for (String directory : removedDirectories) {
+      if (page.startsWith(directory)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Verifies pages against a query without any index, for use before an index is ready. Every
+   * page is checked, so the hits are the best of all pages rather than the first found.
+   *
+   * @param pages The paths of the pages to check
+   * @param query The query
+   * @param limit The maximum number of hits
+   * @param cancelled Polled between pages; the best hits so far are returned once it is true
+   * @return The hits, ranked by the number of matches in the page
+   */
+  public static List<SearchHit> scan(
+      List<String> pages, TextQuery query, int limit, BooleanSupplier cancelled) {
+    if (limit <= 0) {
+      return new ArrayList<>();
+    }
+    // Worst hit on top, so it is the one dropped when a better page turns up
+    PriorityQueue<SearchHit> best =
+        new PriorityQueue<>(
+            limit + 1,
+            Comparator.comparingDouble(SearchHit::getScore).thenComparing(PAGE_ORDER.reversed()));
+    for (String page : pages) {
+      if (cancelled.getAsBoolean()) {
+        break;
+      }
+      String text;
+      try {
+        text = HtmlTokenizer.extractText(InvertedIndex.readPage(Docset.toPath(page)));
+      } catch (IOException | UncheckedIOException | FileSystemNotFoundException e) {
+        // Removed since it was indexed
+        continue;
+      }
+      Matcher matcher = query.matcher(text);
+      if (!matcher.find()) {
+        continue;
+      }
+      int start = matcher.start();
+      int end = matcher.end();
+      int count = 1;
+      while (count < MAX_COUNTED_MATCHES && matcher.find()) {
+        count++;
+      }
+      if (best.size() == limit && count < best.peek().getScore()) {
+        // Would not displace anything, so skip building its snippet
+        continue;
+      }
+      String title = InvertedIndex.titleOf(Docset.toPath(page)) + ": " + snippet(text, start, end);
+      best.add(new SearchHit(title, page, count));
+      if (best.size() > limit) {
+        best.poll();
+      }
+    }
+    List<SearchHit> hits = new ArrayList<>(best);
+    hits.sort(Comparator.comparingDouble(SearchHit::getScore).reversed().thenComparing(PAGE_ORDER));
+    return hits;
+  }
+
+  /**
+   * Intersects the posting lists of every trigram of the query's required literals.
+   *
+   * @return The candidate documents in ascending order, or null if every page is a candidate
+   */
+  int[] candidates(TextQuery query) {
+    List<String> literals = query.getRequiredLiterals();
+    if (literals.isEmpty()) {
+      return null;
+    }
+
+    int[] grams =
+        literals.stream().flatMapToInt(literal -> IntStream.of(trigrams(literal))).toArray();
+    grams = distinct(grams, grams.length);
+
+    // Shortest lists first keeps every intermediate result small
+    int[] slots = new int[grams.length];
+    for (int i = 0; i < grams.length; i++) {
+      slots[i] = Arrays.binarySearch(keys, grams[i]);
+      if (slots[i] < 0) {
+        return new int[0];
+      }
+    }
+    int[] order =
+        IntStream.range(0, slots.length)
+            .boxed()
+            .sorted(Comparator.comparingInt(i -> postingCount[slots[i]]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+
+    int[] result = decode(slots[order[0]]);
+    for (int k = 1; k < order.length && result.length > 0; k++) {
+      result = intersect(result, decode(slots[order[k]]));
+    }
+    return result;
+  }
+
+  /**
+   * Gets the approximate heap held by the index, excluding the page paths.
+   *
+   * @return The size in bytes of the trigram table and the postings
+   */
+  public long getRetainedBytes() {
+    return 4L * 16
+        + 4L * (keys.length + postingCount.length + postingStart.length)
+        + postings.length;
+  }
+
+  private int[] decode(int slot) {
+    int[] docs = new int[postingCount[slot]];
+    int position = postingStart[slot];
+    int doc = -1;
+    for (int i = 0; i < docs.length; i++) {
+      int delta = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = postings[position++];
+        delta |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      doc += delta;
+      docs[i] = doc;
+    }
+    return docs;
+  }
+
+  private static int[] intersect(int[] a, int[] b) {
+    int[] result = new int[Math.min(a.length, b.length)];
+    int count = 0;
+    int i = 0;
+    int j = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] < b[j]) {
+        i++;
+      } else if (a[i] > b[j]) {
+        j++;
+      } else {
+        result[count++] = a[i];
+        i++;
+        j++;
+      }
+    }
+    return Arrays.copyOf(result, count);
+  }
+
+  private static String snippet(String text, int start, int end) {
+    int from = Math.max(0, start - SNIPPET_BEFORE);
+    // A greedy match can span the page; only its start is shown
+    int to = Math.min(text.length(), Math.min(end, start + SNIPPET_AFTER) + SNIPPET_AFTER);
+    String snippet = text.substring(from, to).trim();
+    return (from > 0 ? "…" : "") + snippet + (to < text.length() ? "…" : "");
+  }
+
+  private static int[] distinctTrigrams(String page) {
+    try {
+      return trigrams(fold(HtmlTokenizer.extractText(InvertedIndex.readPage(Docset.toPath(page)))));
+    } catch (IOException | UncheckedIOException e) {
+      // Unreadable pages are left out of the index rather than failing the whole build
+      return new int[0];
+    }
+  }
+
+  /** Gets the distinct trigram codes of case-folded text, sorted. */
+  static int[] trigrams(String folded) {
+    int count = folded.length() - GRAM_LENGTH + 1;
+    if (count <= 0) {
+      return new int[0];
+    }
+    int[] codes = new int[count];
+    for (int i = 0; i < count; i++) {
+      codes[i] = code(folded.charAt(i), folded.charAt(i + 1), folded.charAt(i + 2));
+    }
+    return distinct(codes, count);
+  }
+
+  private static int[] distinct(int[] codes, int count) {
+    Arrays.sort(codes, 0, count);
+    int unique = 0;
+    for (int i = 0; i < count; i++) {
+      if (unique == 0 || codes[unique - 1] != codes[i]) {
+        codes[unique++] = codes[i];
+      }
+    }
+    return Arrays.copyOf(codes, unique);
+  }
+
+  /**
+   * Packs a trigram of 7-bit characters exactly; anything else is hashed into the upper range.
+   * A collision only adds candidates, which verification then rejects.
+   */
+  private static int code(char a, char b, char c) {
+    if ((a | b | c) < 128) {
+      return a << 14 | b << 7 | c;
+    }
+    return (1 << 21) | ((a * 31 + b) * 31 + c) & 0x3FFFFFFF;
+  }
+
+  /** Folds case one character at a time, so folded text lines up with the original. */
+  static String fold(String text) {
+    char[] chars = text.toCharArray();
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = fold(chars[i]);
+    }
+    return new String(chars);
+  }
+
+  static char fold(char c) {
+    return c < 128 ? (c >= 'A' && c <= 'Z' ? (char) (c + 32) : c) : Character.toLowerCase(c);
+  }
+
+  /** Accumulates per-trigram varint posting lists while documents are added in id order. */
+  private static final class Builder {
+    private int[] tableKeys = new int[1 << 16];
+    private int[] tableSlots = new int[1 << 16];
+    private int used;
+    private byte[][] lists = new byte[1024][];
+    private int[] listLength = new int[1024];
+    private int[] lastDoc = new int[1024];
+    private int[] counts = new int[1024];
+
+    Builder() {
+      Arrays.fill(tableSlots, -1);
+    }
+
+    void addDocument(int doc, int[] grams) {
+      for (int gram : grams) {
+        int slot = slotFor(gram);
+        int delta = doc - lastDoc[slot];
+        lastDoc[slot] = doc;
+        counts[slot]++;
+        byte[] list = lists[slot];
+        if (listLength[slot] + 5 > list.length) {
+          list = lists[slot] = Arrays.copyOf(list, list.length * 2 + 5);
+        }
+        while ((delta & ~0x7F) != 0) {
+          list[listLength[slot]++] = (byte) (delta & 0x7F | 0x80);
+          delta >>>= 7;
+        }
+        list[listLength[slot]++] = (byte) delta;
+      }
+    }
+
+    private int slotFor(int gram) {
+      int mask = tableKeys.length - 1;
+      int i = hash(gram, mask);
+      while (tableSlots[i] >= 0) {
+        if (tableKeys[i] == gram) {
+          return tableSlots[i];
+        }
+        i = (i + 1) & mask;
+      }
+      if (used == lists.length) {
+        lists = Arrays.copyOf(lists, used * 2);
+        listLength = Arrays.copyOf(listLength, used * 2);
+        lastDoc = Arrays.copyOf(lastDoc, used * 2);
+        counts = Arrays.copyOf(counts, used * 2);
+      }
+      tableKeys[i] = gram;
+      tableSlots[i] = used;
+      lists[used] = new byte[4];
+      lastDoc[used] = -1;
+      used++;
+      if (used * 2 > tableKeys.length) {
+        rehash();
+      }
+      return used - 1;
+    }
+
+    /** Fibonacci hashing: the top bits of the product index a power-of-two table. */
+    private static int hash(int gram, int mask) {
+      return (gram * 0x9E3779B9) >>> Integer.numberOfLeadingZeros(mask);
+    }
+
+    private void rehash() {
+      int[] oldKeys = tableKeys;
+      int[] oldSlots = tableSlots;
+      tableKeys = new int[oldKeys.length * 2];
+      tableSlots = new int[oldKeys.length * 2];
+      Arrays.fill(tableSlots, -1);
+      int mask = tableKeys.length - 1;
+      for (int k = 0; k < oldKeys.length; k++) {
+        if (oldSlots[k] >= 0) {
+          int i = hash(oldKeys[k], mask);
+          while (tableSlots[i] >= 0) {
+            i = (i + 1) & mask;
+          }
+          tableKeys[i] = oldKeys[k];
+          tableSlots[i] = oldSlots[k];
+        }
+      }
+    }
+
+    TrigramIndex build(String[] paths) {
+      // Order the trigrams by code so queries can binary search them
+      Integer[] order = new Integer[used];
+      int[] gramOfSlot = new int[used];
+      for (int k = 0; k < tableKeys.length; k++) {
+        if (tableSlots[k] >= 0) {
+          gramOfSlot[tableSlots[k]] = tableKeys[k];
+        }
+      }
+      for (int i = 0; i < used; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, Comparator.comparingInt(slot -> gramOfSlot[slot]));
+
+      int[] keys = new int[used];
+      int[] postingCount = new int[used];
+      int[] postingStart = new int[used + 1];
+      long total = 0;
+      for (int i = 0; i < used; i++) {
+        total += listLength[order[i]];
+      }
+      if (total > Integer.MAX_VALUE - 8) {
+        throw new IllegalStateException("Trigram postings exceed 2 GB");
+      }
+      byte[] postings = new byte[(int) total];
+      int position = 0;
+      for (int i = 0; i < used; i++) {
+        int slot = order[i];
+        keys[i] = gramOfSlot[slot];
+        postingCount[i] = counts[slot];
+        postingStart[i] = position;
+        System.arraycopy(lists[slot], 0, postings, position, listLength[slot]);
+        position += listLength[slot];
+        lists[slot] = null;
+      }
+      postingStart[used] = position;
+      return new TrigramIndex(paths, keys, postingCount, postingStart, postings);
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.javadocviewer.util;
+
+import java.util.LinkedList;
+import javafx.scene.control.Tab;
+import javafx.scene.web.WebView;
+
+/**
+ * The state of a tab while another tab is shown: its history and either the live view showing
+ * its page or, once suspended, only the scroll position to restore. A suspended tab holds no
+ * WebView at all, so tabs in the background cost next to nothing however many are open.
+ */
+public class BrowserTab {
+
+  private final Tab tab;
+  private LinkedList<String> history = new LinkedList<>();
+  private int historyIndex = -1;
+  private WebView view;
+  private double scrollY;
+  private long lastShown;
+
+  public BrowserTab(Tab tab) {
+    this.tab = tab;
+  }
+
+  public Tab getTab() {
+    return tab;
+  }
+
+  public LinkedList<String> getHistory() {
+    return history;
+  }
+
+  public int getHistoryIndex() {
+    return historyIndex;
+  }
+
+  /**
+   * Stores the history of the tab as it was left.
+   *
+   * @param history The pages visited
+   * @param historyIndex The position of the page shown
+   */
+  public void setHistory(LinkedList<String> history, int historyIndex) {
+    this.history = history;
+    this.historyIndex = historyIndex;
+  }
+
+  /**
+   * Gets the page the tab shows.
+   *
+   * @return The history entry, possibly with an anchor, or null for an empty tab
+   */
+  public String getCurrentPage() {
+    return historyIndex >= 0 ? history.get(historyIndex) : null;
+  }
+
+  /**
+   * Gets the view showing the tab's page in the background.
+   *
+   * @return The view, or null if the tab is suspended or on screen
+   */
+  public WebView getView() {
+    return view;
+  }
+
+  /**
+   * Keeps the tab's view alive while the tab is in the background.
+   *
+   * @param view The view, no longer in the scene
+   * @param now When the tab was left, for choosing which tab to suspend first
+   */
+  public void keepView(WebView view, long now) {
+    this.view = view;
+    this.lastShown = now;
+  }
+
+  /**
+   * Gives up the tab's view, remembering only where its page was scrolled to.
+   *
+   * @param scrollY The vertical scroll position of the page
+   */
+  public void suspend(double scrollY) {
+    this.view = null;
+    this.scrollY = scrollY;
+  }
+
+  /** Hands the view over to the screen. */
+  public void takeView() {
+    this.view = null;
+  }
+
+  public double getScrollY() {
+    return scrollY;
+  }
+
+  public long getLastShown() {
+    return lastShown;
+  }
+}
@@ -0,0 +1,209 @@
+package com.javadocviewer.util;
+
+import com.javadocviewer.model.DirectorySnapshot;
+import com.javadocviewer.model.Docset;
+import com.javadocviewer.model.PathTable;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Scans documentation directories reading each entry's attributes exactly once. Sorting uses the
+ * cached attributes instead of calling {@code isDirectory()} per comparison, and full scans fan
+ * subdirectories out over a {@link ForkJoinPool}. The result is packed into a {@link PathTable}.
+ */
+public class DirectoryScanner {
+
+  /** Directories first, then names alphabetically ignoring case. */
+  static final Comparator<Entry> DISPLAY_ORDER =
+      Comparator.comparing((Entry entry) -> !entry.directory)
+          .thenComparing((Entry entry) -> entry.name, String.CASE_INSENSITIVE_ORDER);
+
+  private final ForkJoinPool pool;
+
+  public DirectoryScanner(ForkJoinPool pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Creates a scanner running on the common fork/join pool.
+   *
+   * @return The scanner
+   */
+  public static DirectoryScanner createDefault() {
+    return new DirectoryScanner(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Lists one level of a directory. Subdirectory entries have no children.
+   *
+   * @param directory The directory to list
+   * @return The sorted subdirectories and pages, empty if it cannot be read
+   */
+  public static List<DirectorySnapshot> listDirectory(Path directory) {
+    List<Entry> entries = readLevel(directory);
+    PathTable.Builder builder = builder(directory);
+    addChildren(builder, PathTable.ROOT, entries);
+    return new DirectorySnapshot(builder.build(), PathTable.ROOT).getChildren();
+  }
+
+  private static PathTable.Builder builder(Path root) {
+    char separator = root.getFileSystem().getSeparator().charAt(0);
+    return new PathTable.Builder(Docset.toKey(root), nameOf(root), separator);
+  }
+
+  /**
+   * Scans a whole directory tree in parallel.
+   *
+   * @param root The documentation root
+   * @return The snapshot of the root and everything below it
+   */
+  public DirectorySnapshot scan(Path root) {
+    List<Entry> entries = pool.invoke(new ScanTask(root, null));
+
+    // The parallel phase yields short-lived lists; pack them into the table depth first
+    PathTable.Builder builder = builder(root);
+    addTree(builder, PathTable.ROOT, entries);
+    return new DirectorySnapshot(builder.build(), PathTable.ROOT);
+  }
+
+  private static void addTree(PathTable.Builder builder, int directoryId, List<Entry> entries) {
+    int first = addChildren(builder, directoryId, entries);
+    for (int i = 0; i < entries.size(); i++) {
+      Entry entry = entries.get(i);
+      if (entry.directory) {
+        addTree(builder, first + i, entry.children);
+      }
+    }
+  }
+
+  private static int addChildren(PathTable.Builder builder, int directoryId, List<Entry> entries) {
+    String[] names = new String[entries.size()];
+    boolean[] directories = new boolean[entries.size()];
+    for (int i = 0; i < names.length; i++) {
+      names[i] = entries.get(i).name;
+      directories[i] = entries.get(i).directory;
+    }
+    return builder.addChildren(directoryId, names, directories);
+  }
+
+  private static String nameOf(Path directory) {
+    Path fileName = directory.getFileName();
+    return fileName == null ? directory.toString() : fileName.toString();
+  }
+
+  /**
+   * Reads the direct entries of a directory with a single attribute read per entry. Symbolic
+   * links are followed, so a linked docs root or subdirectory is listed like a real one.
+   *
+   * @param directory The directory to read
+   * @return The sorted pages and subdirectories, without the subdirectories' children
+   */
+  private static List<Entry> readLevel(Path directory) {
+    List<Entry> entries = new ArrayList<>();
+    try {
+      Files.walkFileTree(
+          directory,
+          EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+          1,
+          new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+              if (file.equals(directory)) {
+                return FileVisitResult.CONTINUE;
+              }
+              // At depth 1 subdirectories are reported here too, with their attributes
+              String name = file.getFileName().toString();
+              if (attrs.isDirectory()) {
+                entries.add(new Entry(name, file));
+              } else if (name.endsWith(".html")) {
+                entries.add(new Entry(name, null));
+              }
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+              return FileVisitResult.CONTINUE;
+            }
+          });
+    } catch (IOException e) {
+      // Unreadable directory; show it empty
+    }
+    entries.sort(DISPLAY_ORDER);
+    return entries;
+  }
+
+  /** A directory entry as read from disk, before it is packed into the table. */
+  static final class Entry {
+    final String name;
+    final boolean directory;
+    final Path path;
+    List<Entry> children = List.of();
+
+    Entry(String name, Path directoryPath) {
+      this.name = name;
+      this.directory = directoryPath != null;
+      this.path = directoryPath;
+    }
+  }
+
+  /**
+   * Scans one directory and forks a subtask per subdirectory. Each task knows the tasks above it,
+   * so a symbolic link back to an enclosing directory is listed but not descended into.
+   */
+  private static final class ScanTask extends RecursiveTask<List<Entry>> {
+    private static final long serialVersionUID = 1L;
+
+    private final Path directory;
+    private final ScanTask parent;
+    private Path realPath;
+
+    ScanTask(Path directory, ScanTask parent) {
+      this.directory = directory;
+      this.parent = parent;
+    }
+
+    @Override
+    protected List<Entry> compute() {
+      try {
+        realPath = directory.toRealPath();
+      } catch (IOException e) {
+        realPath = directory;
+      }
+      for (ScanTask ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+        if (realPath.equals(ancestor.realPath)) {
+          return new ArrayList<>();
+        }
+      }
+      List<Entry> entries = readLevel(directory);
+
+      List<ScanTask> tasks = new ArrayList<>();
+      for (Entry entry : entries) {
+        if (entry.directory) {
+          ScanTask task = new ScanTask(entry.path, this);
+          task.fork();
+          tasks.add(task);
+        }
+      }
+
+      int next = 0;
+      for (Entry entry : entries) {
+        if (entry.directory) {
+          entry.children = tasks.get(next++).join();
+        }
+      }
+      return entries;
+    }
+  }
+}
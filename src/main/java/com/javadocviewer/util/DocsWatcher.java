@@ -0,0 +1,225 @@
+package com.javadocviewer.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Watches a documentation directory tree for added, changed and removed pages. Events are
+ * coalesced until the tree has been quiet for {@link #QUIET_PERIOD_MS}, so regenerating the whole
+ * docset produces a single batch instead of one callback per file.
+ */
+public class DocsWatcher implements Closeable {
+
+  static final long QUIET_PERIOD_MS = 750;
+
+  private final Path root;
+  private final Consumer<ChangeBatch> listener;
+  private final WatchService watchService;
+  private final Map<WatchKey, Path> directories = new HashMap<>();
+  private final Thread thread;
+
+  /**
+   * Creates a watcher. Call {@link #start()} to begin delivering batches.
+   *
+   * @param root The documentation root
+   * @param listener Receives each batch on the watcher thread
+   * @throws IOException If the platform watch service is unavailable
+   */
+  public DocsWatcher(Path root, Consumer<ChangeBatch> listener) throws IOException {
+    this.root = root.toAbsolutePath().normalize();
+    this.listener = listener;
+    this.watchService = FileSystems.getDefault().newWatchService();
+    this.thread = new Thread(this::run, "docs-watcher");
+    this.thread.setDaemon(true);
+  }
+
+  /** Registers the directory tree and starts the watcher thread. */
+  public void start() {
+    thread.start();
+  }
+
+  @Override
+  public void close() throws IOException {
+    watchService.close();
+  }
+
+  private void run() {
+    boolean initial = true;
+    try {
+      while (true) {
+        if (directories.isEmpty()) {
+          // The root is gone (e.g. deleted by a regeneration); wait for it to come back
+          if (!Files.isDirectory(root)) {
+            Thread.sleep(QUIET_PERIOD_MS);
+            continue;
+          }
+          registerAll(root, null);
+          if (!initial) {
+            listener.accept(ChangeBatch.overflow());
+          }
+          initial = false;
+        }
+
+        ChangeBatch batch = new ChangeBatch();
+        processKey(watchService.take(), batch);
+        WatchKey next;
+        while ((next = watchService.poll(QUIET_PERIOD_MS, TimeUnit.MILLISECONDS)) != null) {
+          processKey(next, batch);
+        }
+        if (!batch.isEmpty()) {
+          listener.accept(batch);
+        }
+      }
+    } catch (InterruptedException | ClosedWatchServiceException e) {
+      // Shutting down
+    }
+  }
+
+  private void processKey(WatchKey key, ChangeBatch batch) {
+    Path directory = directories.get(key);
+    if (directory == null) {
+      key.cancel();
+      return;
+    }
+
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+        batch.overflow = true;
+        continue;
+      }
+
+      Path child = directory.resolve((Path) event.context());
+      if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+        if (isPage(child) || directories.containsValue(child)) {
+          batch.changed.remove(child);
+          batch.removed.add(child);
+          batch.directories.add(directory);
+        }
+      } else if (Files.isDirectory(child)) {
+        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+          // Pages may have been written before the new directory was registered
+          for (Path page : registerAll(child, batch)) {
+            batch.removed.remove(page);
+            batch.changed.add(page);
+          }
+          batch.directories.add(directory);
+        }
+      } else if (isPage(child)) {
+        batch.removed.remove(child);
+        batch.changed.add(child);
+        batch.directories.add(directory);
+      }
+    }
+
+    if (!key.reset()) {
+      directories.remove(key);
+      if (directory.equals(root)) {
+        batch.overflow = true;
+      }
+    }
+  }
+
+  /**
+   * Registers a directory and everything below it.
+   *
+   * @return The pages found while walking
+   */
+  private Set<Path> registerAll(Path start, ChangeBatch batch) {
+    Set<Path> pages = new LinkedHashSet<>();
+    try {
+      Files.walkFileTree(
+          start,
+          new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+                throws IOException {
+              WatchKey key =
+                  dir.register(
+                      watchService,
+                      StandardWatchEventKinds.ENTRY_CREATE,
+                      StandardWatchEventKinds.ENTRY_MODIFY,
+                      StandardWatchEventKinds.ENTRY_DELETE);
+              directories.put(key, dir);
+              if (batch != null) {
+                batch.directories.add(dir);
+              }
+              return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+              if (isPage(file)) {
+                pages.add(file);
+              }
+              return FileVisitResult.CONTINUE;
+            }
+          });
+    } catch (IOException e) {
+      // Part of the tree vanished while walking; its deletion events cover it
+    }
+    return pages;
+  }
+
+  private static boolean isPage(Path path) {
+    return path.getFileName().toString().endsWith(".html");
+  }
+
+  /** The changes collected during one burst of file system activity. */
+  public static final class ChangeBatch {
+    private final Set<Path> changed = new LinkedHashSet<>();
+    private final Set<Path> removed = new LinkedHashSet<>();
+    private final Set<Path> directories = new LinkedHashSet<>();
+    private boolean overflow;
+
+    static ChangeBatch overflow() {
+      ChangeBatch batch = new ChangeBatch();
+      batch.overflow = true;
+      return batch;
+    }
+
+    /** Pages that were created or modified. */
+    public Set<Path> getChanged() {
+      return changed;
+    }
+
+    /** Pages and directories that were deleted. */
+    public Set<Path> getRemoved() {
+      return removed;
+    }
+
+    /** Directories whose listing changed. */
+    public Set<Path> getDirectories() {
+      return directories;
+    }
+
+    /**
+     * Whether events were lost and the whole docset has to be rescanned.
+     *
+     * @return True when the batch is incomplete
+     */
+    public boolean isOverflow() {
+      return overflow;
+    }
+
+    boolean isEmpty() {
+      return !overflow && changed.isEmpty() && removed.isEmpty() && directories.isEmpty();
+    }
+  }
+}
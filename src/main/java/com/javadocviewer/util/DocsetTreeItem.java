@@ -0,0 +1,46 @@
+package com.javadocviewer.util;
+
+import com.javadocviewer.model.Docset;
+import com.javadocviewer.model.FileNode;
+import com.javadocviewer.search.DocsetRegistry;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import javafx.scene.control.TreeItem;
+
+/**
+ * Top-level tree item for one registered docset. The docset is not touched until the item is
+ * first expanded; expanding it opens the docset through a callback, which also puts it to use,
+ * and lists its root.
+ */
+public class DocsetTreeItem extends LazyFileTreeItem {
+
+  private final DocsetRegistry.Entry entry;
+  private final Function<DocsetRegistry.Entry, Docset> opener;
+
+  /**
+   * Creates the item for a docset.
+   *
+   * @param entry The docset
+   * @param opener Opens the docset on the FX thread, returning null if it cannot be opened
+   */
+  public DocsetTreeItem(DocsetRegistry.Entry entry, Function<DocsetRegistry.Entry, Docset> opener) {
+    // Directory docsets are keyed by their location, which is also their root
+    super(new FileNode(entry.getName(), entry.getLocation().toString(), false));
+    this.entry = entry;
+    this.opener = opener;
+  }
+
+  public DocsetRegistry.Entry getEntry() {
+    return entry;
+  }
+
+  @Override
+  protected List<TreeItem<FileNode>> loadChildren() {
+    Docset docset = opener.apply(entry);
+    if (docset == null) {
+      return Collections.emptyList();
+    }
+    return FileTreeBuilder.listChildren(docset.getRoot());
+  }
+}
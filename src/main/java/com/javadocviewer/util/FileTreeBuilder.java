@@ -1,9 +1,14 @@
 package com.javadocviewer.util;
 
+import com.javadocviewer.model.DirectorySnapshot;
 import com.javadocviewer.model.FileNode;
 import javafx.scene.control.TreeItem;
 import java.io.File;
-import java.util.Arrays;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Builds a tree structure from a directory of HTML documentation files.
@@ -15,12 +20,14 @@ public class FileTreeBuilder {
      * Builds a tree structure from the given directory.
      * Directories are sorted first, then files alphabetically.
      * Only includes .html files.
+     * Subdirectories are listed lazily the first time they are expanded,
+     * so only the root level is read here.
      * 
      * @param directory The root directory to build the tree from
      * @return TreeItem representing the directory structure
      */
     public static TreeItem<FileNode> buildFileTree(File directory) {
-        TreeItem<FileNode> root = new TreeItem<>(
+        TreeItem<FileNode> root = new LazyFileTreeItem(
             new FileNode(
                 directory.getName(),
                 directory.getAbsolutePath(),
@@ -28,55 +35,130 @@ public class FileTreeBuilder {
             )
         );
         root.setExpanded(true);
+        return root;
+    }
+    
+    /**
+     * Lists one level of a directory as unexpanded tree items.
+     * Directories are sorted first, then files alphabetically.
+     * Only includes .html files.
+     * 
+     * @param directory The directory to list
+     * @return The child items, empty if the directory cannot be read
+     */
+    public static List<TreeItem<FileNode>> listChildren(File directory) {
+        return listChildren(directory.toPath());
+    }
+    
+    /**
+     * Lists one level of a directory on any file system as unexpanded tree items.
+     * 
+     * @param directory The directory to list
+     * @return The child items, empty if the directory cannot be read
+     */
+    public static List<TreeItem<FileNode>> listChildren(Path directory) {
+        // Attributes are read once per entry, not once per comparison
+        List<TreeItem<FileNode>> children = new ArrayList<>();
+        for (DirectorySnapshot entry : DirectoryScanner.listDirectory(directory)) {
+            children.add(new LazyFileTreeItem(entry.toFileNode()));
+        }
+        return children;
+    }
+    
+    /**
+     * Lists one level of a scanned directory as unexpanded tree items.
+     * 
+     * @param directory The scanned directory
+     * @return The child items, in the snapshot's order
+     */
+    public static List<TreeItem<FileNode>> listChildren(DirectorySnapshot directory) {
+        List<TreeItem<FileNode>> children = new ArrayList<>(directory.getChildren().size());
+        for (DirectorySnapshot child : directory.getChildren()) {
+            children.add(new LazyFileTreeItem(child));
+        }
+        return children;
+    }
+    
+    /**
+     * Re-lists a single directory of an existing tree after its contents changed.
+     * Children that still exist keep their TreeItem, so expansion state below them survives;
+     * new entries are added unexpanded and vanished entries are dropped.
+     * If the directory is not in the tree yet, its nearest ancestor is refreshed instead.
+     * Directories that were never expanded are skipped; they are listed fresh when opened.
+     * 
+     * @param root The root of the documentation tree
+     * @param directory The directory whose listing changed
+     */
+    public static void refreshDirectory(TreeItem<FileNode> root, File directory) {
+        TreeItem<FileNode> item = findItem(root, directory.getAbsolutePath());
+        if (item == null) {
+            File parent = directory.getParentFile();
+            if (parent != null && isWithin(root, parent)) {
+                refreshDirectory(root, parent);
+            }
+            return;
+        }
         
-        if (directory.isDirectory()) {
-            File[] files = directory.listFiles();
-            if (files != null) {
-                // Sort: directories first, then files, alphabetically
-                Arrays.sort(files, (f1, f2) -> {
-                    if (f1.isDirectory() && !f2.isDirectory()) return -1;
-                    if (!f1.isDirectory() && f2.isDirectory()) return 1;
-                    return f1.getName().compareToIgnoreCase(f2.getName());
-                });
-                
-                for (File file : files) {
-                    if (file.isDirectory()) {
-                        // Recursively build tree for subdirectories
-                        TreeItem<FileNode> item = buildFileTree(file);
-                        root.getChildren().add(item);
-                    } else if (file.getName().endsWith(".html")) {
-                        // Add HTML files to the tree
-                        TreeItem<FileNode> item = new TreeItem<>(
-                            new FileNode(
-                                file.getName().replace(".html", ""),
-                                file.getAbsolutePath(),
-                                true
-                            )
-                        );
-                        root.getChildren().add(item);
-                    }
-                }
+        if (!directory.isDirectory()) {
+            if (item.getParent() != null) {
+                item.getParent().getChildren().remove(item);
             }
+            return;
         }
         
-        return root;
+        if (item instanceof LazyFileTreeItem && !((LazyFileTreeItem) item).isLoaded()) {
+            return;
+        }
+        
+        Map<String, TreeItem<FileNode>> existing = new HashMap<>();
+        for (TreeItem<FileNode> child : item.getChildren()) {
+            existing.put(child.getValue().getPath(), child);
+        }
+        
+        List<TreeItem<FileNode>> children = new ArrayList<>();
+        for (TreeItem<FileNode> child : listChildren(directory)) {
+            TreeItem<FileNode> kept = existing.get(child.getValue().getPath());
+            children.add(kept != null ? kept : child);
+        }
+        item.getChildren().setAll(children);
     }
     
     /**
-     * Creates a search results tree from files matching a query.
+     * Finds the tree item for a path by descending through matching directories.
+     * Directories that were never expanded are not listed just to answer the lookup.
      * 
-     * @param docsPath The root path to search in
-     * @param query The search query
-     * @return TreeItem containing search results
+     * @param root The root of the documentation tree
+     * @param path The absolute path to look for
+     * @return The matching item, or null if it is not in the tree
      */
-    public static TreeItem<FileNode> buildSearchTree(String docsPath, String query) {
-        TreeItem<FileNode> root = new TreeItem<>(
-            new FileNode("🔍 Search Results", "", false)
-        );
-        root.setExpanded(true);
-        
-        // This would typically use Files.walk() to search
-        // For now, return the empty search results root
-        return root;
+    public static TreeItem<FileNode> findItem(TreeItem<FileNode> root, String path) {
+        TreeItem<FileNode> current = root;
+        while (current != null) {
+            String currentPath = current.getValue().getPath();
+            if (currentPath.equals(path)) {
+                return current;
+            }
+            
+            if (current instanceof LazyFileTreeItem && !((LazyFileTreeItem) current).isLoaded()) {
+                return null;
+            }
+            
+            TreeItem<FileNode> next = null;
+            for (TreeItem<FileNode> child : current.getChildren()) {
+                String childPath = child.getValue().getPath();
+                if (path.equals(childPath) || path.startsWith(childPath + File.separator)) {
+                    next = child;
+                    break;
+                }
+            }
+            current = next;
+        }
+        return null;
+    }
+    
+    private static boolean isWithin(TreeItem<FileNode> root, File file) {
+        String rootPath = root.getValue().getPath();
+        String path = file.getAbsolutePath();
+        return path.equals(rootPath) || path.startsWith(rootPath + File.separator);
     }
 }
@@ -0,0 +1,70 @@
+package com.javadocviewer.util;
+
+import com.javadocviewer.model.DirectorySnapshot;
+import com.javadocviewer.model.Docset;
+import com.javadocviewer.model.FileNode;
+import java.util.List;
+import javafx.collections.ObservableList;
+import javafx.scene.control.TreeItem;
+
+/**
+ * Tree item that lists its directory only when the children are first requested, which the
+ * TreeView does when the node is expanded. Collapsed directories therefore cost one object each,
+ * no matter how many pages are below them. Items created from a {@link DirectorySnapshot} list
+ * their children from the snapshot instead of the disk.
+ */
+public class LazyFileTreeItem extends TreeItem<FileNode> {
+
+  private DirectorySnapshot snapshot;
+  private boolean loaded;
+
+  public LazyFileTreeItem(FileNode node) {
+    super(node);
+    // Pages never have children, so they are loaded from the start
+    this.loaded = node.isFile();
+  }
+
+  public LazyFileTreeItem(DirectorySnapshot snapshot) {
+    this(snapshot.toFileNode());
+    this.snapshot = snapshot;
+  }
+
+  @Override
+  public ObservableList<TreeItem<FileNode>> getChildren() {
+    if (!loaded) {
+      loaded = true;
+      super.getChildren().setAll(loadChildren());
+    }
+    return super.getChildren();
+  }
+
+  /**
+   * Lists the children the first time they are requested.
+   *
+   * @return The child items
+   */
+  protected List<TreeItem<FileNode>> loadChildren() {
+    if (snapshot != null) {
+      List<TreeItem<FileNode>> children = FileTreeBuilder.listChildren(snapshot);
+      // Only needed until the first expansion
+      snapshot = null;
+      return children;
+    }
+    return FileTreeBuilder.listChildren(Docset.toPath(getValue().getPath()));
+  }
+
+  @Override
+  public boolean isLeaf() {
+    // Answered from the node type so showing the tree never touches the file system
+    return getValue().isFile();
+  }
+
+  /**
+   * Whether the directory has been listed yet.
+   *
+   * @return True once the children were requested, always true for pages
+   */
+  public boolean isLoaded() {
+    return loaded;
+  }
+}
@@ -0,0 +1,124 @@
+package com.javadocviewer.util;
+
+import java.util.function.Consumer;
+import javafx.scene.web.WebEngine;
+import netscape.javascript.JSObject;
+
+/**
+ * Routes link clicks inside a page through the viewer instead of letting the WebEngine follow
+ * them on its own, so they get the viewer's cache, history and recent files. A click handler
+ * installed in the page cancels the navigation and calls back into Java with the link's URL.
+ *
+ * <p>Links to an anchor of the same page are left to WebKit, which jumps without reloading; the
+ * viewer is only told about the jump so it can record it. A link clicked with Ctrl, or Cmd on
+ * macOS, is handed over to be opened in a new tab. Links that open elsewhere, clicks with other
+ * modifier keys and links off the page server's origin are left alone.
+ */
+public class LinkBridge {
+
+  private static final String MEMBER = "javadocViewer";
+
+  // Capturing, so it runs before javadoc's own handlers
+  private static final String CLICK_HANDLER_SCRIPT =
+      """
+      (function() {
+        if (window.javadocViewerLinks) {
+          return;
+        }
+        window.javadocViewerLinks = true;
+        document.addEventListener('click', function(event) {
+          if (event.defaultPrevented || event.button !== 0 || event.shiftKey || event.altKey) {
+            return;
+          }
+          var link = event.target.closest ? event.target.closest('a[href]') : null;
+          if (!link || (link.target && link.target !== '_self')) {
+            return;
+          }
+          var url = link.href;
+          if (url.indexOf(location.origin + '/') !== 0) {
+            return;
+          }
+          if (event.ctrlKey || event.metaKey) {
+            event.preventDefault();
+            window.javadocViewer.openInTab(url);
+            return;
+          }
+          if (url.split('#')[0] === location.href.split('#')[0]) {
+            window.javadocViewer.jumped(url);
+            return;
+          }
+          event.preventDefault();
+          window.javadocViewer.navigate(url);
+        }, true);
+      })();
+      """;
+
+  private final Consumer<String> navigator;
+  private final Consumer<String> jumpListener;
+  private final Consumer<String> tabOpener;
+
+  /**
+   * Creates a bridge. The bridge must stay referenced from Java while pages use it, since the
+   * WebEngine only holds it weakly.
+   *
+   * @param navigator Receives the absolute URL of each intercepted link on the FX thread
+   * @param jumpListener Receives the URL of each same-page anchor WebKit jumps to
+   * @param tabOpener Receives the absolute URL of each link to open in a new tab
+   */
+  public LinkBridge(
+      Consumer<String> navigator, Consumer<String> jumpListener, Consumer<String> tabOpener) {
+    this.navigator = navigator;
+    this.jumpListener = jumpListener;
+    this.tabOpener = tabOpener;
+  }
+
+  /**
+   * Called by the page's click handler for a link to another page.
+   *
+   * @param url The absolute URL of the clicked link
+   */
+  public void navigate(String url) {
+    navigator.accept(url);
+  }
+
+  /**
+   * Called by the page's click handler for a link to an anchor of the same page.
+   *
+   * @param url The absolute URL of the clicked link
+   */
+  public void jumped(String url) {
+    jumpListener.accept(url);
+  }
+
+  /**
+   * Called by the page's click handler for a link clicked with Ctrl or Cmd.
+   *
+   * @param url The absolute URL of the clicked link
+   */
+  public void openInTab(String url) {
+    tabOpener.accept(url);
+  }
+
+  /**
+   * Installs the click handler in the page just loaded. Every page starts without it, so this is
+   * called after each load.
+   *
+   * @param engine The engine showing the page
+   */
+  public void install(WebEngine engine) {
+    JSObject window = (JSObject) engine.executeScript("window");
+    window.setMember(MEMBER, this);
+    engine.executeScript(CLICK_HANDLER_SCRIPT);
+  }
+
+  /**
+   * Takes the bridge away from a page that must not call back into Java, such as one loaded from
+   * outside the page server.
+   *
+   * @param engine The engine showing the page
+   */
+  public void uninstall(WebEngine engine) {
+    JSObject window = (JSObject) engine.executeScript("window");
+    window.removeMember(MEMBER);
+  }
+}
@@ -0,0 +1,168 @@
+package com.javadocviewer.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javafx.scene.web.WebView;
+
+/**
+ * Keeps the last few pages left behind alive, each in its own {@link WebView} with its document
+ * parsed and laid out, so going back or forward to one of them swaps a node into the scene
+ * instead of loading the page again. Pages are retained by key and dropped least recently used
+ * first once there are too many or their estimated memory exceeds a budget.
+ *
+ * <p>A dropped page's view is emptied and kept as a spare for the next page to load into, so
+ * WebViews are created only while the pool fills up. Must be used on the FX thread.
+ */
+public class PagePool {
+
+  /** Rough heap and native memory of one element once laid out, for weighing pages. */
+  public static final long BYTES_PER_ELEMENT = 1024;
+
+  private static final int MAX_SPARES = 1;
+
+  /** A retained page and the scroll position it was left at. */
+  public static final class Page {
+    private final WebView view;
+    private final double scrollY;
+    private final long weight;
+
+    Page(WebView view, double scrollY, long weight) {
+      this.view = view;
+      this.scrollY = scrollY;
+      this.weight = weight;
+    }
+
+    public WebView getView() {
+      return view;
+    }
+
+    public double getScrollY() {
+      return scrollY;
+    }
+  }
+
+  private final int maxPages;
+  private final long maxBytes;
+  private final LinkedHashMap<String, Page> pages = new LinkedHashMap<>(16, 0.75f, true);
+  private final List<WebView> spares = new ArrayList<>();
+  private long currentBytes;
+
+  /**
+   * Creates a pool.
+   *
+   * @param maxPages The most pages retained
+   * @param maxBytes The estimated memory the retained pages may take
+   */
+  public PagePool(int maxPages, long maxBytes) {
+    this.maxPages = maxPages;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Retains a page that is being left, dropping the least recently used pages as needed. A page
+   * heavier than the whole budget is not retained.
+   *
+   * @param key The page key
+   * @param view The view showing the page, no longer in the scene
+   * @param scrollY The vertical scroll position to restore
+   * @param weight The estimated memory of the page
+   */
+  public void retain(String key, WebView view, double scrollY, long weight) {
+    Page replaced = pages.remove(key);
+    if (replaced != null) {
+      currentBytes -= replaced.weight;
+      discard(replaced.view);
+    }
+    if (weight > maxBytes || maxPages <= 0) {
+      discard(view);
+      return;
+    }
+    pages.put(key, new Page(view, scrollY, weight));
+    currentBytes += weight;
+
+    Iterator<Page> eldest = pages.values().iterator();
+    while ((currentBytes > maxBytes || pages.size() > maxPages) && eldest.hasNext()) {
+      Page dropped = eldest.next();
+      eldest.remove();
+      currentBytes -= dropped.weight;
+      discard(dropped.view);
+    }
+  }
+
+  /**
+   * Takes a page out of the pool to show it again.
+   *
+   * @param key The page key
+   * @return The page, or null if it is not retained
+   */
+  public Page take(String key) {
+    Page page = pages.remove(key);
+    if (page != null) {
+      currentBytes -= page.weight;
+    }
+    return page;
+  }
+
+  /**
+   * Takes an empty view to load a page into.
+   *
+   * @return A view of a dropped page, or null if there is none and a new one must be created
+   */
+  public WebView takeSpare() {
+    return spares.isEmpty() ? null : spares.remove(spares.size() - 1);
+  }
+
+  /**
+   * Gives back a view that is not worth retaining, to be reused as a spare.
+   *
+   * @param view The view, no longer in the scene
+   */
+  public void release(WebView view) {
+    discard(view);
+  }
+
+  /**
+   * Drops a page or every page below a directory, for pages changed on disk.
+   *
+   * @param key The page or directory key
+   */
+  public void removeUnder(String key) {
+    String prefix = key + File.separator;
+    Iterator<Map.Entry<String, Page>> it = pages.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<String, Page> entry = it.next();
+      if (entry.getKey().equals(key) || entry.getKey().startsWith(prefix)) {
+        it.remove();
+        currentBytes -= entry.getValue().weight;
+        discard(entry.getValue().view);
+      }
+    }
+  }
+
+  /** Drops every page, such as when the docs were reloaded. */
+  public void clear() {
+    for (Page page : pages.values()) {
+      discard(page.view);
+    }
+    pages.clear();
+    currentBytes = 0;
+  }
+
+  private void discard(WebView view) {
+    // Frees the document; the view itself is cheap to keep around
+    view.getEngine().loadContent("");
+    if (spares.size() < MAX_SPARES) {
+      spares.add(view);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%d pages retained, ~%d/%d MB", pages.size(), currentBytes >> 20, maxBytes >> 20);
+  }
+}
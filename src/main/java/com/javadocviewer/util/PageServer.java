@@ -0,0 +1,379 @@
+package com.javadocviewer.util;
+
+import com.javadocviewer.cache.DiskPageCache;
+import com.javadocviewer.cache.PageCache;
+import com.javadocviewer.model.Docset;
+import com.javadocviewer.search.DocsetRegistry;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves the pages of every registered docset over HTTP on the loopback interface, so the
+ * WebEngine loads them by URL. Shared resources such as {@code stylesheet.css}, {@code script.js}
+ * and images then have a URL of their own, which WebKit fetches once and keeps in its memory
+ * cache, and relative links resolve the way javadoc wrote them. Pages are transformed here, on
+ * the server's threads, as they are served, and the result is kept in a cache of its own, which
+ * {@link #render} also fills ahead of time. A transformed page does not depend on the theme; the
+ * viewer switches it once it is loaded. Below that cache, an
+ * optional {@link DiskPageCache} keeps transformed pages from one session to the next.
+ *
+ * <p>A page's URL is {@code http://127.0.0.1:port/token/docset/path}, where the docset is its
+ * position in the registry and the token is random, so other local programs cannot guess the
+ * URLs. Every response carries an ETag; pages and the resources of directory docsets are
+ * revalidated on use, which costs a bodiless 304 when nothing changed, while the resources of an
+ * archive never change and are cached outright.
+ */
+public class PageServer implements Closeable {
+
+  /** Reads a page's raw HTML, typically through the page cache. */
+  @FunctionalInterface
+  public interface PageSource {
+    /**
+     * Reads a page.
+     *
+     * @param key The page key
+     * @return The raw HTML
+     * @throws IOException If the page cannot be read
+     */
+    String read(String key) throws IOException;
+  }
+
+  private static final int THREADS = 4;
+
+  private static final Map<String, String> CONTENT_TYPES =
+      Map.ofEntries(
+          Map.entry("html", "text/html; charset=utf-8"),
+          Map.entry("css", "text/css; charset=utf-8"),
+          Map.entry("js", "text/javascript; charset=utf-8"),
+          Map.entry("json", "application/json"),
+          Map.entry("png", "image/png"),
+          Map.entry("gif", "image/gif"),
+          Map.entry("jpg", "image/jpeg"),
+          Map.entry("jpeg", "image/jpeg"),
+          Map.entry("svg", "image/svg+xml"),
+          Map.entry("ico", "image/x-icon"),
+          Map.entry("woff", "font/woff"),
+          Map.entry("woff2", "font/woff2"),
+          Map.entry("ttf", "font/ttf"),
+          Map.entry("txt", "text/plain; charset=utf-8"),
+          Map.entry("zip", "application/zip"));
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+  private final DocsetRegistry docsets;
+  private final PageSource pages;
+  private final String prefix;
+  private final PageCache rendered;
+  private final DiskPageCache stored;
+
+  private PageServer(
+      HttpServer server,
+      ExecutorService executor,
+      DocsetRegistry docsets,
+      PageSource pages,
+      PageCache rendered,
+      DiskPageCache stored,
+      String token) {
+    this.server = server;
+    this.executor = executor;
+    this.docsets = docsets;
+    this.pages = pages;
+    this.prefix = "/" + token + "/";
+    this.rendered = rendered;
+    this.stored = stored;
+  }
+
+  /**
+   * Starts a server on a free loopback port.
+   *
+   * @param docsets The docsets to serve
+   * @param pages Reads raw pages
+   * @param renderedBytes The heap budget for transformed pages
+   * @param stored Keeps transformed pages across sessions, or null
+   * @return The running server
+   * @throws IOException If no port can be bound
+   */
+  public static PageServer start(
+      DocsetRegistry docsets,
+      PageSource pages,
+      long renderedBytes,
+      DiskPageCache stored)
+      throws IOException {
+    HttpServer server =
+        HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            THREADS,
+            runnable -> {
+              Thread thread = new Thread(runnable, "page-server");
+              thread.setDaemon(true);
+              return thread;
+            });
+    byte[] token = new byte[12];
+    new SecureRandom().nextBytes(token);
+
+    PageServer pageServer =
+        new PageServer(
+            server,
+            executor,
+            docsets,
+            pages,
+            new PageCache(renderedBytes),
+            stored,
+            HexFormat.of().formatHex(token));
+    server.createContext(pageServer.prefix, pageServer::handle);
+    server.setExecutor(executor);
+    server.start();
+    return pageServer;
+  }
+
+  /**
+   * Gets the URL a page is served at.
+   *
+   * @param key The page key, optionally followed by {@code #anchor}
+   * @return The URL, or null if the page is in no registered docset or the docset is not open
+   */
+  public String toUrl(String key) {
+    int hash = key.indexOf('#');
+    String pageKey = hash < 0 ? key : key.substring(0, hash);
+    String anchor = hash < 0 ? null : key.substring(hash + 1);
+    DocsetRegistry.Entry entry = docsets.find(pageKey);
+    if (entry == null || !entry.isOpen()) {
+      return null;
+    }
+    Path root;
+    Path page;
+    try {
+      root = entry.open().getRoot();
+      page = Docset.toPath(pageKey).normalize();
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+    if (!page.startsWith(root)) {
+      return null;
+    }
+
+    StringBuilder path = new StringBuilder(prefix).append(docsets.getEntries().indexOf(entry));
+    for (Path name : root.relativize(page)) {
+      path.append('/').append(name);
+    }
+    try {
+      // Quotes whatever is not allowed in a path or fragment
+      return new URI("http", null, host(), port(), path.toString(), null, anchor).toASCIIString();
+    } catch (URISyntaxException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Gets the page a URL served by this server points to.
+   *
+   * @param url A URL, possibly with a query or fragment
+   * @return The page key, or null if the URL was not served here
+   */
+  public String toKey(String url) {
+    URI uri;
+    try {
+      uri = new URI(url);
+    } catch (URISyntaxException e) {
+      return null;
+    }
+    if (!"http".equals(uri.getScheme())
+        || !host().equals(uri.getHost())
+        || uri.getPort() != port()
+        || uri.getPath() == null) {
+      return null;
+    }
+    Path file = resolve(uri.getPath());
+    return file == null ? null : Docset.toKey(file);
+  }
+
+  /**
+   * Gets a page transformed the way it is served, transforming it unless it is cached in memory
+   * or on disk. Safe to call from any thread.
+   *
+   * @param key The page key
+   * @return The transformed HTML
+   * @throws IOException If the page cannot be read
+   */
+  public String render(String key) throws IOException {
+    String html = rendered.get(key);
+    if (html == null) {
+      long lastModified = PageCache.lastModified(Docset.toPath(key));
+      html = stored == null ? null : stored.get(key, lastModified);
+      if (html == null) {
+        html = StyleInjector.transform(pages.read(key));
+        if (stored != null) {
+          stored.put(key, lastModified, html);
+        }
+      }
+      rendered.put(key, html, lastModified);
+    }
+    return html;
+  }
+
+  private String host() {
+    return server.getAddress().getAddress().getHostAddress();
+  }
+
+  private int port() {
+    return server.getAddress().getPort();
+  }
+
+  /** Maps a request path to a file inside a docset, or null if it names none. */
+  private Path resolve(String requestPath) {
+    if (!requestPath.startsWith(prefix)) {
+      return null;
+    }
+    String rest = requestPath.substring(prefix.length());
+    int slash = rest.indexOf('/');
+    String index = slash < 0 ? rest : rest.substring(0, slash);
+    List<DocsetRegistry.Entry> entries = docsets.getEntries();
+    int docset;
+    try {
+      docset = Integer.parseInt(index);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    if (docset < 0 || docset >= entries.size()) {
+      return null;
+    }
+
+    Path root;
+    try {
+      root = entries.get(docset).open().getRoot();
+    } catch (IOException e) {
+      return null;
+    }
+    Path file = root;
+    if (slash >= 0) {
+      for (String name : rest.substring(slash + 1).split("/")) {
+        if (!name.isEmpty()) {
+          file = file.resolve(name);
+        }
+      }
+    }
+    // Dot segments must not lead out of the docset
+    file = file.normalize();
+    return file.startsWith(root) ? file : null;
+  }
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try (exchange) {
+      String method = exchange.getRequestMethod();
+      if (!method.equals("GET") && !method.equals("HEAD")) {
+        send(exchange, 405, "text/plain; charset=utf-8", "Method not allowed");
+        return;
+      }
+      Path file = resolve(exchange.getRequestURI().getPath());
+      if (file != null && Files.isDirectory(file)) {
+        file = file.resolve("index.html");
+      }
+      if (file == null || !Files.isRegularFile(file)) {
+        send(exchange, 404, "text/html; charset=utf-8", errorPage("Page not found"));
+        return;
+      }
+
+      String extension = extension(file);
+      boolean html = extension.equals("html");
+      String etag = "\"" + PageCache.lastModified(file) + "\"";
+      // An archive's resources cannot change while it is open
+      boolean immutable = !html && file.getFileSystem() != FileSystems.getDefault();
+
+      exchange.getResponseHeaders().set("ETag", etag);
+      exchange
+          .getResponseHeaders()
+          .set("Cache-Control", immutable ? "max-age=86400" : "no-cache");
+      if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+        exchange.sendResponseHeaders(304, -1);
+        return;
+      }
+
+      byte[] body;
+      try {
+        body =
+            html
+                ? render(Docset.toKey(file)).getBytes(StandardCharsets.UTF_8)
+                : Files.readAllBytes(file);
+      } catch (NoSuchFileException e) {
+        send(exchange, 404, "text/html; charset=utf-8", errorPage("Page not found"));
+        return;
+      } catch (IOException e) {
+        send(exchange, 500, "text/html; charset=utf-8", errorPage(e.getMessage()));
+        return;
+      }
+      exchange
+          .getResponseHeaders()
+          .set(
+              "Content-Type",
+              CONTENT_TYPES.getOrDefault(extension, "application/octet-stream"));
+      sendBody(exchange, 200, body);
+    }
+  }
+
+  private static String extension(Path file) {
+    String name = file.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+  }
+
+  private static void send(HttpExchange exchange, int status, String type, String text)
+      throws IOException {
+    exchange.getResponseHeaders().set("Content-Type", type);
+    exchange.getResponseHeaders().set("Cache-Control", "no-store");
+    sendBody(exchange, status, text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void sendBody(HttpExchange exchange, int status, byte[] body)
+      throws IOException {
+    boolean head = exchange.getRequestMethod().equals("HEAD");
+    exchange.sendResponseHeaders(status, head ? -1 : body.length);
+    if (!head) {
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(body);
+      }
+    }
+  }
+
+  /**
+   * Creates the page shown when a page cannot be served.
+   *
+   * @param message What went wrong
+   * @return The HTML
+   */
+  public static String errorPage(String message) {
+    String escaped =
+        String.valueOf(message).replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    return "<div style='padding: 40px; text-align: center;'>"
+        + "<h1 style='color: #ef4444; font-family: system-ui;'>⚠️ Error Loading File</h1>"
+        + "<p style='color: #6b7280; font-family: system-ui;'>"
+        + escaped
+        + "</p>"
+        + "</div>";
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,278 @@
+package com.javadocviewer.util;
+
+import com.javadocviewer.model.FileNode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import javafx.scene.control.TreeItem;
+import javafx.util.Duration;
+
+/**
+ * Runs sidebar searches as the user types. Input is debounced, each query runs on a background
+ * executor, a query superseded by newer input is cancelled, and results reach the tree in batches
+ * so a long result list never holds up a single pulse. When a query only extends the last one,
+ * the searcher is handed the previous results to narrow instead of starting from scratch. Slow
+ * searches can also report matches as they find them, which are shown while the search goes on.
+ *
+ * <p>All methods must be called on the FX thread.
+ */
+public class SearchScheduler {
+
+  /** Number of result items added to the tree per pulse. */
+  static final int PUBLISH_BATCH_SIZE = 100;
+
+  /** Computes the results for a query off the FX thread. */
+  @FunctionalInterface
+  public interface Searcher {
+    /**
+     * Runs a query.
+     *
+     * @param query The query, never empty
+     * @param previous The complete results of the last query if this one extends it, else null
+     * @param cancelled Returns true once the query has been superseded
+     * @param found Shows a match before the search finishes; may be called from any thread. The
+     *     returned results must list such matches first, in the order they were passed
+     * @return The results
+     * @throws Exception If the search failed
+     */
+    Results search(
+        String query, Results previous, BooleanSupplier cancelled, Consumer<FileNode> found)
+        throws Exception;
+  }
+
+  /** The results of one query. */
+  public static final class Results {
+    private final String query;
+    private final List<FileNode> nodes;
+    private final boolean complete;
+
+    /**
+     * Creates results.
+     *
+     * @param query The query that produced them
+     * @param nodes The matching pages in display order
+     * @param complete Whether these are all the matches, so a longer query can narrow them
+     */
+    public Results(String query, List<FileNode> nodes, boolean complete) {
+      this.query = query;
+      this.nodes = nodes;
+      this.complete = complete;
+    }
+
+    public String getQuery() {
+      return query;
+    }
+
+    public List<FileNode> getNodes() {
+      return nodes;
+    }
+
+    public boolean isComplete() {
+      return complete;
+    }
+  }
+
+  private final Executor executor;
+  private final Searcher searcher;
+  private final Consumer<TreeItem<FileNode>> onPublished;
+  private final Consumer<Results> onFinished;
+  private final Consumer<Throwable> onFailed;
+  private final PauseTransition debounce;
+
+  private String pendingQuery;
+  private Task<Results> currentTask;
+  private Results lastResults;
+  private long generation;
+
+  /**
+   * Creates a scheduler.
+   *
+   * @param executor Runs the searches
+   * @param debounceDelay How long input must be idle before a search starts
+   * @param searcher Computes the results
+   * @param onPublished Receives the results root before its first batch is added
+   * @param onFinished Called after the last batch was added
+   * @param onFailed Called when a search throws
+   */
+  public SearchScheduler(
+      Executor executor,
+      Duration debounceDelay,
+      Searcher searcher,
+      Consumer<TreeItem<FileNode>> onPublished,
+      Consumer<Results> onFinished,
+      Consumer<Throwable> onFailed) {
+    this.executor = executor;
+    this.searcher = searcher;
+    this.onPublished = onPublished;
+    this.onFinished = onFinished;
+    this.onFailed = onFailed;
+    this.debounce = new PauseTransition(debounceDelay);
+    this.debounce.setOnFinished(e -> start(pendingQuery));
+  }
+
+  /**
+   * Schedules a query once typing pauses, replacing any query not yet finished.
+   *
+   * @param query The non-empty query
+   */
+  public void submit(String query) {
+    cancelRunning();
+    pendingQuery = query;
+    debounce.playFromStart();
+  }
+
+  /**
+   * Runs a query immediately from scratch. Used when the searched data changed, so earlier
+   * results can no longer be narrowed.
+   *
+   * @param query The non-empty query
+   */
+  public void refresh(String query) {
+    cancel();
+    lastResults = null;
+    start(query);
+  }
+
+  /** Drops the pending or running query, if any, and stops publishing its results. */
+  public void cancel() {
+    debounce.stop();
+    pendingQuery = null;
+    cancelRunning();
+  }
+
+  private void cancelRunning() {
+    generation++;
+    if (currentTask != null) {
+      currentTask.cancel();
+      currentTask = null;
+    }
+  }
+
+  private void start(String query) {
+    cancelRunning();
+    long taskGeneration = generation;
+    Results previous = narrowable(query) ? lastResults : null;
+    StreamedNodes streamed = new StreamedNodes(taskGeneration);
+
+    Task<Results> task =
+        new Task<>() {
+          @Override
+          protected Results call() throws Exception {
+            return searcher.search(query, previous, this::isCancelled, streamed);
+          }
+        };
+    task.setOnSucceeded(
+        e -> {
+          if (taskGeneration != generation) {
+            return;
+          }
+          currentTask = null;
+          lastResults = task.getValue();
+          // Whatever is still queued is part of the results, so it is added with the rest
+          streamed.queue.clear();
+          addBatch(streamed.root(), lastResults, streamed.shown, taskGeneration);
+        });
+    task.setOnFailed(
+        e -> {
+          if (taskGeneration != generation) {
+            return;
+          }
+          currentTask = null;
+          lastResults = null;
+          onFailed.accept(task.getException());
+        });
+
+    currentTask = task;
+    executor.execute(task);
+  }
+
+  private boolean narrowable(String query) {
+    return lastResults != null
+        && lastResults.isComplete()
+        && query.startsWith(lastResults.getQuery());
+  }
+
+  private void addBatch(TreeItem<FileNode> root, Results results, int from, long taskGeneration) {
+    List<FileNode> nodes = results.getNodes();
+    int to = Math.min(from + PUBLISH_BATCH_SIZE, nodes.size());
+    List<TreeItem<FileNode>> batch = new ArrayList<>(to - from);
+    for (int i = from; i < to; i++) {
+      batch.add(new TreeItem<>(nodes.get(i)));
+    }
+    root.getChildren().addAll(batch);
+
+    if (to < nodes.size()) {
+      // Yield to the next pulse so input and rendering stay responsive
+      Platform.runLater(
+          () -> {
+            if (taskGeneration == generation) {
+              addBatch(root, results, to, taskGeneration);
+            }
+          });
+    } else {
+      onFinished.accept(results);
+    }
+  }
+
+  /**
+   * Matches a searcher reported before finishing. They are queued from the search thread and
+   * moved to the tree at most one batch per pulse; the results root is only published once
+   * there is something to show or the search is done.
+   */
+  private final class StreamedNodes implements Consumer<FileNode> {
+    private final long taskGeneration;
+    private final ConcurrentLinkedQueue<FileNode> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    // Only touched on the FX thread
+    private TreeItem<FileNode> root;
+    private int shown;
+
+    StreamedNodes(long taskGeneration) {
+      this.taskGeneration = taskGeneration;
+    }
+
+    @Override
+    public void accept(FileNode node) {
+      queue.add(node);
+      if (drainScheduled.compareAndSet(false, true)) {
+        Platform.runLater(this::drain);
+      }
+    }
+
+    private void drain() {
+      drainScheduled.set(false);
+      if (taskGeneration != generation) {
+        return;
+      }
+      List<TreeItem<FileNode>> batch = new ArrayList<>();
+      FileNode node;
+      while (batch.size() < PUBLISH_BATCH_SIZE && (node = queue.poll()) != null) {
+        batch.add(new TreeItem<>(node));
+      }
+      if (batch.isEmpty()) {
+        return;
+      }
+      root().getChildren().addAll(batch);
+      shown += batch.size();
+      if (!queue.isEmpty() && drainScheduled.compareAndSet(false, true)) {
+        Platform.runLater(this::drain);
+      }
+    }
+
+    TreeItem<FileNode> root() {
+      if (root == null) {
+        root = new TreeItem<>(new FileNode("🔍 Search Results", "", false));
+        root.setExpanded(true);
+        onPublished.accept(root);
+      }
+      return root;
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package com.javadocviewer.util;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.web.WebEngine;
+import netscape.javascript.JSObject;
+
+/**
+ * Scrolls pages once per frame however many scroll events arrive. Touchpads send hundreds of
+ * events a second, and scrolling on each one crossed into JavaScript every time; here the deltas
+ * are only added up, and an {@link AnimationTimer} applies the sum on the next pulse with a
+ * single call on the page's {@code window}, with no script to build or parse.
+ *
+ * <p>With easing, each frame covers a fixed share of the distance left, so a flick glides to a
+ * stop instead of jumping. The time spent applying each frame is measured, along with the
+ * number of events folded into each. Must be used on the FX thread.
+ */
+public class SmoothScroller {
+
+  /** The share of the remaining distance covered per frame when easing. */
+  private static final double EASING = 0.35;
+
+  private final boolean smooth;
+  private final AnimationTimer timer;
+  private WebEngine engine;
+  private JSObject window;
+  private double pending;
+  private boolean running;
+
+  private long events;
+  private long frames;
+  private long frameNanos;
+  private long maxFrameNanos;
+
+  /**
+   * Creates a scroller.
+   *
+   * @param smooth Whether to ease towards the target instead of moving there in one frame
+   */
+  public SmoothScroller(boolean smooth) {
+    this.smooth = smooth;
+    this.timer =
+        new AnimationTimer() {
+          @Override
+          public void handle(long now) {
+            onPulse();
+          }
+        };
+  }
+
+  /**
+   * Adds a scroll event's distance, to be applied on the next frame.
+   *
+   * @param target The engine of the view scrolled
+   * @param deltaY The distance in pixels, positive to scroll down
+   */
+  public void scrollBy(WebEngine target, double deltaY) {
+    events++;
+    if (target != engine) {
+      // Distance meant for a view no longer on screen is dropped
+      engine = target;
+      window = null;
+      pending = 0;
+    }
+    pending += deltaY;
+    if (!running) {
+      running = true;
+      // The page may have changed since the last gesture
+      window = null;
+      timer.start();
+    }
+  }
+
+  private void onPulse() {
+    if (Math.abs(pending) < 0.5) {
+      pending = 0;
+      running = false;
+      timer.stop();
+      return;
+    }
+    double step = smooth ? pending * EASING : pending;
+    if (Math.abs(step) < 1) {
+      // Finish the last pixel instead of creeping towards it
+      step = pending;
+    }
+    pending -= step;
+
+    long start = System.nanoTime();
+    try {
+      if (window == null) {
+        window = (JSObject) engine.executeScript("window");
+      }
+      window.call("scrollBy", 0, step);
+    } catch (RuntimeException e) {
+      // The page is being replaced; the rest of the gesture is dropped
+      pending = 0;
+      window = null;
+    }
+    long elapsed = System.nanoTime() - start;
+    frames++;
+    frameNanos += elapsed;
+    maxFrameNanos = Math.max(maxFrameNanos, elapsed);
+  }
+
+  /**
+   * Describes how scroll events were coalesced and what applying them cost.
+   *
+   * @return A one-line summary
+   */
+  public String getStats() {
+    return String.format(
+        "%d events in %d frames, %.2f ms per frame (max %.2f ms)",
+        events,
+        frames,
+        frames == 0 ? 0.0 : frameNanos / 1e6 / frames,
+        maxFrameNanos / 1e6);
+  }
+}
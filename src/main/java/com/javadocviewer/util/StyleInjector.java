@@ -1,95 +1,972 @@
 package com.javadocviewer.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Injects the viewer's styles and scripts into javadoc pages. Injections are collected into a
+ * {@link Pipeline} that finds every injection point in one scan of the page and writes the result
+ * once into an exactly sized buffer, instead of copying the whole page once per injection.
+ */
 public class StyleInjector {
 
-  public static String injectCustomStyles(String htmlContent, boolean isDarkMode) {
-    String customStyles = getLightModeStyles();
+  private static final String LIGHT_STYLES =
+      """
+          <style>
+              * {
+                  box-sizing: border-box;
+              }
+
+              html {
+                  scroll-behavior: smooth !important;
+              }
+
+              body {
+                  font-family: 'Inter', -apple-system, BlinkMacSystemFont, 'Segoe UI', Roboto, Oxygen, Ubuntu, sans-serif !important;
+                  line-height: 1.7 !important;
+                  color: #1e293b !important;
+                  background: #ffffff !important;
+                  font-size: 15px !important;
+                  margin: 0 !important;
+                  padding: 0 !important;
+              }
+
+              /* Hide default navigation and TOC */
+              header[role="banner"],
+              nav.toc {
+                  display: none !important;
+              }
+
+              /* Main content area */
+              .main-grid {
+                  display: block !important;
+                  max-width: 100% !important;
+              }
+
+              main[role="main"] {
+                  padding: 48px 64px !important;
+                  max-width: 1400px !important;
+                  margin: 0 auto !important;
+              }
+
+              /* Header section */
+              .header {
+                  margin-bottom: 40px !important;
+                  padding-bottom: 24px !important;
+                  border-bottom: 3px solid #e5e7eb !important;
+                  position: relative !important;
+              }
+
+              .header::after {
+                  content: '' !important;
+                  position: absolute !important;
+                  bottom: -3px !important;
+                  left: 0 !important;
+                  width: 120px !important;
+                  height: 3px !important;
+                  background: linear-gradient(90deg, #646cff, #bd34fe) !important;
+              }
+
+              .header .title {
+                  font-size: 3em !important;
+                  background: linear-gradient(120deg, #646cff 0%, #bd34fe 100%) !important;
+                  -webkit-background-clip: text !important;
+                  -webkit-text-fill-color: transparent !important;
+                  background-clip: text !important;
+                  font-weight: 800 !important;
+                  letter-spacing: -0.03em !important;
+                  margin: 0 !important;
+              }
+
+              /* Inheritance tree */
+              .inheritance {
+                  background: linear-gradient(135deg, #f8fafc 0%, #f1f5f9 100%) !important;
+                  padding: 20px 24px !important;
+                  border-radius: 12px !important;
+                  border-left: 4px solid #646cff !important;
+                  margin: 24px 0 !important;
+                  font-family: 'Fira Code', 'Consolas', monospace !important;
+                  font-size: 14px !important;
+              }
+
+              .inheritance div {
+                  margin-left: 24px !important;
+                  padding-left: 20px !important;
+                  border-left: 2px solid #cbd5e1 !important;
+              }
+
+              .inheritance a {
+                  color: #646cff !important;
+                  font-weight: 600 !important;
+              }
+
+              /* Class description */
+              .class-description {
+                  margin: 32px 0 !important;
+              }
+
+              .type-signature {
+                  background: linear-gradient(135deg, #f8fafc 0%, #ffffff 100%) !important;
+                  padding: 20px 24px !important;
+                  border-radius: 12px !important;
+                  border-left: 4px solid #10b981 !important;
+                  margin: 20px 0 !important;
+                  font-family: 'Fira Code', 'Consolas', monospace !important;
+                  font-size: 15px !important;
+                  box-shadow: 0 2px 4px rgba(0,0,0,0.05) !important;
+              }
+
+              .type-signature .modifiers {
+                  color: #8b5cf6 !important;
+                  font-weight: 600 !important;
+              }
+
+              .type-signature .element-name {
+                  color: #0ea5e9 !important;
+                  font-weight: 700 !important;
+              }
+
+              .type-signature .extends-implements {
+                  color: #64748b !important;
+              }
+
+              /* Section headers */
+              h2 {
+                  font-size: 2em !important;
+                  color: #646cff !important;
+                  font-weight: 700 !important;
+                  margin-top: 48px !important;
+                  margin-bottom: 24px !important;
+                  padding-bottom: 12px !important;
+                  border-bottom: 2px solid #e5e7eb !important;
+                  position: relative !important;
+              }
+
+              h2::before {
+                  content: '' !important;
+                  position: absolute !important;
+                  bottom: -2px !important;
+                  left: 0 !important;
+                  width: 80px !important;
+                  height: 2px !important;
+                  background: linear-gradient(90deg, #646cff, #bd34fe) !important;
+              }
+
+              h3 {
+                  font-size: 1.5em !important;
+                  color: #475569 !important;
+                  font-weight: 700 !important;
+                  margin-top: 32px !important;
+                  margin-bottom: 16px !important;
+              }
+
+              /* Summary tables */
+              .summary-table,
+              .two-column-summary,
+              .three-column-summary {
+                  width: 100% !important;
+                  border-radius: 12px !important;
+                  overflow: hidden !important;
+                  box-shadow: 0 4px 6px -1px rgba(0,0,0,0.1), 0 2px 4px -1px rgba(0,0,0,0.06) !important;
+                  margin: 24px 0 !important;
+                  border: none !important;
+                  display: grid !important;
+              }
+
+              .three-column-summary {
+                  grid-template-columns: auto 1fr 2fr !important;
+              }
+
+              .two-column-summary {
+                  grid-template-columns: 1fr 2fr !important;
+              }
+
+              .table-header {
+                  background: linear-gradient(135deg, #646cff 0%, #535bf2 100%) !important;
+                  color: white !important;
+                  font-weight: 700 !important;
+                  text-transform: uppercase !important;
+                  font-size: 12px !important;
+                  letter-spacing: 1px !important;
+                  padding: 16px 20px !important;
+                  border: none !important;
+              }
+
+              .col-first,
+              .col-second,
+              .col-last,
+              .col-constructor-name {
+                  padding: 16px 20px !important;
+                  border-bottom: 1px solid #e5e7eb !important;
+                  border-right: 1px solid #f1f5f9 !important;
+              }
+
+              .col-last {
+                  border-right: none !important;
+              }
+
+              .even-row-color {
+                  background-color: #ffffff !important;
+              }
+
+              .odd-row-color {
+                  background-color: #f9fafb !important;
+              }
+
+              .even-row-color:hover,
+              .odd-row-color:hover {
+                  background-color: #f0f4ff !important;
+                  transition: background-color 0.2s ease !important;
+              }
+
+              /* Code elements */
+              code {
+                  background: linear-gradient(135deg, #fef3c7 0%, #fde68a 100%) !important;
+                  padding: 3px 8px !important;
+                  border-radius: 6px !important;
+                  font-family: 'Fira Code', 'Consolas', 'Monaco', monospace !important;
+                  color: #92400e !important;
+                  font-size: 0.9em !important;
+                  border: 1px solid #fbbf24 !important;
+                  font-weight: 600 !important;
+              }
+
+              .member-signature code,
+              .type-signature code {
+                  background: transparent !important;
+                  border: none !important;
+                  padding: 0 !important;
+                  color: inherit !important;
+              }
+
+              /* Member signatures */
+              .member-signature {
+                  background: linear-gradient(135deg, #f0f9ff 0%, #e0f2fe 100%) !important;
+                  border-left: 4px solid #0ea5e9 !important;
+                  padding: 20px 24px !important;
+                  border-radius: 12px !important;
+                  margin: 20px 0 !important;
+                  box-shadow: 0 2px 4px rgba(0,0,0,0.05) !important;
+                  font-family: 'Fira Code', 'Consolas', monospace !important;
+                  font-size: 14px !important;
+              }
+
+              .member-signature .modifiers {
+                  color: #8b5cf6 !important;
+                  font-weight: 600 !important;
+              }
+
+              .member-signature .return-type {
+                  color: #059669 !important;
+                  font-weight: 600 !important;
+              }
+
+              .member-signature .element-name {
+                  color: #0ea5e9 !important;
+                  font-weight: 700 !important;
+              }
+
+              .member-signature .parameters {
+                  color: #64748b !important;
+              }
+
+              .member-signature .exceptions {
+                  color: #dc2626 !important;
+                  font-weight: 600 !important;
+              }
+
+              /* Links */
+              a {
+                  color: #646cff !important;
+                  text-decoration: none !important;
+                  font-weight: 500 !important;
+                  transition: all 0.2s ease !important;
+                  border-bottom: 2px solid transparent !important;
+              }
+
+              a:hover {
+                  color: #535bf2 !important;
+                  border-bottom-color: #646cff !important;
+              }
+
+              .member-name-link {
+                  font-weight: 600 !important;
+              }
+
+              /* Notes section (dl.notes) */
+              dl.notes {
+                  background: linear-gradient(135deg, #fef3c7 0%, #fde68a 100%) !important;
+                  border-left: 4px solid #f59e0b !important;
+                  padding: 24px !important;
+                  border-radius: 12px !important;
+                  margin: 24px 0 !important;
+                  box-shadow: 0 2px 4px rgba(0,0,0,0.05) !important;
+              }
+
+              dl.notes dt {
+                  font-weight: 700 !important;
+                  color: #92400e !important;
+                  margin-top: 16px !important;
+                  margin-bottom: 8px !important;
+                  text-transform: uppercase !important;
+                  font-size: 12px !important;
+                  letter-spacing: 0.5px !important;
+              }
+
+              dl.notes dt:first-child {
+                  margin-top: 0 !important;
+              }
+
+              dl.notes dd {
+                  margin-left: 0 !important;
+                  margin-bottom: 12px !important;
+                  color: #78350f !important;
+              }
+
+              /* Tag list */
+              .tag-list {
+                  list-style: none !important;
+                  padding: 0 !important;
+                  margin: 8px 0 !important;
+              }
+
+              .tag-list li {
+                  margin: 4px 0 !important;
+                  padding-left: 20px !important;
+                  position: relative !important;
+              }
+
+              .tag-list li::before {
+                  content: '→' !important;
+                  position: absolute !important;
+                  left: 0 !important;
+                  color: #f59e0b !important;
+                  font-weight: bold !important;
+              }
+
+              /* Horizontal scroll */
+              .horizontal-scroll {
+                  overflow-x: auto !important;
+              }
+
+              /* Block elements */
+              .block {
+                  line-height: 1.8 !important;
+                  color: #475569 !important;
+                  margin: 16px 0 !important;
+              }
+
+              /* Details sections */
+              .details {
+                  margin-top: 48px !important;
+              }
+
+              .detail {
+                  margin: 32px 0 !important;
+                  padding: 24px !important;
+                  background: #fafafa !important;
+                  border-radius: 12px !important;
+                  border: 1px solid #e5e7eb !important;
+              }
+
+              .detail:hover {
+                  background: #f8f9fa !important;
+                  border-color: #cbd5e1 !important;
+                  transition: all 0.2s ease !important;
+              }
+
+              /* Member list */
+              .member-list {
+                  list-style: none !important;
+                  padding: 0 !important;
+              }
+
+              /* Inherited list */
+              .inherited-list {
+                  background: #f8f9fa !important;
+                  padding: 20px 24px !important;
+                  border-radius: 8px !important;
+                  margin: 16px 0 !important;
+                  border-left: 3px solid #94a3b8 !important;
+              }
+
+              .inherited-list h3 {
+                  font-size: 0.95em !important;
+                  color: #64748b !important;
+                  margin: 0 0 12px 0 !important;
+                  font-weight: 600 !important;
+                  text-transform: uppercase !important;
+                  letter-spacing: 0.5px !important;
+              }
+
+              .inherited-list code {
+                  background: white !important;
+                  border-color: #e5e7eb !important;
+                  color: #64748b !important;
+              }
+
+              /* Footer */
+              footer {
+                  margin-top: 64px !important;
+                  padding: 32px 0 !important;
+                  border-top: 2px solid #e5e7eb !important;
+              }
+
+              footer .legal-copy {
+                  color: #94a3b8 !important;
+                  font-size: 12px !important;
+                  line-height: 1.8 !important;
+              }
+
+              footer a {
+                  color: #646cff !important;
+                  border-bottom: 1px solid transparent !important;
+              }
+
+              footer a:hover {
+                  border-bottom-color: #646cff !important;
+              }
+
+              /* Paragraphs */
+              p {
+                  margin: 16px 0 !important;
+                  line-height: 1.8 !important;
+              }
+
+              /* Lists */
+              ul:not(.summary-list):not(.tag-list):not(.member-list):not(.nav-list):not(.sub-nav-list):not(.toc-list),
+              ol:not(.toc-list):not(.sub-nav-list) {
+                  line-height: 1.9 !important;
+                  padding-left: 28px !important;
+                  margin: 16px 0 !important;
+              }
+
+              li {
+                  margin: 8px 0 !important;
+              }
+
+              /* Summary list */
+              .summary-list {
+                  list-style: none !important;
+                  padding: 0 !important;
+              }
+
+              /* Caption */
+              .caption {
+                  font-size: 0.9em !important;
+                  color: #64748b !important;
+                  margin-bottom: 8px !important;
+                  font-weight: 600 !important;
+                  text-transform: uppercase !important;
+                  letter-spacing: 0.5px !important;
+              }
+
+              /* Responsive adjustments */
+              @media (max-width: 1200px) {
+                  main[role="main"] {
+                      padding: 32px 40px !important;
+                  }
+              }
+
+              @media (max-width: 768px) {
+                  main[role="main"] {
+                      padding: 24px 20px !important;
+                  }
+
+                  .header .title {
+                      font-size: 2em !important;
+                  }
+
+                  h2 {
+                      font-size: 1.5em !important;
+                  }
+              }
+
+              /* Scrollbar styling */
+              ::-webkit-scrollbar {
+                  width: 10px !important;
+                  height: 10px !important;
+              }
+
+              ::-webkit-scrollbar-track {
+                  background: #f1f5f9 !important;
+                  border-radius: 5px !important;
+              }
+
+              ::-webkit-scrollbar-thumb {
+                  background: linear-gradient(135deg, #646cff, #bd34fe) !important;
+                  border-radius: 5px !important;
+              }
+
+              ::-webkit-scrollbar-thumb:hover {
+                  background: linear-gradient(135deg, #535bf2, #a020f0) !important;
+              }
+          </style>
+      """;
+
+  /** Id of the dark theme's style element, switched on and off through its media query. */
+  private static final String DARK_STYLES_ID = "javadoc-viewer-dark";
+
+  private static final String DARK_STYLES =
+      """
+      <style id="javadoc-viewer-dark">
+          body {
+              background: #1e1e2e !important;
+              color: #cdd6f4 !important;
+          }
+
+          main[role="main"] {
+              background: #1e1e2e !important;
+          }
+
+          .header {
+              border-bottom-color: #313244 !important;
+          }
+
+          .header .title {
+              background: linear-gradient(120deg, #89b4fa 0%, #f5c2e7 100%) !important;
+              -webkit-background-clip: text !important;
+              -webkit-text-fill-color: transparent !important;
+              background-clip: text !important;
+          }
+
+          h2 {
+              color: #89b4fa !important;
+              border-bottom-color: #313244 !important;
+          }
+
+          h2::before {
+              background: linear-gradient(90deg, #89b4fa, #f5c2e7) !important;
+          }
+
+          h3 {
+              color: #a6adc8 !important;
+          }
+
+          .inheritance {
+              background: linear-gradient(135deg, #313244 0%, #45475a 100%) !important;
+              border-left-color: #89b4fa !important;
+          }
 
-    if (htmlContent.contains("</head>")) {
-      String result = htmlContent.replace("</head>", customStyles + "</head>");
+          .type-signature {
+              background: linear-gradient(135deg, #313244 0%, #1e1e2e 100%) !important;
+              border-left-color: #a6e3a1 !important;
+          }
 
-      if (isDarkMode) {
-        result = injectDarkModeStyles(result);
+          .type-signature .modifiers {
+              color: #cba6f7 !important;
+          }
+
+          .type-signature .element-name {
+              color: #89dceb !important;
+          }
+
+          .type-signature .extends-implements {
+              color: #a6adc8 !important;
+          }
+
+          .table-header {
+              background: linear-gradient(135deg, #89b4fa 0%, #74c7ec 100%) !important;
+              color: #1e1e2e !important;
+          }
+
+          .col-first,
+          .col-second,
+          .col-last,
+          .col-constructor-name {
+              border-bottom-color: #313244 !important;
+              border-right-color: #45475a !important;
+          }
+
+          .even-row-color {
+              background-color: #1e1e2e !important;
+          }
+
+          .odd-row-color {
+              background-color: #181825 !important;
+          }
+
+          .even-row-color:hover,
+          .odd-row-color:hover {
+              background-color: #313244 !important;
+          }
+
+          code {
+              background: linear-gradient(135deg, #45475a 0%, #585b70 100%) !important;
+              color: #f9e2af !important;
+              border-color: #6c7086 !important;
+          }
+
+          .member-signature {
+              background: linear-gradient(135deg, #313244 0%, #45475a 100%) !important;
+              border-left-color: #89dceb !important;
+          }
+
+          .member-signature .modifiers {
+              color: #cba6f7 !important;
+          }
+
+          .member-signature .return-type {
+              color: #a6e3a1 !important;
+          }
+
+          .member-signature .element-name {
+              color: #89dceb !important;
+          }
+
+          .member-signature .parameters {
+              color: #a6adc8 !important;
+          }
+
+          .member-signature .exceptions {
+              color: #f38ba8 !important;
+          }
+
+          a {
+              color: #89b4fa !important;
+          }
+
+          a:hover {
+              color: #74c7ec !important;
+              border-bottom-color: #89b4fa !important;
+          }
+
+          dl.notes {
+              background: linear-gradient(135deg, #45475a 0%, #585b70 100%) !important;
+              border-left-color: #f9e2af !important;
+          }
+
+          dl.notes dt {
+              color: #f9e2af !important;
+          }
+
+          dl.notes dd {
+              color: #cdd6f4 !important;
+          }
+
+          .tag-list li::before {
+              color: #f9e2af !important;
+          }
+
+          .block {
+              color: #bac2de !important;
+          }
+
+          .detail {
+              background: #181825 !important;
+              border-color: #313244 !important;
+          }
+
+          .detail:hover {
+              background: #313244 !important;
+              border-color: #45475a !important;
+          }
+
+          .inherited-list {
+              background: #313244 !important;
+              border-left-color: #6c7086 !important;
+          }
+
+          .inherited-list h3 {
+              color: #a6adc8 !important;
+          }
+
+          .inherited-list code {
+              background: #45475a !important;
+              border-color: #585b70 !important;
+              color: #a6adc8 !important;
+          }
+
+          footer {
+              border-top-color: #313244 !important;
+          }
+
+          footer .legal-copy {
+              color: #6c7086 !important;
+          }
+
+          footer a {
+              color: #89b4fa !important;
+          }
+
+          footer a:hover {
+              border-bottom-color: #89b4fa !important;
+          }
+
+          .caption {
+              color: #a6adc8 !important;
+          }
+
+          ::-webkit-scrollbar-track {
+              background: #313244 !important;
+          }
+
+          ::-webkit-scrollbar-thumb {
+              background: linear-gradient(135deg, #89b4fa, #f5c2e7) !important;
+          }
+
+          ::-webkit-scrollbar-thumb:hover {
+              background: linear-gradient(135deg, #74c7ec, #f5c2e7) !important;
+          }
+      </style>
+      """;
+
+  private static final String COPY_BUTTON_SCRIPT =
+      """
+      <script>
+      document.addEventListener('DOMContentLoaded', function() {
+          document.querySelectorAll('pre').forEach(function(pre) {
+              if (!pre.querySelector('.copy-button')) {
+                  var button = document.createElement('button');
+                  button.className = 'copy-button';
+                  button.textContent = '📋 Copy';
+                  button.style.cssText = 'position: absolute; top: 8px; right: 8px; padding: 6px 12px; ' +
+                      'background: #646cff; color: white; border: none; border-radius: 6px; ' +
+                      'cursor: pointer; font-size: 12px; font-weight: 600; opacity: 0; transition: opacity 0.2s;';
+
+                  pre.style.position = 'relative';
+                  pre.appendChild(button);
+
+                  pre.addEventListener('mouseenter', function() {
+                      button.style.opacity = '1';
+                  });
+                  pre.addEventListener('mouseleave', function() {
+                      button.style.opacity = '0';
+                  });
+
+                  button.addEventListener('click', function() {
+                      var code = pre.querySelector('code') || pre;
+                      var text = code.textContent;
+                      navigator.clipboard.writeText(text).then(function() {
+                          button.textContent = '✓ Copied!';
+                          setTimeout(function() {
+                              button.textContent = '📋 Copy';
+                          }, 2000);
+                      });
+                  });
+              }
+          });
+      });
+      </script>
+      """;
+
+  private static final String DARK_STYLES_DISABLED =
+      DARK_STYLES.replaceFirst("<style ", "<style media=\"not all\" ");
+
+  private static final String ENABLE_DARK_SCRIPT = themeScript("all");
+
+  private static final String DISABLE_DARK_SCRIPT = themeScript("not all");
+
+  // Bump when the way pages are rewritten changes without the injected text changing
+  private static final int PIPELINE_REVISION = 1;
+
+  /**
+   * Identifies the output of {@link #transform(String)}, for caches that outlive the process. It
+   * is derived from everything injected, so editing a style or script changes it.
+   */
+  public static final long VERSION =
+      ((31L * PIPELINE_REVISION + LIGHT_STYLES.hashCode()) * 31 + DARK_STYLES.hashCode()) * 31
+          + COPY_BUTTON_SCRIPT.hashCode();
+
+  // Every page carries the dark styles, switched off, so one copy of a page serves both themes
+  private static final Pipeline PAGE =
+      new Pipeline()
+          .insertBeforeFirst("</head>", LIGHT_STYLES)
+          .insertBeforeFirst("</head>", DARK_STYLES_DISABLED)
+          .insertBeforeLast("</body>", COPY_BUTTON_SCRIPT);
+
+  /**
+   * Applies every page transformation in a single pass: the custom styles, the dark theme
+   * (switched off), and the copy buttons for code blocks. The output does not depend on the
+   * theme; {@link #getThemeScript} switches the page to the current one once it is loaded.
+   *
+   * @param htmlContent The raw page
+   * @return The page ready to display
+   */
+  public static String transform(String htmlContent) {
+    return PAGE.apply(htmlContent);
+  }
+
+  /**
+   * Transforms a page as {@link #transform(String)} does and also gives it a base URL, in the
+   * same pass. Content loaded from a string has no URL of its own, so without a base the page's
+   * relative links, stylesheets and scripts resolve to nothing.
+   *
+   * @param htmlContent The raw page
+   * @param baseUrl The URL the page was read from, such as a {@code jar:} URL into an archive
+   * @return The page ready to display
+   */
+  public static String transform(String htmlContent, String baseUrl) {
+    String base = "<base href=\"" + baseUrl.replace("&", "&amp;").replace("\"", "&quot;") + "\">";
+    // The base has to come before the head's links, so it goes right after <head>
+    return PAGE.insertAfterOpening("<head", base).apply(htmlContent);
+  }
+
+  /**
+   * Gets the script that switches a page produced by {@link #transform} to a theme in place.
+   * The document is restyled but not reloaded, so the scroll position is kept. Pages without the
+   * injected styles are left alone.
+   *
+   * @param isDarkMode Whether to enable the dark theme
+   * @return The script to pass to {@code WebEngine.executeScript}
+   */
+  public static String getThemeScript(boolean isDarkMode) {
+    return isDarkMode ? ENABLE_DARK_SCRIPT : DISABLE_DARK_SCRIPT;
+  }
+
+  private static String themeScript(String media) {
+    return "(function() { var style = document.getElementById('"
+        + DARK_STYLES_ID
+        + "'); if (style) { style.media = '"
+        + media
+        + "'; } })();";
+  }
+
+  /**
+   * An immutable list of insertions, each placed before the first or last occurrence of a
+   * closing tag, or after the first opening tag of an element. Tags are matched
+   * case-insensitively; an insertion whose tag is missing is skipped. Insertions at the same
+   * point keep the order they were added in.
+   */
+  public static final class Pipeline {
+    private final List<Injection> injections;
+
+    public Pipeline() {
+      this.injections = Collections.emptyList();
+    }
+
+    private Pipeline(List<Injection> injections) {
+      this.injections = injections;
+    }
+
+    /**
+     * Adds text before the first occurrence of a tag.
+     *
+     * @param tag The tag to look for, such as {@code </head>}
+     * @param text The text to insert
+     * @return A new pipeline with the insertion appended
+     */
+    public Pipeline insertBeforeFirst(String tag, String text) {
+      return with(new Injection(tag, text, Placement.BEFORE_FIRST));
+    }
+
+    /**
+     * Adds text before the last occurrence of a tag.
+     *
+     * @param tag The tag to look for, such as {@code </body>}
+     * @param text The text to insert
+     * @return A new pipeline with the insertion appended
+     */
+    public Pipeline insertBeforeLast(String tag, String text) {
+      return with(new Injection(tag, text, Placement.BEFORE_LAST));
+    }
+
+    /**
+     * Adds text right after the first opening tag of an element, attributes included.
+     *
+     * @param tag The start of the tag, such as {@code <head}
+     * @param text The text to insert
+     * @return A new pipeline with the insertion appended
+     */
+    public Pipeline insertAfterOpening(String tag, String text) {
+      return with(new Injection(tag, text, Placement.AFTER_OPENING));
+    }
+
+    /**
+     * Runs every insertion over a page.
+     *
+     * @param html The page
+     * @return The transformed page, or the same instance if nothing was inserted
+     */
+    public String apply(String html) {
+      int count = injections.size();
+      int[] positions = new int[count];
+      Arrays.fill(positions, -1);
+      for (int k = 0; k < count; k++) {
+        if (injections.get(k).placement == Placement.AFTER_OPENING) {
+          positions[k] = afterOpeningTag(html, injections.get(k).tag);
+        }
+      }
+
+      // One forward scan over the closing tags finds every other insertion point
+      for (int i = html.indexOf("</"); i >= 0; i = html.indexOf("</", i + 2)) {
+        for (int k = 0; k < count; k++) {
+          Injection injection = injections.get(k);
+          if (injection.placement == Placement.AFTER_OPENING) {
+            continue;
+          }
+          if ((positions[k] < 0 || injection.placement == Placement.BEFORE_LAST)
+              && html.regionMatches(true, i, injection.tag, 0, injection.tag.length())) {
+            positions[k] = i;
+          }
+        }
+      }
+
+      int extra = 0;
+      Integer[] order = new Integer[count];
+      int found = 0;
+      for (int k = 0; k < count; k++) {
+        if (positions[k] >= 0) {
+          order[found++] = k;
+          extra += injections.get(k).text.length();
+        }
       }
+      if (found == 0) {
+        return html;
+      }
+      // Stable sort keeps same-position insertions in pipeline order
+      Arrays.sort(order, 0, found, (a, b) -> Integer.compare(positions[a], positions[b]));
 
-      return result;
+      StringBuilder out = new StringBuilder(html.length() + extra);
+      int copied = 0;
+      for (int n = 0; n < found; n++) {
+        int k = order[n];
+        out.append(html, copied, positions[k]);
+        out.append(injections.get(k).text);
+        copied = positions[k];
+      }
+      out.append(html, copied, html.length());
+      return out.toString();
     }
 
-    return htmlContent;
-  }
+    /** Finds the end of the first {@code <tag ...>}, not matching longer names like header. */
+    private static int afterOpeningTag(String html, String tag) {
+      for (int i = html.indexOf('<'); i >= 0; i = html.indexOf('<', i + 1)) {
+        int next = i + tag.length();
+        if (html.regionMatches(true, i, tag, 0, tag.length())
+            && next < html.length()
+            && (html.charAt(next) == '>' || Character.isWhitespace(html.charAt(next)))) {
+          int end = html.indexOf('>', next);
+          return end < 0 ? -1 : end + 1;
+        }
+      }
+      return -1;
+    }
 
-  public static String injectCopyButtons(String htmlContent) {
-    String copyScript =
-        """
-        <script>
-        document.addEventListener('DOMContentLoaded', function() {
-            document.querySelectorAll('pre').forEach(function(pre) {
-                if (!pre.querySelector('.copy-button')) {
-                    var button = document.createElement('button');
-                    button.className = 'copy-button';
-                    button.textContent = '📋 Copy';
-                    button.style.cssText = 'position: absolute; top: 8px; right: 8px; padding: 6px 12px; ' +
-                        'background: #646cff; color: white; border: none; border-radius: 6px; ' +
-                        'cursor: pointer; font-size: 12px; font-weight: 600; opacity: 0; transition: opacity 0.2s;';
-
-                    pre.style.position = 'relative';
-                    pre.appendChild(button);
-
-                    pre.addEventListener('mouseenter', function() {
-                        button.style.opacity = '1';
-                    });
-                    pre.addEventListener('mouseleave', function() {
-                        button.style.opacity = '0';
-                    });
-
-                    button.addEventListener('click', function() {
-                        var code = pre.querySelector('code') || pre;
-                        var text = code.textContent;
-                        navigator.clipboard.writeText(text).then(function() {
-                            button.textContent = '✓ Copied!';
-                            setTimeout(function() {
-                                button.textContent = '📋 Copy';
-                            }, 2000);
-                        });
-                    });
-                }
-            });
-        });
-        </script>
-        """;
-
-    if (htmlContent.contains("</body>")) {
-      return htmlContent.replace("</body>", copyScript + "</body>");
+    private Pipeline with(Injection injection) {
+      List<Injection> next = new ArrayList<>(injections);
+      next.add(injection);
+      return new Pipeline(Collections.unmodifiableList(next));
     }
-    return htmlContent;
   }
 
-  private static String injectDarkModeStyles(String htmlContent) {
-    String darkStyles =
-        """
-        <style>
-            body {
-                background: #1e1e2e !important;
-                color: #cdd6f4 !important;
-            }
-            /* ... rest of dark mode styles ... */
-        </style>
-        """;
-
-    if (htmlContent.contains("</head>")) {
-      return htmlContent.replace("</head>", darkStyles + "</head>");
-    }
-    return htmlContent;
+  private enum Placement {
+    BEFORE_FIRST,
+    BEFORE_LAST,
+    AFTER_OPENING
   }
 
-  private static String getLightModeStyles() {
-    return """
-    <style>
-        * {
-            box-sizing: border-box;
-        }
-        /* ... rest of light mode styles ... */
-    </style>
-    """;
+  private static final class Injection {
+    final String tag;
+    final String text;
+    final Placement placement;
+
+    Injection(String tag, String text, Placement placement) {
+      this.tag = tag;
+      this.text = text;
+      this.placement = placement;
+    }
   }
 }